@@ -0,0 +1,70 @@
+package software.shattered.mini18n.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import software.shattered.mini18n.MessageArguments;
+import software.shattered.mini18n.MessageSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * One message sent to many recipients sharing a few locales, rendered per recipient and as a broadcast.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    private static final Locale[] Locales = {Locale.ENGLISH, Locale.US, Locale.UK, Locale.GERMAN};
+
+    @Param({"1000", "10000"})
+    public int recipients;
+
+    private MessageSet set;
+    private List<Locale> players;
+    private MessageArguments arguments;
+
+    @Setup
+    public void setUp() {
+        set = new MessageSet();
+        set.add(Locale.ENGLISH, "items.one", "%name% found %count% item");
+        set.add(Locale.ENGLISH, "items.other", "%name% found %count% items");
+        set.add(Locale.GERMAN, "items.one", "%name% hat %count% Gegenstand gefunden");
+        set.add(Locale.GERMAN, "items.other", "%name% hat %count% Gegenstände gefunden");
+        players = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            players.add(Locales[i % Locales.length]);
+        }
+        arguments = new MessageArguments().count(3).set("name", "Hunter");
+    }
+
+    @Benchmark
+    public void perRecipient(Blackhole blackhole) {
+        for (Locale locale : players) {
+            blackhole.consume(set.get(locale, "items", arguments));
+        }
+    }
+
+    @Benchmark
+    public void broadcast(Blackhole blackhole) {
+        set.broadcast(players, Function.identity(), "items", arguments,
+                (player, message) -> blackhole.consume(message));
+    }
+
+    @Benchmark
+    public long broadcastParallel() {
+        // Blackhole is not meant to be shared between threads.
+        LongAdder length = new LongAdder();
+        set.broadcast(players, Function.identity(), "items", arguments,
+                (player, message) -> length.add(message.length()), ForkJoinPool.commonPool());
+        return length.sum();
+    }
+}
@@ -0,0 +1,83 @@
+package software.shattered.mini18n.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.shattered.mini18n.MessageSet;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and loading against catalogs of 50 locales with a growing number of keys, in the default and the compact
+ * storage. The largest size needs a few gigabytes of heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class CatalogSizeBenchmark {
+    static final int Locales = 50;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private MessageSet set;
+    private Locale[] locales;
+    private String[] ids;
+    private Map<String, Object> data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = new MessageSet();
+        set.setCompactStorage(compact);
+        locales = new Locale[Locales];
+        ids = new String[keys];
+        for (int key = 0; key < keys; key++) {
+            ids[key] = "section" + (key % 100) + ".message" + key;
+        }
+        for (int i = 0; i < Locales; i++) {
+            locales[i] = new Locale("l" + i, "ZZ");
+            Map<String, String> messages = new HashMap<>();
+            for (String id : ids) {
+                messages.put(id, "Message " + id + " for %name% in locale " + i + ".");
+            }
+            set.addAll(locales[i], messages);
+        }
+        data = new HashMap<>();
+        data.put("name", "Hunter");
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public String lookup(Cursor cursor) {
+        int index = cursor.next++;
+        return set.get(locales[index % Locales], ids[(index * 31) % keys], data);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public MessageSet loadLocale() {
+        MessageSet loaded = new MessageSet();
+        loaded.setCompactStorage(compact);
+        Map<String, String> messages = new HashMap<>();
+        for (String id : ids) {
+            messages.put(id, "Message " + id + " for %name%.");
+        }
+        loaded.addAll(locales[0], messages);
+        loaded.get(locales[0], ids[0]);
+        return loaded;
+    }
+}
@@ -0,0 +1,58 @@
+package software.shattered.mini18n.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.shattered.mini18n.MessageSet;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads rendering from one set, with and without a thread that keeps replacing messages.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentionBenchmark {
+    private static final Locale locale = Locale.ENGLISH;
+
+    private MessageSet set;
+    private Map<String, Object> data;
+    private int version;
+
+    @Setup
+    public void setUp() {
+        set = new MessageSet();
+        for (int i = 0; i < 1000; i++) {
+            set.add(locale, "message" + i, "Message " + i + " for %name%.");
+        }
+        set.add(locale, "items.one", "%count% item");
+        set.add(locale, "items.other", "%count% items");
+        data = Collections.singletonMap("name", "Hunter");
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(8)
+    public String readOnly() {
+        return set.get(locale, "message500", data);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(7)
+    public String readWhileWriting() {
+        return set.get(locale, "message500", data);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void write() {
+        set.add(locale, "message" + (version++ % 1000), "Message " + version + " for %name%.");
+    }
+}
@@ -0,0 +1,133 @@
+package software.shattered.mini18n.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.shattered.mini18n.MessageArguments;
+import software.shattered.mini18n.MessageHandle;
+import software.shattered.mini18n.MessageSet;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the common message shapes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSetBenchmark {
+    private static final Locale locale = Locale.ENGLISH;
+
+    @Param({"1", "5", "20"})
+    public int placeholders;
+
+    private MessageSet set;
+    private Map<String, Object> placeholderData;
+    private Map<String, Object> countData;
+    private Map<String, Object> ordinalData;
+    private Map<String, Object> rangeData;
+    private MessageArguments arguments;
+    private MessageArguments countArguments;
+    private MessageHandle items;
+    private StringBuilder buffer;
+
+    @Setup
+    public void setUp() {
+        set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.add(locale, "plain", "Welcome to the server!");
+
+        StringBuilder message = new StringBuilder("Values:");
+        placeholderData = new HashMap<>();
+        arguments = new MessageArguments();
+        for (int i = 0; i < placeholders; i++) {
+            message.append(" %arg").append(i).append('%');
+            placeholderData.put("arg" + i, "value" + i);
+            arguments.set("arg" + i, "value" + i);
+        }
+        set.add(locale, "placeholders", message.toString());
+
+        set.add(locale, "items.one", "You have %count% item.");
+        set.add(locale, "items.other", "You have %count% items.");
+        set.add(locale, "place.one", "%count%st place");
+        set.add(locale, "place.two", "%count%nd place");
+        set.add(locale, "place.few", "%count%rd place");
+        set.add(locale, "place.other", "%count%th place");
+        set.add(locale, "span.one+other", "%range_min%-%range_max% items");
+        set.add(locale, "span.other+other", "%range_min%-%range_max% items");
+        countData = new HashMap<>();
+        countData.put("count", 5);
+        ordinalData = new HashMap<>();
+        ordinalData.put("count", 22);
+        ordinalData.put("ordinal", true);
+        countArguments = new MessageArguments().count(5);
+        items = set.handle("items");
+        rangeData = new HashMap<>();
+        rangeData.put("range_min", 1);
+        rangeData.put("range_max", 5);
+
+        set.add(locale, "nested", "%message:header% %message:body%");
+        set.add(locale, "header", "[%message:prefix%]");
+        set.add(locale, "prefix", "Server");
+        set.add(locale, "body", "Hello, %arg0%!");
+
+        buffer = new StringBuilder(256);
+    }
+
+    @Benchmark
+    public String plainLookup() {
+        return set.get(locale, "plain");
+    }
+
+    @Benchmark
+    public String placeholders() {
+        return set.get(locale, "placeholders", placeholderData);
+    }
+
+    @Benchmark
+    public String placeholdersWithArguments() {
+        return set.get(locale, "placeholders", arguments);
+    }
+
+    @Benchmark
+    public StringBuilder placeholdersIntoBuffer() {
+        buffer.setLength(0);
+        set.render(locale, "placeholders", arguments, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public String counted() {
+        return set.get(locale, "items", countData);
+    }
+
+    @Benchmark
+    public String countedWithArguments() {
+        return set.get(locale, "items", countArguments);
+    }
+
+    @Benchmark
+    public String countedThroughHandle() {
+        return items.get(locale, countArguments);
+    }
+
+    @Benchmark
+    public String ordinal() {
+        return set.get(locale, "place", ordinalData);
+    }
+
+    @Benchmark
+    public String range() {
+        return set.get(locale, "span", rangeData);
+    }
+
+    @Benchmark
+    public String nestedMessages() {
+        return set.get(locale, "nested", placeholderData);
+    }
+}
@@ -0,0 +1,52 @@
+package software.shattered.mini18n.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import software.shattered.mini18n.lang.PluralOperands;
+import software.shattered.mini18n.lang.PluralRules;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluralRulesBenchmark {
+    @Param({"en", "ru", "ar"})
+    public String language;
+
+    private PluralRules rules;
+    private final PluralOperands decimal = PluralOperands.parse("1.50");
+    private long count;
+    private double fractional;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        rules = PluralRules.forLocale(Locale.forLanguageTag(language));
+        count = 0;
+        fractional = 0.25;
+    }
+
+    @Benchmark
+    public String selectLong() {
+        return rules.select(count++ & 1023);
+    }
+
+    @Benchmark
+    public String selectDouble() {
+        fractional += 0.5;
+        return rules.select(fractional);
+    }
+
+    @Benchmark
+    public String selectOperands() {
+        return rules.select(decimal);
+    }
+
+    @Benchmark
+    public String selectOrdinal() {
+        return rules.selectOrdinal(count++ & 1023);
+    }
+}
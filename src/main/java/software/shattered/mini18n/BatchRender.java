@@ -0,0 +1,107 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.MessageSnapshot.ResolvedLocale;
+import software.shattered.mini18n.metrics.MessageMetrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A batch of {@link MessageRequest}s rendered against one snapshot. Every request is looked up before any is
+ * rendered: each distinct locale is resolved once, and the requests in it find their entries through that same
+ * resolved chain. Rendering can then be split across an executor, each task writing its own range of the results.
+ */
+final class BatchRender {
+    // Requests rendered by one task, below which handing work to another thread costs more than it saves.
+    private static final int ChunkSize = 256;
+
+    private final MessageSet set;
+    private final List<MessageRequest> requests;
+    private final String[] results;
+    private final MessageEntry[] entries;
+
+    BatchRender(MessageSet set, List<MessageRequest> requests, String[] results) {
+        if (results.length < requests.size()) {
+            throw new IllegalArgumentException("Results array of length " + results.length + " cannot hold "
+                    + requests.size() + " results");
+        }
+        this.set = set;
+        this.requests = requests;
+        this.results = results;
+        this.entries = new MessageEntry[requests.size()];
+    }
+
+    void render(@Nullable Executor executor) {
+        lookUp();
+        int size = requests.size();
+        if (executor == null || size <= ChunkSize) {
+            render(0, size);
+            return;
+        }
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[(size + ChunkSize - 1) / ChunkSize];
+        for (int i = 0; i < tasks.length; i++) {
+            int from = i * ChunkSize;
+            int to = Math.min(size, from + ChunkSize);
+            tasks[i] = CompletableFuture.runAsync(() -> render(from, to), executor);
+        }
+        try {
+            CompletableFuture.allOf(tasks).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void lookUp() {
+        Map<Locale, ResolvedLocale> resolved = new HashMap<>();
+        for (MessageRequest request : requests) {
+            resolved.put(request.getLocale(), null);
+        }
+        MessageSnapshot snapshot = set.snapshot(resolved.keySet());
+        for (Map.Entry<Locale, ResolvedLocale> entry : resolved.entrySet()) {
+            entry.setValue(snapshot.resolve(entry.getKey()));
+        }
+        MessageMetrics metrics = set.getMetrics();
+        for (int i = 0; i < entries.length; i++) {
+            MessageRequest request = requests.get(i);
+            entries[i] = resolved.get(request.getLocale()).find(request.getMessage());
+            if (metrics != null && entries[i] == null) {
+                metrics.onLookup(request.getLocale(), request.getMessage(), false);
+            }
+        }
+    }
+
+    private void render(int from, int to) {
+        MessageMetrics metrics = set.getMetrics();
+        for (int i = from; i < to; i++) {
+            MessageEntry entry = entries[i];
+            if (entry == null) {
+                results[i] = null;
+                continue;
+            }
+            MessageRequest request = requests.get(i);
+            long start = metrics == null ? 0L : System.nanoTime();
+            Map<String, Object> data = LazyData.wrap(request.getData());
+            MessageTemplate template = set.select(entry, data, request.getArguments());
+            if (metrics != null) {
+                metrics.onLookup(request.getLocale(), request.getMessage(), template != null);
+            }
+            results[i] = template == null ? null : set.render(template, request.getLocale(), request.getMessage(),
+                    data, request.getArguments());
+            if (metrics != null && template != null) {
+                metrics.onRender(request.getLocale(), request.getMessage(), System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.metrics.MessageMetrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * One message rendered with the same values for many locales. Each distinct locale is resolved once, and each
+ * template the locales resolve to is rendered once, so locales that fall back to the same message and plural variant
+ * share one string. Templates with meta calls or formatted placeholders are rendered once per locale instead, since
+ * they may render differently for each.
+ */
+final class Broadcast {
+    // Recipients handled by one fork-join task, below which splitting costs more than it saves.
+    private static final int SplitSize = 1024;
+
+    private final MessageSet set;
+    private final String message;
+    private final @Nullable Map<String, Object> data;
+    private final @Nullable MessageArguments arguments;
+    private final Map<Locale, Optional<String>> byLocale;
+    private final Map<MessageTemplate, String> byTemplate;
+
+    Broadcast(MessageSet set, String message, @Nullable Map<String, Object> data,
+              @Nullable MessageArguments arguments, boolean concurrent) {
+        this.set = set;
+        this.message = message;
+        this.data = LazyData.wrap(data);
+        this.arguments = arguments;
+        this.byLocale = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.byTemplate = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    /**
+     * @return the message rendered for {@code locale}, or null if there is none.
+     */
+    @Nullable String get(Locale locale) {
+        Optional<String> result = byLocale.get(locale);
+        if (result == null) {
+            result = byLocale.computeIfAbsent(locale, key -> Optional.ofNullable(render(key)));
+        }
+        return result.orElse(null);
+    }
+
+    <T> void send(List<? extends T> recipients, Function<? super T, Locale> localeOf,
+                  BiConsumer<? super T, ? super String> send, @Nullable ForkJoinPool pool) {
+        if (pool == null || recipients.size() <= SplitSize) {
+            send(recipients, 0, recipients.size(), localeOf, send);
+        } else {
+            pool.invoke(new SendTask<>(recipients, 0, recipients.size(), localeOf, send));
+        }
+    }
+
+    private <T> void send(List<? extends T> recipients, int from, int to, Function<? super T, Locale> localeOf,
+                          BiConsumer<? super T, ? super String> send) {
+        for (int i = from; i < to; i++) {
+            T recipient = recipients.get(i);
+            send.accept(recipient, get(localeOf.apply(recipient)));
+        }
+    }
+
+    private @Nullable String render(Locale locale) {
+        MessageTemplate template = set.find(locale, message, data, arguments);
+        if (template == null) {
+            return null;
+        }
+        if (template.hasMetaCalls() || template.isLocalized()) {
+            return render(template, locale);
+        }
+        String result = byTemplate.get(template);
+        return result != null ? result : byTemplate.computeIfAbsent(template, key -> render(key, locale));
+    }
+
+    private String render(MessageTemplate template, Locale locale) {
+        MessageMetrics metrics = set.getMetrics();
+        long start = metrics == null ? 0L : System.nanoTime();
+        String result = set.render(template, locale, message, data, arguments);
+        if (metrics != null) {
+            metrics.onRender(locale, message, System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private final class SendTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<? extends T> recipients;
+        private final int from;
+        private final int to;
+        private final Function<? super T, Locale> localeOf;
+        private final BiConsumer<? super T, ? super String> send;
+
+        SendTask(List<? extends T> recipients, int from, int to, Function<? super T, Locale> localeOf,
+                 BiConsumer<? super T, ? super String> send) {
+            this.recipients = recipients;
+            this.from = from;
+            this.to = to;
+            this.localeOf = localeOf;
+            this.send = send;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SplitSize) {
+                send(recipients, from, to, localeOf, send);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SendTask<>(recipients, from, middle, localeOf, send),
+                    new SendTask<>(recipients, middle, to, localeOf, send));
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads a directory of translation files into a {@link MessageSet}. Each file is named after its locale's language
+ * tag, such as {@code en-US.properties} or {@code en_US.yml}, or sits anywhere under a directory named after it, such
+ * as {@code en-US/shop.json}. Files are read as UTF-8, in one of these formats:
+ * <ul>
+ *     <li>{@code .properties}: {@code key=value} lines, as read by {@link Properties}.</li>
+ *     <li>{@code .yml} or {@code .yaml}: nested mappings of strings, whose keys are joined with {@code .}.</li>
+ *     <li>{@code .json}: nested objects of strings, whose keys are joined with {@code .}.</li>
+ * </ul>
+ * Files are streamed rather than read into memory whole, and their messages compiled as they are read. Every file is
+ * read by its own task on a fork-join pool, so locales, and locales split across several files, load in parallel.
+ * Each locale is added to the set in one publish as soon as all of its files are read, so readers see either none or
+ * all of a locale's messages. Where files of one locale repeat a key, the file that sorts last by path wins.
+ */
+public final class CatalogLoader {
+    private static final int BufferSize = 64 * 1024;
+
+    private CatalogLoader() {
+    }
+
+    /**
+     * Same as {@link #load(MessageSet, Path, ForkJoinPool)} on the common pool.
+     */
+    public static Map<Locale, Integer> load(@NotNull MessageSet set, @NotNull Path directory) throws IOException {
+        return load(set, directory, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads every translation file in {@code directory} and adds its messages to {@code set}. A locale whose files
+     * cannot be read is not added at all, but the others still are.
+     *
+     * @return the number of messages added for each locale, in the order of their files.
+     * @throws IOException the first error reading a file, with the errors of any other files suppressed by it.
+     */
+    public static Map<Locale, Integer> load(@NotNull MessageSet set, @NotNull Path directory,
+                                            @NotNull ForkJoinPool pool) throws IOException {
+        Map<Locale, List<Path>> files = find(directory);
+        Map<Locale, Integer> loaded = new ConcurrentHashMap<>();
+        List<IOException> errors = pool.invoke(new LoadAll(set, files, loaded));
+        if (!errors.isEmpty()) {
+            IOException error = errors.get(0);
+            errors.subList(1, errors.size()).forEach(error::addSuppressed);
+            throw error;
+        }
+        Map<Locale, Integer> counts = new LinkedHashMap<>();
+        for (Locale locale : files.keySet()) {
+            counts.put(locale, loaded.get(locale));
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Reads the files of one locale in {@code directory} on the calling thread without adding them to a set, such as
+     * to inspect the messages of a reference locale.
+     *
+     * @return the compiled messages by key, which is empty if the locale has no files.
+     */
+    public static Map<String, MessageTemplate> read(@NotNull Path directory, @NotNull Locale locale)
+            throws IOException {
+        Map<String, MessageTemplate> messages = new HashMap<>();
+        for (Path path : sorted(directory)) {
+            if (locale.equals(localeOf(directory, path))) {
+                for (Path file : filesOf(path)) {
+                    messages.putAll(read(file));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @return the translation files in {@code directory} by locale, in the order their messages apply.
+     */
+    static Map<Locale, List<Path>> find(Path directory) throws IOException {
+        Map<Locale, List<Path>> files = new LinkedHashMap<>();
+        for (Path path : sorted(directory)) {
+            Locale locale = localeOf(directory, path);
+            if (locale != null) {
+                List<Path> found = filesOf(path);
+                if (!found.isEmpty()) {
+                    files.computeIfAbsent(locale, ignored -> new ArrayList<>()).addAll(found);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the locale that {@code path}, a file or directory in {@code directory} or a file anywhere under one of
+     *         its directories, holds translations for, or null if it is not a translation file or directory.
+     */
+    static @Nullable Locale localeOf(Path directory, Path path) {
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            return null;
+        }
+        Path relative = directory.relativize(path);
+        if (Files.isDirectory(path) || relative.getNameCount() > 1 && formatOf(path) != null) {
+            return localeOf(relative.getName(0).toString());
+        }
+        if (relative.getNameCount() > 1 || formatOf(path) == null) {
+            return null;
+        }
+        String name = relative.toString();
+        String tag = name.substring(0, name.lastIndexOf('.'));
+        return tag.isEmpty() ? null : localeOf(tag);
+    }
+
+    /**
+     * @return {@code path} if it is a translation file, or the translation files anywhere under it if it is a
+     *         directory, sorted by path.
+     */
+    private static List<Path> filesOf(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return formatOf(path) != null ? Collections.singletonList(path) : Collections.emptyList();
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(file -> Files.isRegularFile(file) && formatOf(file) != null)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> sorted(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static Locale localeOf(String tag) {
+        return Locale.forLanguageTag(tag.replace('_', '-'));
+    }
+
+    private static @Nullable String formatOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        switch (name.substring(dot + 1)) {
+            case "properties":
+                return "properties";
+            case "yml":
+            case "yaml":
+                return "yaml";
+            case "json":
+                return "json";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads and compiles the messages of one file.
+     */
+    static Map<String, MessageTemplate> read(Path file) throws IOException {
+        Map<String, MessageTemplate> messages = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file),
+                StandardCharsets.UTF_8.newDecoder()), BufferSize)) {
+            String format = formatOf(file);
+            if ("properties".equals(format)) {
+                CatalogParser.properties(reader, (key, value) -> messages.put(key, MessageTemplate.compile(value)));
+            } else if ("yaml".equals(format)) {
+                CatalogParser.yaml(reader, (key, value) -> messages.put(key, MessageTemplate.compile(value)));
+            } else {
+                CatalogParser.json(reader, (key, value) -> messages.put(key, MessageTemplate.compile(value)));
+            }
+        } catch (IOException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        return messages;
+    }
+
+    /**
+     * Loads every locale, each in its own task, and collects their errors.
+     */
+    private static final class LoadAll extends RecursiveTask<List<IOException>> {
+        private static final long serialVersionUID = 1L;
+
+        private final MessageSet set;
+        private final Map<Locale, List<Path>> files;
+        private final Map<Locale, Integer> loaded;
+
+        LoadAll(MessageSet set, Map<Locale, List<Path>> files, Map<Locale, Integer> loaded) {
+            this.set = set;
+            this.files = files;
+            this.loaded = loaded;
+        }
+
+        @Override
+        protected List<IOException> compute() {
+            List<LoadLocale> tasks = new ArrayList<>();
+            for (Map.Entry<Locale, List<Path>> entry : files.entrySet()) {
+                tasks.add(new LoadLocale(set, entry.getKey(), entry.getValue(), loaded));
+            }
+            // Not invokeAll, which may cancel the other locales when one fails.
+            for (LoadLocale task : tasks) {
+                task.fork();
+            }
+            List<IOException> errors = new ArrayList<>();
+            for (LoadLocale task : tasks) {
+                task.quietlyJoin();
+                if (task.getException() != null) {
+                    errors.add(ioException(task.getException()));
+                }
+            }
+            return errors;
+        }
+
+        private static IOException ioException(Throwable error) {
+            for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+                if (cause instanceof UncheckedIOException) {
+                    return ((UncheckedIOException) cause).getCause();
+                }
+            }
+            return new IOException(error);
+        }
+    }
+
+    /**
+     * Reads the files of one locale in parallel, then adds all of their messages to the set at once.
+     */
+    private static final class LoadLocale extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MessageSet set;
+        private final Locale locale;
+        private final List<Path> files;
+        private final Map<Locale, Integer> loaded;
+
+        LoadLocale(MessageSet set, Locale locale, List<Path> files, Map<Locale, Integer> loaded) {
+            this.set = set;
+            this.locale = locale;
+            this.files = files;
+            this.loaded = loaded;
+        }
+
+        @Override
+        protected void compute() {
+            Map<String, MessageTemplate> messages;
+            if (files.size() == 1) {
+                messages = ReadFile.read(files.get(0));
+            } else {
+                List<ReadFile> tasks = new ArrayList<>();
+                for (Path file : files) {
+                    tasks.add(new ReadFile(file));
+                }
+                ForkJoinTask.invokeAll(tasks);
+                messages = new HashMap<>();
+                for (ReadFile task : tasks) {
+                    messages.putAll(task.join());
+                }
+            }
+            set.addCompiled(locale, messages);
+            loaded.put(locale, messages.size());
+        }
+    }
+
+    private static final class ReadFile extends RecursiveTask<Map<String, MessageTemplate>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path file;
+
+        ReadFile(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        protected Map<String, MessageTemplate> compute() {
+            return read(file);
+        }
+
+        static Map<String, MessageTemplate> read(Path file) {
+            try {
+                return CatalogLoader.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Streaming readers for the catalog formats of a {@link CatalogLoader}. Each reads a document a line or a character
+ * at a time and passes every message to a callback as soon as it is read, so a document is never held in memory as a
+ * whole. Nested keys are joined with {@code .}, so a {@code dollars} object with {@code one} and {@code other} keys
+ * gives the plural variants {@code dollars.one} and {@code dollars.other}.
+ */
+final class CatalogParser {
+    private CatalogParser() {
+    }
+
+    /**
+     * Reads {@code key=value} lines with the escapes and continuation lines of {@link java.util.Properties}.
+     */
+    static void properties(BufferedReader reader, BiConsumer<String, String> messages) throws IOException {
+        StringBuilder logical = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int start = skipSpaces(line, 0);
+            if (logical.length() == 0 && (start == line.length() || line.charAt(start) == '#'
+                    || line.charAt(start) == '!')) {
+                continue;
+            }
+            logical.append(line, start, line.length());
+            int backslashes = 0;
+            for (int i = logical.length() - 1; i >= 0 && logical.charAt(i) == '\\'; i--) {
+                backslashes++;
+            }
+            if (backslashes % 2 == 1) {
+                logical.setLength(logical.length() - 1);
+                continue;
+            }
+            property(logical, messages);
+            logical.setLength(0);
+        }
+        if (logical.length() > 0) {
+            property(logical, messages);
+        }
+    }
+
+    private static void property(CharSequence line, BiConsumer<String, String> messages) {
+        int length = line.length();
+        int keyEnd = 0;
+        while (keyEnd < length) {
+            char c = line.charAt(keyEnd);
+            if (c == '\\') {
+                keyEnd += 2;
+                continue;
+            }
+            if (c == '=' || c == ':' || Character.isWhitespace(c)) {
+                break;
+            }
+            keyEnd++;
+        }
+        keyEnd = Math.min(keyEnd, length);
+        int valueStart = keyEnd;
+        while (valueStart < length && Character.isWhitespace(line.charAt(valueStart))) {
+            valueStart++;
+        }
+        if (valueStart < length && (line.charAt(valueStart) == '=' || line.charAt(valueStart) == ':')) {
+            valueStart++;
+            while (valueStart < length && Character.isWhitespace(line.charAt(valueStart))) {
+                valueStart++;
+            }
+        }
+        messages.accept(unescape(line, 0, keyEnd), unescape(line, valueStart, length));
+    }
+
+    private static String unescape(CharSequence text, int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == end) {
+                builder.append(c);
+                continue;
+            }
+            c = text.charAt(++i);
+            switch (c) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 < end) {
+                        builder.append((char) Integer.parseInt(text.subSequence(i + 1, i + 5).toString(), 16));
+                        i += 4;
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads the subset of YAML used for translations: nested mappings by indentation, with plain, quoted, literal
+     * ({@code |}) and folded ({@code >}) scalars. Lists, anchors and flow collections are rejected.
+     */
+    static void yaml(BufferedReader reader, BiConsumer<String, String> messages) throws IOException {
+        new YamlReader(reader, messages).read();
+    }
+
+    private static final class YamlReader {
+        private final BufferedReader reader;
+        private final BiConsumer<String, String> messages;
+        // The open mappings, innermost first.
+        private final Deque<Mapping> mappings = new ArrayDeque<>();
+        private @Nullable String next;
+        private int lineNumber;
+
+        YamlReader(BufferedReader reader, BiConsumer<String, String> messages) {
+            this.reader = reader;
+            this.messages = messages;
+        }
+
+        void read() throws IOException {
+            // A key without a value, whose mapping opens if the next line is indented deeper.
+            Mapping pending = null;
+            String line;
+            while ((line = nextLine()) != null) {
+                int indent = skipSpaces(line, 0);
+                if (indent == line.length() || line.charAt(indent) == '#' || line.startsWith("---")
+                        || line.startsWith("...")) {
+                    continue;
+                }
+                if (line.indexOf('\t') >= 0 && line.indexOf('\t') < indent) {
+                    throw error("Tabs cannot be used for indentation");
+                }
+                if (pending != null && indent > pending.indent) {
+                    mappings.push(new Mapping(indent, pending.prefix));
+                }
+                pending = null;
+                if (mappings.isEmpty()) {
+                    mappings.push(new Mapping(indent, ""));
+                }
+                while (mappings.size() > 1 && mappings.peek().indent > indent) {
+                    mappings.pop();
+                }
+                if (mappings.peek().indent != indent) {
+                    throw error("Unexpected indentation");
+                }
+                char first = line.charAt(indent);
+                if (first == '-' && (indent + 1 == line.length() || line.charAt(indent + 1) == ' ')) {
+                    throw error("Lists are not supported");
+                }
+                if (first == '[' || first == '{' || first == '&' || first == '*') {
+                    throw error("Flow collections, anchors and aliases are not supported");
+                }
+                int[] position = {indent};
+                String key = mappings.peek().prefix + scalar(line, position, true);
+                int colon = skipSpaces(line, position[0]);
+                if (colon == line.length() || line.charAt(colon) != ':') {
+                    throw error("Expected ':' after key");
+                }
+                int valueStart = skipSpaces(line, colon + 1);
+                if (valueStart == line.length() || line.charAt(valueStart) == '#') {
+                    pending = new Mapping(indent, key + ".");
+                    continue;
+                }
+                char indicator = line.charAt(valueStart);
+                if (indicator == '|' || indicator == '>') {
+                    messages.accept(key, block(line, valueStart, indent));
+                    continue;
+                }
+                position[0] = valueStart;
+                String value = scalar(line, position, false);
+                int end = skipSpaces(line, position[0]);
+                if (end < line.length() && line.charAt(end) != '#') {
+                    throw error("Unexpected text after value");
+                }
+                messages.accept(key, value);
+            }
+        }
+
+        private @Nullable String nextLine() throws IOException {
+            String line = next;
+            next = null;
+            if (line == null) {
+                line = reader.readLine();
+            }
+            if (line != null) {
+                lineNumber++;
+            }
+            return line;
+        }
+
+        /**
+         * Reads a literal or folded block scalar whose header is at {@code start} of {@code header}, up to the next
+         * line indented no deeper than its key.
+         */
+        private String block(String header, int start, int keyIndent) throws IOException {
+            boolean folded = header.charAt(start) == '>';
+            int headerEnd = header.indexOf('#', start);
+            String indicators = header.substring(start + 1, headerEnd < 0 ? header.length() : headerEnd);
+            List<String> lines = new ArrayList<>();
+            int blockIndent = -1;
+            String line;
+            while ((line = nextLine()) != null) {
+                int indent = skipSpaces(line, 0);
+                if (indent == line.length()) {
+                    lines.add("");
+                    continue;
+                }
+                if (indent <= keyIndent) {
+                    next = line;
+                    lineNumber--;
+                    break;
+                }
+                if (blockIndent < 0) {
+                    blockIndent = indent;
+                } else if (indent < blockIndent) {
+                    throw error("Block scalar is less indented than its first line");
+                }
+                lines.add(line.substring(blockIndent));
+            }
+            int trailing = 0;
+            while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+                lines.remove(lines.size() - 1);
+                trailing++;
+            }
+            StringBuilder block = new StringBuilder();
+            for (int i = 0; i < lines.size(); i++) {
+                String current = lines.get(i);
+                if (i > 0) {
+                    String previous = lines.get(i - 1);
+                    if (!folded || previous.isEmpty() || previous.startsWith(" ") || current.startsWith(" ")) {
+                        block.append('\n');
+                    } else if (!current.isEmpty()) {
+                        // Folded lines are joined with a space, and a break before blank lines is dropped.
+                        block.append(' ');
+                    }
+                }
+                block.append(current);
+            }
+            if (!lines.isEmpty() && indicators.indexOf('-') < 0) {
+                block.append('\n');
+                if (indicators.indexOf('+') >= 0) {
+                    for (int i = 0; i < trailing; i++) {
+                        block.append('\n');
+                    }
+                }
+            }
+            return block.toString();
+        }
+
+        /**
+         * Reads a plain, single-quoted or double-quoted scalar starting at {@code position[0]}, leaving it after the
+         * scalar. A plain key ends at its {@code :}, and a plain value at a comment or the end of the line.
+         */
+        private String scalar(String line, int[] position, boolean key) throws IOException {
+            int start = position[0];
+            char quote = line.charAt(start);
+            if (quote == '\'' || quote == '"') {
+                StringBuilder value = new StringBuilder();
+                int i = start + 1;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw error("Unterminated quoted scalar");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == quote) {
+                        if (quote == '\'' && i < line.length() && line.charAt(i) == '\'') {
+                            value.append('\'');
+                            i++;
+                            continue;
+                        }
+                        break;
+                    }
+                    if (c == '\\' && quote == '"') {
+                        if (i >= line.length()) {
+                            throw error("Unterminated escape");
+                        }
+                        i = escape(line, i, value);
+                        continue;
+                    }
+                    value.append(c);
+                }
+                position[0] = i;
+                return value.toString();
+            }
+            int end = start;
+            while (end < line.length()) {
+                char c = line.charAt(end);
+                if (key && c == ':' && (end + 1 == line.length() || line.charAt(end + 1) == ' ')) {
+                    break;
+                }
+                if (c == '#' && end > start && line.charAt(end - 1) == ' ') {
+                    break;
+                }
+                end++;
+            }
+            position[0] = end;
+            return line.substring(start, end).trim();
+        }
+
+        private int escape(String line, int i, StringBuilder value) throws IOException {
+            char c = line.charAt(i++);
+            switch (c) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case '0':
+                    value.append('\0');
+                    break;
+                case 'u':
+                    if (i + 4 > line.length()) {
+                        throw error("Unterminated escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    i += 4;
+                    break;
+                default:
+                    value.append(c);
+            }
+            return i;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " on line " + lineNumber);
+        }
+    }
+
+    private static final class Mapping {
+        final int indent;
+        // Prepended to the keys of the mapping, ending in '.' unless it is the document itself.
+        final String prefix;
+
+        Mapping(int indent, String prefix) {
+            this.indent = indent;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * Reads a JSON object whose values are strings or further objects. Numbers and booleans are read as their text,
+     * {@code null} values are skipped, and arrays are rejected.
+     */
+    static void json(Reader reader, BiConsumer<String, String> messages) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        if (json.peek() != '{') {
+            throw json.error("Expected an object");
+        }
+        json.object("", messages);
+        if (json.peek() != -1) {
+            throw json.error("Unexpected text after the object");
+        }
+    }
+
+    private static final class JsonReader {
+        private final Reader reader;
+        private final StringBuilder token = new StringBuilder();
+        private int lookahead = -2;
+        private int lineNumber = 1;
+
+        JsonReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        void object(String prefix, BiConsumer<String, String> messages) throws IOException {
+            expect('{');
+            if (peek() == '}') {
+                read();
+                return;
+            }
+            do {
+                if (peek() != '"') {
+                    throw error("Expected a key");
+                }
+                String key = prefix + string();
+                expect(':');
+                int c = peek();
+                if (c == '{') {
+                    object(key + ".", messages);
+                } else if (c == '"') {
+                    messages.accept(key, string());
+                } else if (c == '[') {
+                    throw error("Arrays are not supported");
+                } else {
+                    String literal = literal();
+                    if (!literal.equals("null")) {
+                        messages.accept(key, literal);
+                    }
+                }
+            } while (accept(','));
+            expect('}');
+        }
+
+        private String string() throws IOException {
+            expect('"');
+            token.setLength(0);
+            while (true) {
+                int c = reader.read();
+                if (c == -1 || c == '\n') {
+                    throw error("Unterminated string");
+                }
+                if (c == '"') {
+                    return token.toString();
+                }
+                if (c == '\\') {
+                    c = reader.read();
+                    switch (c) {
+                        case 'n':
+                            token.append('\n');
+                            break;
+                        case 't':
+                            token.append('\t');
+                            break;
+                        case 'r':
+                            token.append('\r');
+                            break;
+                        case 'b':
+                            token.append('\b');
+                            break;
+                        case 'f':
+                            token.append('\f');
+                            break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) {
+                                int digit = reader.read();
+                                if (Character.digit(digit, 16) < 0) {
+                                    throw error("Invalid unicode escape");
+                                }
+                                hex[i] = (char) digit;
+                            }
+                            token.append((char) Integer.parseInt(new String(hex), 16));
+                            break;
+                        case '"':
+                        case '\\':
+                        case '/':
+                            token.append((char) c);
+                            break;
+                        default:
+                            throw error("Invalid escape");
+                    }
+                    continue;
+                }
+                token.append((char) c);
+            }
+        }
+
+        private String literal() throws IOException {
+            peek();
+            token.setLength(0);
+            while (lookahead != -1 && lookahead != ',' && lookahead != '}' && !Character.isWhitespace(lookahead)) {
+                token.append((char) lookahead);
+                lookahead = reader.read();
+            }
+            String literal = token.toString();
+            if (!literal.equals("true") && !literal.equals("false") && !literal.equals("null")
+                    && !literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                throw error("Invalid value '" + literal + "'");
+            }
+            return literal;
+        }
+
+        private boolean accept(char c) throws IOException {
+            if (peek() == c) {
+                read();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            read();
+        }
+
+        /**
+         * @return the next character that is not whitespace, without consuming it, or -1 at the end.
+         */
+        int peek() throws IOException {
+            if (lookahead == -2) {
+                lookahead = reader.read();
+            }
+            while (lookahead != -1 && Character.isWhitespace(lookahead)) {
+                if (lookahead == '\n') {
+                    lineNumber++;
+                }
+                lookahead = reader.read();
+            }
+            return lookahead;
+        }
+
+        private void read() {
+            lookahead = -2;
+        }
+
+        IOException error(String message) {
+            return new IOException(message + " on line " + lineNumber);
+        }
+    }
+
+    private static int skipSpaces(String line, int start) {
+        while (start < line.length() && (line.charAt(start) == ' ' || line.charAt(start) == '\t'
+                || line.charAt(start) == '\f')) {
+            start++;
+        }
+        return start;
+    }
+}
@@ -0,0 +1,28 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Supplies the messages of a locale the first time a {@link MessageSet} needs them, see
+ * {@link MessageSet#setCatalogProvider(CatalogProvider, Duration, long)}.
+ */
+@FunctionalInterface
+public interface CatalogProvider {
+    /**
+     * Called once for a locale, and again only if it was evicted since or the last call threw. Callers that need the
+     * same locale in the meantime wait for this call instead of making their own. Locales without messages count as
+     * loaded as well, though only a bounded number of them is remembered.
+     * <p>
+     * Must not look up messages of the set it is loading for in {@code locale}, or in a locale that falls back to it,
+     * as that lookup would wait for this call to return. Neither may it look up a locale that another thread is
+     * loading while that thread's provider call looks up this one. Such a lookup throws an
+     * {@link IllegalStateException} instead, which fails this load.
+     *
+     * @return the messages of {@code locale} by key, or null if there are none.
+     */
+    @Nullable Map<String, String> load(Locale locale);
+}
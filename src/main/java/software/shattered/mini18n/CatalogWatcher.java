@@ -0,0 +1,208 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a {@link MessageSet} up to date with a directory of translation files, laid out and read the same way as by
+ * {@link CatalogLoader}: one file per locale named after its language tag, such as {@code en-US.properties} or
+ * {@code en_US.yml}, or any number of files under a directory named after it, such as {@code en-US/shop.json}.
+ * <p>
+ * When a file changes, only the files of its locale are read again and compared with what was last read from them.
+ * Changed and new keys are added to the set, and keys that were removed from the files are removed from the set, all
+ * in one publish; the rest of the set, including messages linked to unchanged ones through {@code %message:%}, stays
+ * as it is. Lookups never wait for a reload, they see either the old or the new messages of the locale.
+ * <p>
+ * Changes are picked up by a daemon thread until the watcher is closed. A locale whose files cannot be read, or whose
+ * changes are rejected by the set, is passed to the error handler and left as it was last read.
+ */
+public final class CatalogWatcher implements Closeable {
+    // How long to wait for more events after one, so a file written in several steps is read once.
+    private static final long SettleMillis = 50;
+
+    private final MessageSet set;
+    private final Path directory;
+    private final Consumer<Exception> errorHandler;
+    private final WatchService watchService;
+    private final Thread thread;
+    // The directory each key watches, as the directory and the locale directories under it are watched separately.
+    private final Map<WatchKey, Path> watched = new ConcurrentHashMap<>();
+    // The sources of the messages last read for each locale, guarded by this.
+    private final Map<Locale, Map<String, String>> current = new HashMap<>();
+
+    private CatalogWatcher(MessageSet set, Path directory, Consumer<Exception> errorHandler) throws IOException {
+        this.set = set;
+        this.directory = directory;
+        this.errorHandler = errorHandler;
+        this.watchService = directory.getFileSystem().newWatchService();
+        this.thread = new Thread(this::run, "mini18n-catalog-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Same as {@link #watch(MessageSet, Path, Consumer)}, passing errors to the watcher thread's uncaught exception
+     * handler.
+     */
+    public static CatalogWatcher watch(@NotNull MessageSet set, @NotNull Path directory) throws IOException {
+        return watch(set, directory, e -> {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        });
+    }
+
+    /**
+     * Adds the messages of every file in {@code directory} to {@code set}, and starts watching it for changes.
+     */
+    public static CatalogWatcher watch(@NotNull MessageSet set, @NotNull Path directory,
+                                       @NotNull Consumer<Exception> errorHandler) throws IOException {
+        CatalogWatcher watcher = new CatalogWatcher(set, directory, errorHandler);
+        try {
+            watcher.reload();
+        } catch (IOException | RuntimeException e) {
+            watcher.close();
+            throw e;
+        }
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Reads every file in the directory again now, instead of waiting for it to be reported as changed.
+     */
+    public synchronized void reload() throws IOException {
+        // Directories created while events were lost are not watched yet.
+        register(directory);
+        Set<Locale> locales = new LinkedHashSet<>(CatalogLoader.find(directory).keySet());
+        // Including locales whose files were deleted since, whose messages are removed.
+        locales.addAll(current.keySet());
+        for (Locale locale : locales) {
+            reload(locale);
+        }
+    }
+
+    /**
+     * Reads the files of the locale {@code file} belongs to again now, removing the messages of any that no longer
+     * exist. {@code file} is resolved against the watched directory.
+     *
+     * @return true if any message changed.
+     */
+    public synchronized boolean reload(@NotNull Path file) throws IOException {
+        Locale locale = CatalogLoader.localeOf(directory, directory.resolve(file));
+        return locale != null && reload(locale);
+    }
+
+    private boolean reload(Locale locale) throws IOException {
+        Map<String, MessageTemplate> next = CatalogLoader.read(directory, locale);
+        Map<String, String> previous = current.getOrDefault(locale, Collections.emptyMap());
+        Map<String, MessageTemplate> changed = new HashMap<>();
+        Map<String, String> sources = new HashMap<>(next.size() * 4 / 3 + 1);
+        for (Map.Entry<String, MessageTemplate> entry : next.entrySet()) {
+            String source = entry.getValue().getSource();
+            sources.put(entry.getKey(), source);
+            if (!source.equals(previous.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String key : previous.keySet()) {
+            if (!next.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return false;
+        }
+        set.apply(locale, changed, removed);
+        if (sources.isEmpty()) {
+            current.remove(locale);
+        } else {
+            current.put(locale, sources);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(SettleMillis);
+                Set<Path> files = new LinkedHashSet<>();
+                List<WatchKey> cancelled = new ArrayList<>();
+                boolean overflow = false;
+                for (; key != null; key = watchService.poll(SettleMillis, TimeUnit.MILLISECONDS)) {
+                    Path parent = watched.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || parent == null) {
+                            overflow = true;
+                        } else {
+                            files.add(parent.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        cancelled.add(key);
+                    }
+                }
+                for (Path file : files) {
+                    // A deleted directory no longer tells which locale it held.
+                    overflow |= watched.containsValue(file) && !Files.isDirectory(file);
+                }
+                watched.keySet().removeAll(cancelled);
+                if (overflow) {
+                    reportErrors(this::reload);
+                } else {
+                    for (Path file : files) {
+                        reportErrors(() -> {
+                            if (Files.isDirectory(file)) {
+                                register(file);
+                            }
+                            reload(file);
+                        });
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed.
+        }
+    }
+
+    private void reportErrors(Reload reload) {
+        try {
+            reload.run();
+        } catch (IOException | RuntimeException e) {
+            errorHandler.accept(e);
+        }
+    }
+
+    /**
+     * Watches {@code path} and every directory under it.
+     */
+    private void register(Path path) throws IOException {
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path candidate : (Iterable<Path>) walk::iterator) {
+                if (Files.isDirectory(candidate)) {
+                    watched.put(candidate.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), candidate);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Reload {
+        void run() throws IOException;
+    }
+}
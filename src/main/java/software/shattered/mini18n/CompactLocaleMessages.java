@@ -0,0 +1,92 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Messages of one locale held in an array indexed by the ids of a {@link KeyDictionary} shared by every locale of a
+ * set, instead of in maps of their own. A key's own message is the template its entry was built from, so no map of
+ * messages by key is kept either.
+ */
+final class CompactLocaleMessages extends LocaleMessages {
+    private final KeyDictionary keys;
+    private final MessageEntry[] entries;
+    private final int messageCount;
+    private final List<String> metaCallIds;
+    private final Map<String, MessageTemplate> messages = new MessagesView();
+
+    // Must hold the set's write lock, which guards adding keys.
+    CompactLocaleMessages(Locale locale, Map<String, MessageTemplate> messages, KeyDictionary keys) {
+        super(locale);
+        this.keys = keys;
+        Map<String, MessageEntry> built = buildEntries(locale, messages);
+        int[] ids = new int[built.size()];
+        int index = 0;
+        for (String id : built.keySet()) {
+            ids[index++] = keys.add(id);
+        }
+        MessageEntry[] entries = new MessageEntry[keys.size()];
+        List<String> metaCallIds = new ArrayList<>();
+        index = 0;
+        for (MessageEntry entry : built.values()) {
+            int id = ids[index++];
+            entries[id] = entry;
+            if (entry.hasMetaCalls()) {
+                metaCallIds.add(keys.key(id));
+            }
+        }
+        this.entries = entries;
+        this.messageCount = messages.size();
+        this.metaCallIds = metaCallIds;
+    }
+
+    @Override
+    Map<String, MessageTemplate> getMessages() {
+        return messages;
+    }
+
+    @Override
+    @Nullable MessageEntry getEntry(String id) {
+        int index = keys.get(id);
+        return index >= 0 && index < entries.length ? entries[index] : null;
+    }
+
+    @Override
+    List<String> getMetaCallIds() {
+        return metaCallIds;
+    }
+
+    /**
+     * Messages by key, where a message is the template its key's own entry was built from.
+     */
+    private final class MessagesView extends AbstractMap<String, MessageTemplate> {
+        @Override
+        public MessageTemplate get(Object key) {
+            MessageEntry entry = key instanceof String ? getEntry((String) key) : null;
+            return entry == null ? null : entry.get();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return messageCount;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, MessageTemplate>> entrySet() {
+            Map<String, MessageTemplate> all = new HashMap<>(messageCount * 4 / 3 + 1);
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] != null && entries[i].get() != null) {
+                    all.put(keys.key(i), entries[i].get());
+                }
+            }
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Messages of one locale held on the heap, with every entry built up front.
+ */
+final class CompiledLocaleMessages extends LocaleMessages {
+    private final Map<String, MessageTemplate> messages;
+    private final Map<String, MessageEntry> entries;
+    private final List<String> metaCallIds;
+
+    CompiledLocaleMessages(Locale locale, Map<String, MessageTemplate> messages) {
+        super(locale);
+        this.messages = Collections.unmodifiableMap(messages);
+        Map<String, MessageEntry> entries = buildEntries(locale, messages);
+        List<String> metaCallIds = new ArrayList<>();
+        for (Map.Entry<String, MessageEntry> entry : entries.entrySet()) {
+            if (entry.getValue().hasMetaCalls()) {
+                metaCallIds.add(entry.getKey());
+            }
+        }
+        this.entries = entries;
+        this.metaCallIds = metaCallIds;
+    }
+
+    @Override
+    Map<String, MessageTemplate> getMessages() {
+        return messages;
+    }
+
+    @Override
+    @Nullable MessageEntry getEntry(String id) {
+        return entries.get(id);
+    }
+
+    @Override
+    List<String> getMetaCallIds() {
+        return metaCallIds;
+    }
+}
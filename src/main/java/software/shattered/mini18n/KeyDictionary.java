@@ -0,0 +1,56 @@
+package software.shattered.mini18n;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Numbers the message keys of a {@link MessageSet}, so compact locales can keep their entries in arrays indexed by
+ * key and share one copy of each key string. Ids are never reused, so a key keeps its id after it is removed from
+ * every locale.
+ * <p>
+ * Keys are added under the set's write lock and read without locking.
+ */
+final class KeyDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] keys = new String[64];
+    // Guarded by the set's write lock.
+    private int size;
+
+    /**
+     * @return the id of {@code key}, or -1 if it has none yet.
+     */
+    int get(String key) {
+        Integer id = ids.get(key);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the id of {@code key}, given a new one if it has none yet.
+     */
+    int add(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        String[] keys = this.keys;
+        if (size == keys.length) {
+            this.keys = keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[size] = key;
+        // Published after the key, so a reader that finds the id also finds the key.
+        ids.put(key, size);
+        return size++;
+    }
+
+    String key(int id) {
+        return keys[id];
+    }
+
+    /**
+     * @return one more than the highest id given so far. Must hold the set's write lock.
+     */
+    int size() {
+        return size;
+    }
+}
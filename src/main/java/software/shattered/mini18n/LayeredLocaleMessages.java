@@ -0,0 +1,145 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.lang.PluralCategory;
+
+import java.util.*;
+
+/**
+ * Messages of one locale as another {@link LocaleMessages} with a few messages added or replaced on top, so publishing
+ * a single added message does not build the whole locale again. Once the messages on top outgrow
+ * {@link #maxLayerSize(int)}, the locale is built again as a whole.
+ */
+final class LayeredLocaleMessages extends LocaleMessages {
+    private static final int MinLayerSize = 16;
+
+    private final LocaleMessages base;
+    private final Map<String, MessageTemplate> layer;
+    // The entry of every key the layer belongs to, built from both the base and the layer.
+    private final Map<String, MessageEntry> entries;
+    private final List<String> metaCallIds;
+    private final int messageCount;
+    private final Map<String, MessageTemplate> messages = new MessagesView();
+
+    private LayeredLocaleMessages(LocaleMessages base, Map<String, MessageTemplate> layer,
+                                  Map<String, MessageEntry> entries, List<String> metaCallIds, int messageCount) {
+        super(base.getLocale());
+        this.base = base;
+        this.layer = layer;
+        this.entries = entries;
+        this.metaCallIds = metaCallIds;
+        this.messageCount = messageCount;
+    }
+
+    /**
+     * @return {@code current} with {@code changes} on top, or null if there would be too many messages on top and the
+     *         locale should be built again as a whole.
+     */
+    static @Nullable LayeredLocaleMessages of(LocaleMessages current, Map<String, MessageTemplate> changes) {
+        LayeredLocaleMessages layered = current instanceof LayeredLocaleMessages
+                ? (LayeredLocaleMessages) current : null;
+        LocaleMessages base = layered != null ? layered.base : current;
+        Map<String, MessageTemplate> layer = layered != null ? new HashMap<>(layered.layer) : new HashMap<>();
+        int messageCount = current.getMessages().size();
+        for (Map.Entry<String, MessageTemplate> change : changes.entrySet()) {
+            if (layer.put(change.getKey(), change.getValue()) == null
+                    && base.getMessages().get(change.getKey()) == null) {
+                messageCount++;
+            }
+        }
+        if (layer.size() > maxLayerSize(base.getMessages().size())) {
+            return null;
+        }
+        Map<String, MessageEntry> entries = layered != null ? new HashMap<>(layered.entries) : new HashMap<>();
+        Set<String> metaCallIds = new LinkedHashSet<>(current.getMetaCallIds());
+        for (String key : changes.keySet()) {
+            forEachEntry(key, (id, variant) -> {
+                MessageEntry entry = buildEntry(base, layer, id);
+                entries.put(id, entry);
+                if (entry.hasMetaCalls()) {
+                    metaCallIds.add(id);
+                } else {
+                    metaCallIds.remove(id);
+                }
+            });
+        }
+        return new LayeredLocaleMessages(base, Collections.unmodifiableMap(layer), entries,
+                Collections.unmodifiableList(new ArrayList<>(metaCallIds)), messageCount);
+    }
+
+    /**
+     * @return how many messages may be on top of {@code baseSize} ones: enough that rebuilding the locale every so
+     *         many adds costs about as much as copying the layer on each of them.
+     */
+    static int maxLayerSize(int baseSize) {
+        return Math.max(MinLayerSize, (int) Math.sqrt(baseSize));
+    }
+
+    private static MessageEntry buildEntry(LocaleMessages base, Map<String, MessageTemplate> layer, String id) {
+        MessageEntry.Builder builder = new MessageEntry.Builder();
+        setIfPresent(builder, 0, lookup(base, layer, id));
+        for (int start = 0; start < PluralCategory.Count; start++) {
+            PluralCategory category = PluralCategory.byIndex(start);
+            setIfPresent(builder, MessageEntry.variantOf(category), lookup(base, layer, id + "." + category.getId()));
+            for (int end = 0; end < PluralCategory.Count; end++) {
+                PluralCategory endCategory = PluralCategory.byIndex(end);
+                setIfPresent(builder, MessageEntry.variantOf(category, endCategory),
+                        lookup(base, layer, id + "." + category.getId() + "+" + endCategory.getId()));
+            }
+        }
+        return builder.build(base.getLocale());
+    }
+
+    private static void setIfPresent(MessageEntry.Builder builder, int variant, @Nullable MessageTemplate template) {
+        if (template != null) {
+            builder.set(variant, template);
+        }
+    }
+
+    private static @Nullable MessageTemplate lookup(LocaleMessages base, Map<String, MessageTemplate> layer,
+                                                    String key) {
+        MessageTemplate template = layer.get(key);
+        return template != null ? template : base.getMessages().get(key);
+    }
+
+    @Override
+    Map<String, MessageTemplate> getMessages() {
+        return messages;
+    }
+
+    @Override
+    @Nullable MessageEntry getEntry(String id) {
+        MessageEntry entry = entries.get(id);
+        return entry != null ? entry : base.getEntry(id);
+    }
+
+    @Override
+    List<String> getMetaCallIds() {
+        return metaCallIds;
+    }
+
+    private final class MessagesView extends AbstractMap<String, MessageTemplate> {
+        @Override
+        public @Nullable MessageTemplate get(Object key) {
+            return key instanceof String ? lookup(base, layer, (String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return messageCount;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, MessageTemplate>> entrySet() {
+            Map<String, MessageTemplate> all = new HashMap<>(base.getMessages());
+            all.putAll(layer);
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+}
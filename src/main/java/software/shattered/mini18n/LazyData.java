@@ -0,0 +1,143 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Resolves {@link Supplier} values of render data as a render reads them, calling each supplier at most once per
+ * render. Values that are never read, such as one only used by another plural variant, are never computed.
+ * <p>
+ * Renders on one thread keep resolved values in a memo scoped by {@link #enter()} and {@link #exit()} to the
+ * outermost render, which is only created once a supplier is read, so data without suppliers costs nothing. A
+ * broadcast renders the same data on several threads instead, so {@link #wrap} gives it a view with its own memo.
+ */
+final class LazyData extends AbstractMap<String, Object> {
+    private static final ThreadLocal<Scope> Scopes = ThreadLocal.withInitial(Scope::new);
+
+    private final Map<String, Object> data;
+    // Values resolved through this view, or null if it resolves through the render scope of the reading thread.
+    private final @Nullable Map<Object, Object> resolved;
+
+    private LazyData(Map<String, Object> data, boolean shared) {
+        this.data = data;
+        this.resolved = shared ? new HashMap<>() : null;
+    }
+
+    /**
+     * @return a view of {@code data} that resolves each supplier once for every render through it, on any thread.
+     */
+    static @Nullable Map<String, Object> wrap(@Nullable Map<String, Object> data) {
+        if (data == null || data.isEmpty() || data instanceof LazyData) {
+            return data;
+        }
+        return new LazyData(data, true);
+    }
+
+    /**
+     * @return a view of {@code data} that resolves suppliers in the current render, for meta processors that read
+     *         the data themselves.
+     */
+    static @Nullable Map<String, Object> view(@Nullable Map<String, Object> data) {
+        if (data == null || data.isEmpty() || data instanceof LazyData) {
+            return data;
+        }
+        return new LazyData(data, false);
+    }
+
+    /**
+     * @return the data this view reads from, with its suppliers unresolved.
+     */
+    static @Nullable Map<String, Object> unwrap(@Nullable Map<String, Object> data) {
+        return data instanceof LazyData ? ((LazyData) data).data : data;
+    }
+
+    /**
+     * @return the value of {@code key} in {@code data}, after calling its supplier if it has one.
+     */
+    static @Nullable Object get(Map<String, Object> data, Object key) {
+        Object value = data.get(key);
+        return value instanceof Supplier ? resolve(data, key, (Supplier<?>) value) : value;
+    }
+
+    /**
+     * Starts a render with data on this thread, which must be ended by {@link #exit()}.
+     */
+    static void enter() {
+        Scopes.get().depth++;
+    }
+
+    static void exit() {
+        Scope scope = Scopes.get();
+        if (--scope.depth == 0) {
+            scope.resolved = null;
+        }
+    }
+
+    private static @Nullable Object resolve(Map<String, Object> data, Object key, Supplier<?> supplier) {
+        Scope scope = Scopes.get();
+        if (scope.depth == 0) {
+            // Read outside of a render, so there is nothing to keep it for.
+            return supplier.get();
+        }
+        if (scope.resolved == null) {
+            scope.resolved = new IdentityHashMap<>();
+        }
+        Map<Object, Object> values = scope.resolved.computeIfAbsent(data, ignored -> new HashMap<>());
+        if (values.containsKey(key)) {
+            return values.get(key);
+        }
+        Object value = supplier.get();
+        values.put(key, value);
+        return value;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (resolved == null) {
+            return get(data, key);
+        }
+        Object value = data.get(key);
+        return value instanceof Supplier ? resolveShared(key, (Supplier<?>) value) : value;
+    }
+
+    // Synchronized as a broadcast may render the same data on several threads.
+    private synchronized Object resolveShared(Object key, Supplier<?> supplier) {
+        if (resolved.containsKey(key)) {
+            return resolved.get(key);
+        }
+        Object value = supplier.get();
+        resolved.put(key, value);
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Resolves every value, for meta processors that read all of the data.
+     */
+    @Override
+    public @NotNull Set<Entry<String, Object>> entrySet() {
+        Map<String, Object> entries = new LinkedHashMap<>();
+        for (String key : data.keySet()) {
+            entries.put(key, get(key));
+        }
+        return Collections.unmodifiableMap(entries).entrySet();
+    }
+
+    private static final class Scope {
+        private int depth;
+        // Resolved values by the data they were read from, or null until the current render reads a supplier.
+        private @Nullable Map<Map<String, Object>, Map<Object, Object>> resolved;
+    }
+}
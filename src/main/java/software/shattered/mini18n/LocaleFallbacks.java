@@ -0,0 +1,77 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Decides which locales to try, in order, for a requested locale. By default a locale falls back by dropping its
+ * variant, region and script ({@code de-Latn-CH-1996 -> de-Latn-CH -> de-Latn -> de}) and then to the default locale.
+ * Explicit chains replace the derived parents of a locale. Instances are immutable.
+ */
+final class LocaleFallbacks {
+    static final LocaleFallbacks None = new LocaleFallbacks(Collections.emptyMap(), null);
+
+    private final Map<Locale, List<Locale>> explicit;
+    private final @Nullable Locale defaultLocale;
+
+    private LocaleFallbacks(Map<Locale, List<Locale>> explicit, @Nullable Locale defaultLocale) {
+        this.explicit = explicit;
+        this.defaultLocale = defaultLocale;
+    }
+
+    LocaleFallbacks withDefaultLocale(@Nullable Locale defaultLocale) {
+        return new LocaleFallbacks(explicit, defaultLocale);
+    }
+
+    LocaleFallbacks withChain(Locale locale, @Nullable List<Locale> fallbacks) {
+        Map<Locale, List<Locale>> explicit = new HashMap<>(this.explicit);
+        if (fallbacks == null) {
+            explicit.remove(locale);
+        } else {
+            explicit.put(locale, Collections.unmodifiableList(new ArrayList<>(fallbacks)));
+        }
+        return new LocaleFallbacks(Collections.unmodifiableMap(explicit), defaultLocale);
+    }
+
+    List<Locale> chain(Locale locale) {
+        Set<Locale> chain = new LinkedHashSet<>();
+        addParents(chain, locale);
+        if (defaultLocale != null) {
+            addParents(chain, defaultLocale);
+        }
+        return new ArrayList<>(chain);
+    }
+
+    private void addParents(Set<Locale> chain, Locale locale) {
+        chain.add(locale);
+        List<Locale> configured = explicit.get(locale);
+        if (configured != null) {
+            chain.addAll(configured);
+            return;
+        }
+        String language = locale.getLanguage();
+        String script = locale.getScript();
+        String country = locale.getCountry();
+        if (!locale.getVariant().isEmpty() || locale.hasExtensions()) {
+            chain.add(build(language, script, country));
+        }
+        if (!country.isEmpty()) {
+            chain.add(build(language, script, ""));
+        }
+        if (!script.isEmpty()) {
+            chain.add(new Locale(language));
+        }
+    }
+
+    private static Locale build(String language, String script, String country) {
+        if (script.isEmpty()) {
+            return new Locale(language, country);
+        }
+        try {
+            return new Locale.Builder().setLanguage(language).setScript(script).setRegion(country).build();
+        } catch (IllformedLocaleException e) {
+            return new Locale(language, country);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the locales of a {@link MessageSet} from a {@link CatalogProvider} when they are first requested, and evicts
+ * them again once they have been idle for too long or the loaded locales take more than their memory budget.
+ * <p>
+ * Each requested locale remembers the loads of its fallback chain, so a lookup for a loaded locale costs a map
+ * access and, at most every {@link #MaxTouchInterval}, marking those loads as used. Locales the provider has no
+ * messages for are remembered too, so they are not asked for again on every lookup, but only up to
+ * {@link #MaxEmptyLoads} of them; the least recently used are forgotten first.
+ */
+final class LocaleLoader {
+    private static final long MaxTouchInterval = 1_000_000_000L;
+    private static final int MaxRequestedLocales = 256;
+    private static final int MaxEmptyLoads = 256;
+    private static final int MessageBytes = 160;
+
+    private final MessageSet set;
+    private final CatalogProvider provider;
+    private final long maxIdleNanos;
+    private final long maxBytes;
+    private final long touchInterval;
+    private final Map<Locale, Load> loads = new ConcurrentHashMap<>();
+    private final Map<Locale, Load[]> requested = new ConcurrentHashMap<>();
+    private final AtomicLong loadedBytes = new AtomicLong();
+    private final AtomicInteger emptyLoads = new AtomicInteger();
+    private final AtomicLong lastIdleCheck = new AtomicLong(System.nanoTime());
+    // The load each thread is waiting for, so a wait that would never end can be refused.
+    private final Map<Thread, Load> waiting = new ConcurrentHashMap<>();
+
+    LocaleLoader(MessageSet set, CatalogProvider provider, long maxIdleNanos, long maxBytes) {
+        this.set = set;
+        this.provider = provider;
+        this.maxIdleNanos = maxIdleNanos;
+        this.maxBytes = maxBytes;
+        this.touchInterval = Math.min(MaxTouchInterval, maxIdleNanos / 4);
+    }
+
+    /**
+     * Loads {@code locale} and the locales it falls back to, unless that already happened, and marks them as used.
+     */
+    void ensureLoaded(Locale locale) {
+        long now = System.nanoTime();
+        Load[] chain = requested.get(locale);
+        if (chain == null || isEvicted(chain)) {
+            chain = request(locale);
+        }
+        for (Load load : chain) {
+            if (now - load.lastAccess > touchInterval) {
+                load.lastAccess = now;
+            }
+        }
+        long lastCheck = lastIdleCheck.get();
+        if (maxIdleNanos != Long.MAX_VALUE && now - lastCheck > maxIdleNanos / 2
+                && lastIdleCheck.compareAndSet(lastCheck, now)) {
+            evictIdle(now);
+        }
+    }
+
+    /**
+     * Forgets the loads each requested locale resolved to, after its fallbacks changed.
+     */
+    void clearRequests() {
+        requested.clear();
+    }
+
+    /**
+     * Keeps {@code locale} loaded for good, once messages were added to it directly.
+     */
+    void pin(Locale locale) {
+        Load load = loads.get(locale);
+        if (load != null) {
+            load.pinned = true;
+        }
+    }
+
+    /**
+     * @return the number of locales evicted for being idle.
+     */
+    int evictIdle(long now) {
+        int evicted = 0;
+        synchronized (this) {
+            for (Load load : new ArrayList<>(loads.values())) {
+                if (now - load.lastAccess > maxIdleNanos && evict(load)) {
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    private static boolean isEvicted(Load[] chain) {
+        for (Load load : chain) {
+            if (load.evicted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Load[] request(Locale locale) {
+        List<Locale> locales = set.getFallbackChain(locale);
+        Load[] chain = new Load[locales.size()];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = load(locales.get(i));
+        }
+        if (requested.size() >= MaxRequestedLocales) {
+            requested.clear();
+        }
+        requested.put(locale, chain);
+        return chain;
+    }
+
+    private Load load(Locale locale) {
+        Load load = loads.get(locale);
+        if (load == null) {
+            Load created = new Load(locale);
+            load = loads.putIfAbsent(locale, created);
+            if (load == null) {
+                run(created);
+                return created;
+            }
+        }
+        Thread current = Thread.currentThread();
+        if (load.loadingThread == current) {
+            throw new IllegalStateException("The catalog provider looked up messages of "
+                    + load.locale.toLanguageTag() + " while loading them");
+        }
+        // Registered before checking, so of two threads about to wait for each other at least one sees the other.
+        waiting.put(current, load);
+        try {
+            if (waitsFor(load, current)) {
+                throw new IllegalStateException("The catalog provider looked up messages of "
+                        + load.locale.toLanguageTag() + " while another thread loading them waits for this one");
+            }
+            load.done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            waiting.remove(current);
+        }
+        return load;
+    }
+
+    /**
+     * @return true if the thread running {@code load} is waiting, directly or through other loads, for a load that
+     *         {@code thread} is running.
+     */
+    private boolean waitsFor(Load load, Thread thread) {
+        // Bounded, as the loads walked through may finish and be waited for again while walking.
+        for (int i = 0; i <= waiting.size(); i++) {
+            Thread loading = load.loadingThread;
+            if (loading == null) {
+                return false;
+            }
+            if (loading == thread) {
+                return true;
+            }
+            Load next = waiting.get(loading);
+            if (next == null) {
+                return false;
+            }
+            load = next;
+        }
+        return false;
+    }
+
+    private void run(Load load) {
+        try {
+            Map<String, String> messages = provider.load(load.locale);
+            if (messages == null || messages.isEmpty()) {
+                load.empty = true;
+            } else {
+                if (!set.addLoaded(load.locale, messages)) {
+                    load.pinned = true;
+                }
+                long bytes = (long) MessageBytes * messages.size();
+                for (Map.Entry<String, String> entry : messages.entrySet()) {
+                    bytes += 2L * (entry.getKey().length() + entry.getValue().length());
+                }
+                load.bytes = bytes;
+                loadedBytes.addAndGet(bytes);
+            }
+        } catch (RuntimeException | Error e) {
+            loads.remove(load.locale, load);
+            load.done.completeExceptionally(e);
+            throw e;
+        } finally {
+            load.loadingThread = null;
+        }
+        load.lastAccess = System.nanoTime();
+        load.done.complete(null);
+        if (load.empty && emptyLoads.incrementAndGet() > MaxEmptyLoads) {
+            evictEmpty();
+        }
+        if (loadedBytes.get() > maxBytes) {
+            evictOverBudget(load);
+        }
+    }
+
+    /**
+     * Forgets the least recently used locales without messages, down to three quarters of {@link #MaxEmptyLoads} so
+     * this does not run on every new locale.
+     */
+    private void evictEmpty() {
+        synchronized (this) {
+            List<Load> candidates = new ArrayList<>();
+            for (Load load : loads.values()) {
+                if (load.empty) {
+                    candidates.add(load);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(load -> load.lastAccess));
+            for (Load load : candidates) {
+                if (emptyLoads.get() <= MaxEmptyLoads * 3 / 4) {
+                    break;
+                }
+                evict(load);
+            }
+        }
+    }
+
+    private void evictOverBudget(Load loaded) {
+        synchronized (this) {
+            List<Load> candidates = new ArrayList<>(loads.values());
+            candidates.sort(Comparator.comparingLong(load -> load.lastAccess));
+            for (Load load : candidates) {
+                if (loadedBytes.get() <= maxBytes) {
+                    break;
+                }
+                if (load != loaded) {
+                    evict(load);
+                }
+            }
+        }
+    }
+
+    // Must hold this.
+    private boolean evict(Load load) {
+        if (load.pinned || !load.done.isDone() || load.done.isCompletedExceptionally()) {
+            return false;
+        }
+        if (load.bytes > 0 && !set.evict(load.locale)) {
+            // Dropping the locale would let a message reach itself through references.
+            load.pinned = true;
+            return false;
+        }
+        load.evicted = true;
+        loads.remove(load.locale, load);
+        loadedBytes.addAndGet(-load.bytes);
+        if (load.empty) {
+            emptyLoads.decrementAndGet();
+        }
+        return true;
+    }
+
+    private static final class Load {
+        private final Locale locale;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile long lastAccess = System.nanoTime();
+        private volatile boolean pinned;
+        private volatile boolean evicted;
+        // The thread that created this load and calls the provider, until the call returns.
+        private volatile @Nullable Thread loadingThread = Thread.currentThread();
+        private long bytes;
+        private boolean empty;
+
+        private Load(Locale locale) {
+            this.locale = locale;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.lang.PluralCategory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The published messages of one locale. Keys ending in a plural category ({@code dollars.one}) or a range of them
+ * ({@code dollars.one+other}) are also folded into the {@link MessageEntry} of their base key, so a counted lookup
+ * does not need to build the {@code base.variant} key.
+ */
+abstract class LocaleMessages {
+    private final Locale locale;
+
+    LocaleMessages(Locale locale) {
+        this.locale = locale;
+    }
+
+    Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return every message by its key, as it was added.
+     */
+    abstract Map<String, MessageTemplate> getMessages();
+
+    abstract @Nullable MessageEntry getEntry(String id);
+
+    /**
+     * @return the keys of the entries with a meta call in any of their templates, which are the only ones linking
+     * can change.
+     */
+    abstract List<String> getMetaCallIds();
+
+    /**
+     * @return the entry of every key in {@code messages}, and of every base key one of them is a variant of.
+     */
+    static Map<String, MessageEntry> buildEntries(Locale locale, Map<String, MessageTemplate> messages) {
+        Map<String, MessageEntry.Builder> builders = new HashMap<>(messages.size() * 4 / 3 + 1);
+        for (Map.Entry<String, MessageTemplate> entry : messages.entrySet()) {
+            MessageTemplate template = entry.getValue();
+            forEachEntry(entry.getKey(), (id, variant) ->
+                    builders.computeIfAbsent(id, key -> new MessageEntry.Builder()).set(variant, template));
+        }
+        Map<String, MessageEntry> entries = new HashMap<>(builders.size() * 4 / 3 + 1);
+        for (Map.Entry<String, MessageEntry.Builder> entry : builders.entrySet()) {
+            entries.put(entry.getKey(), entry.getValue().build(locale));
+        }
+        return entries;
+    }
+
+    /**
+     * Calls {@code action} with every entry the message under {@code key} belongs to, and the variant it is there as
+     * numbered by {@link MessageEntry#variantOf}: its own entry as 0, and possibly its base key's entry.
+     */
+    static void forEachEntry(String key, ObjIntConsumer<String> action) {
+        action.accept(key, 0);
+        int dot = key.lastIndexOf('.');
+        if (dot < 0) {
+            return;
+        }
+        String suffix = key.substring(dot + 1);
+        int plus = suffix.indexOf('+');
+        if (plus < 0) {
+            PluralCategory category = PluralCategory.forId(suffix);
+            if (category != null) {
+                action.accept(key.substring(0, dot), MessageEntry.variantOf(category));
+            }
+            return;
+        }
+        PluralCategory start = PluralCategory.forId(suffix.substring(0, plus));
+        PluralCategory end = PluralCategory.forId(suffix.substring(plus + 1));
+        if (start != null && end != null) {
+            action.accept(key.substring(0, dot), MessageEntry.variantOf(start, end));
+        }
+    }
+}
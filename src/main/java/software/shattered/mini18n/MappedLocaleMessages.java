@@ -0,0 +1,114 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The messages of one locale in a {@link MessageCatalog}, decoded into entries the first time each is looked up.
+ */
+final class MappedLocaleMessages extends LocaleMessages {
+    private final MessageCatalog catalog;
+    private final int entryCount;
+    private final int messageCount;
+    private final int tableMask;
+    private final int table;
+    private final int entryPositions;
+    private final Map<String, MessageEntry> decoded = new ConcurrentHashMap<>();
+    private final Map<String, MessageTemplate> messages = new MessagesView();
+    private volatile @Nullable List<String> metaCallIds;
+
+    MappedLocaleMessages(MessageCatalog catalog, Locale locale, int section) {
+        super(locale);
+        this.catalog = catalog;
+        this.entryCount = catalog.getInt(section);
+        this.messageCount = catalog.getInt(section + 4);
+        this.tableMask = catalog.getInt(section + 8);
+        this.table = section + 12;
+        this.entryPositions = table + 4 * (tableMask + 1);
+    }
+
+    @Override
+    Map<String, MessageTemplate> getMessages() {
+        return messages;
+    }
+
+    @Override
+    @Nullable MessageEntry getEntry(String id) {
+        MessageEntry entry = decoded.get(id);
+        if (entry != null) {
+            return entry;
+        }
+        int position = find(id);
+        if (position == 0) {
+            return null;
+        }
+        entry = catalog.entry(getLocale(), position);
+        MessageEntry existing = decoded.putIfAbsent(id, entry);
+        return existing == null ? entry : existing;
+    }
+
+    @Override
+    List<String> getMetaCallIds() {
+        List<String> ids = metaCallIds;
+        if (ids == null) {
+            int position = entryPositions + 4 * entryCount;
+            int count = catalog.getInt(position);
+            ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(catalog.string(catalog.getInt(position + 4 + 4 * i)));
+            }
+            metaCallIds = ids = Collections.unmodifiableList(ids);
+        }
+        return ids;
+    }
+
+    private int find(String id) {
+        int hash = id.hashCode();
+        for (int slot = MessageCatalog.spread(hash) & tableMask; ; slot = slot + 1 & tableMask) {
+            int position = catalog.getInt(table + 4 * slot);
+            if (position == 0) {
+                return 0;
+            }
+            if (catalog.getInt(position + 4) == hash && catalog.string(catalog.getInt(position)).equals(id)) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Messages by key, where a message is the template its key's own entry was built from.
+     */
+    private final class MessagesView extends AbstractMap<String, MessageTemplate> {
+        @Override
+        public MessageTemplate get(Object key) {
+            MessageEntry entry = key instanceof String ? getEntry((String) key) : null;
+            return entry == null ? null : entry.get();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return messageCount;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, MessageTemplate>> entrySet() {
+            Map<String, MessageTemplate> all = new HashMap<>(messageCount * 4 / 3 + 1);
+            for (int i = 0; i < entryCount; i++) {
+                String key = catalog.string(catalog.getInt(catalog.getInt(entryPositions + 4 * i)));
+                MessageTemplate template = get(key);
+                if (template != null) {
+                    all.put(key, template);
+                }
+            }
+            return Collections.unmodifiableMap(all).entrySet();
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A reusable holder for the values of a render, addressed by slot instead of by name. Placeholder names are mapped
+ * to slots once, by {@link #slot(String)} and when messages are compiled, so filling and reading arguments costs an
+ * array access instead of a map lookup. Counts and other numbers can be set as primitives without boxing, and values
+ * that are expensive to compute can be set {@linkplain #lazy(int, Supplier) lazily}.
+ * <p>
+ * Slots are shared by every set for the life of the class loader, and an instance's arrays reach up to the highest
+ * slot it is given, so only the first {@link #MaxSlots} names get one. Values of names without a slot are kept by
+ * name instead, which costs a map lookup as with a data map.
+ * <p>
+ * Instances are not thread-safe; keep one per thread and {@link #clear()} it between renders.
+ */
+public final class MessageArguments {
+    public static final int MaxSlots = 1024;
+    /**
+     * Returned by {@link #slot(String)} for names past {@link #MaxSlots}.
+     */
+    public static final int NoSlot = -1;
+
+    private static final Map<String, Integer> SlotsByName = new ConcurrentHashMap<>();
+    // Grown by doubling, and only read at slots published through SlotsByName.
+    private static volatile String[] SlotNames = new String[16];
+    private static int slotCount;
+
+    public static final int Count = slot("count");
+    public static final int Ordinal = slot("ordinal");
+    public static final int RangeMin = slot("range_min");
+    public static final int RangeMax = slot("range_max");
+
+    private static final byte Absent = 0;
+    private static final byte ObjectValue = 1;
+    private static final byte LongValue = 2;
+    private static final byte DoubleValue = 3;
+    private static final byte LazyValue = 4;
+
+    private byte[] kinds = new byte[8];
+    private Object[] objects = new Object[8];
+    private long[] longs = new long[8];
+    private double[] doubles = new double[8];
+    private int used;
+    // Values of names without a slot.
+    private @Nullable Map<String, Object> unslotted;
+    private @Nullable Map<String, Object> mapView;
+
+    /**
+     * @return the slot for the placeholder {@code name}, which is the same in every {@link MessageSet}, or
+     *         {@link #NoSlot} if {@link #MaxSlots} names already have one.
+     */
+    public static int slot(@NotNull String name) {
+        Integer slot = SlotsByName.get(name);
+        if (slot != null) {
+            return slot;
+        }
+        synchronized (SlotsByName) {
+            slot = SlotsByName.get(name);
+            if (slot == null) {
+                if (slotCount == MaxSlots) {
+                    return NoSlot;
+                }
+                String[] names = SlotNames;
+                if (slotCount == names.length) {
+                    names = Arrays.copyOf(names, Math.min(names.length * 2, MaxSlots));
+                }
+                slot = slotCount++;
+                names[slot] = name;
+                SlotNames = names;
+                SlotsByName.put(name, slot);
+            }
+            return slot;
+        }
+    }
+
+    static String slotName(int slot) {
+        return SlotNames[slot];
+    }
+
+    /**
+     * A {@link Supplier} is set {@linkplain #lazy(int, Supplier) lazily}, as it would be in a data map.
+     */
+    public MessageArguments set(int slot, @Nullable Object value) {
+        if (value instanceof Supplier) {
+            return lazy(slot, (Supplier<?>) value);
+        }
+        ensure(slot);
+        kinds[slot] = ObjectValue;
+        objects[slot] = value;
+        return this;
+    }
+
+    public MessageArguments set(int slot, long value) {
+        ensure(slot);
+        kinds[slot] = LongValue;
+        objects[slot] = null;
+        longs[slot] = value;
+        return this;
+    }
+
+    public MessageArguments set(int slot, double value) {
+        ensure(slot);
+        kinds[slot] = DoubleValue;
+        objects[slot] = null;
+        doubles[slot] = value;
+        return this;
+    }
+
+    public MessageArguments set(@NotNull String name, @Nullable Object value) {
+        int slot = slot(name);
+        return slot == NoSlot ? setUnslotted(name, value) : set(slot, value);
+    }
+
+    /**
+     * Sets a value that is only computed if a render reads it, such as a placeholder in the plural variant that is
+     * picked. It is computed at most once until the slot is set again or cleared.
+     */
+    public MessageArguments lazy(int slot, @NotNull Supplier<?> value) {
+        ensure(slot);
+        kinds[slot] = LazyValue;
+        objects[slot] = new Lazy(value);
+        return this;
+    }
+
+    public MessageArguments lazy(@NotNull String name, @NotNull Supplier<?> value) {
+        int slot = slot(name);
+        return slot == NoSlot ? setUnslotted(name, value) : lazy(slot, value);
+    }
+
+    private MessageArguments setUnslotted(String name, @Nullable Object value) {
+        if (unslotted == null) {
+            unslotted = new HashMap<>();
+        }
+        unslotted.put(name, value instanceof Supplier ? new Lazy((Supplier<?>) value) : value);
+        return this;
+    }
+
+    public MessageArguments count(long count) {
+        return set(Count, count);
+    }
+
+    public MessageArguments count(double count) {
+        return set(Count, count);
+    }
+
+    public MessageArguments ordinal(boolean ordinal) {
+        return set(Ordinal, ordinal ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    public MessageArguments range(long min, long max) {
+        return set(RangeMin, min).set(RangeMax, max);
+    }
+
+    public MessageArguments range(double min, double max) {
+        return set(RangeMin, min).set(RangeMax, max);
+    }
+
+    public MessageArguments remove(int slot) {
+        if (slot >= 0 && slot < used) {
+            kinds[slot] = Absent;
+            objects[slot] = null;
+        }
+        return this;
+    }
+
+    public MessageArguments clear() {
+        Arrays.fill(kinds, 0, used, Absent);
+        Arrays.fill(objects, 0, used, null);
+        used = 0;
+        if (unslotted != null) {
+            unslotted.clear();
+        }
+        return this;
+    }
+
+    public boolean has(int slot) {
+        return slot >= 0 && slot < used && kinds[slot] != Absent;
+    }
+
+    /**
+     * @return the value in {@code slot}, boxing it if it was set as a primitive.
+     */
+    public @Nullable Object get(int slot) {
+        if (slot < 0 || slot >= used) {
+            return null;
+        }
+        switch (kinds[slot]) {
+            case ObjectValue:
+                return objects[slot];
+            case LazyValue:
+                return ((Lazy) objects[slot]).get();
+            case LongValue:
+                return longs[slot];
+            case DoubleValue:
+                return doubles[slot];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return a live, read-only view of these arguments by placeholder name, as handed to meta processors.
+     */
+    public Map<String, Object> asMap() {
+        if (mapView == null) {
+            mapView = new MapView();
+        }
+        return mapView;
+    }
+
+    /**
+     * @return the arguments {@code data} is the {@link #asMap()} view of, or null if it is not one, so a meta processor
+     *         that renders another message with the map it was handed keeps rendering by slot.
+     */
+    static @Nullable MessageArguments viewedBy(@Nullable Map<String, Object> data) {
+        return data instanceof MapView ? ((MapView) data).owner() : null;
+    }
+
+    /**
+     * @return the value in {@code slot} if it was set as an object, without boxing primitives.
+     */
+    @Nullable Object getObject(int slot) {
+        return slot < used ? object(slot) : null;
+    }
+
+    // Computes a lazy value, which primitives never are.
+    private @Nullable Object object(int slot) {
+        return kinds[slot] == LazyValue ? ((Lazy) objects[slot]).get() : objects[slot];
+    }
+
+    boolean isNumber(int slot) {
+        if (slot >= used) {
+            return false;
+        }
+        byte kind = kinds[slot];
+        return kind == LongValue || kind == DoubleValue || object(slot) instanceof Number;
+    }
+
+    boolean isIntegral(int slot) {
+        if (kinds[slot] == LongValue) {
+            return true;
+        }
+        Object value = object(slot);
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    long getLong(int slot) {
+        switch (kinds[slot]) {
+            case LongValue:
+                return longs[slot];
+            case DoubleValue:
+                return (long) doubles[slot];
+            default:
+                return ((Number) object(slot)).longValue();
+        }
+    }
+
+    double getDouble(int slot) {
+        switch (kinds[slot]) {
+            case LongValue:
+                return longs[slot];
+            case DoubleValue:
+                return doubles[slot];
+            default:
+                return ((Number) object(slot)).doubleValue();
+        }
+    }
+
+    boolean isTrue(int slot) {
+        return slot < used && Boolean.TRUE.equals(object(slot));
+    }
+
+    /**
+     * @return false if the slot is not set, in which case nothing is appended.
+     */
+    boolean append(int slot, StringBuilder out) {
+        if (slot >= used) {
+            return false;
+        }
+        switch (kinds[slot]) {
+            case ObjectValue:
+            case LazyValue:
+                MessageTemplate.appendValue(out, object(slot));
+                return true;
+            case LongValue:
+                out.append(longs[slot]);
+                return true;
+            case DoubleValue:
+                out.append(doubles[slot]);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Like {@link #append(int, StringBuilder)}, but writes the value with {@code format}.
+     */
+    boolean append(int slot, ValueFormat format, Locale locale, StringBuilder out) {
+        if (slot >= used) {
+            return false;
+        }
+        switch (kinds[slot]) {
+            case ObjectValue:
+            case LazyValue:
+                format.append(locale, object(slot), out);
+                return true;
+            case LongValue:
+                format.append(locale, longs[slot], out);
+                return true;
+            case DoubleValue:
+                format.append(locale, doubles[slot], out);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return the set slots and their values as pairs, or null if a value cannot be cached. Lazy values are not,
+     *         since they would have to be computed for the key.
+     */
+    Object @Nullable [] cacheKey() {
+        if (unslotted != null && !unslotted.isEmpty()) {
+            return null;
+        }
+        int count = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (kinds[slot] == LazyValue || kinds[slot] == ObjectValue && !RenderCache.isCacheable(objects[slot])) {
+                return null;
+            }
+            if (kinds[slot] != Absent) {
+                count++;
+            }
+        }
+        Object[] values = new Object[count * 2];
+        int index = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (kinds[slot] != Absent) {
+                values[index++] = slot;
+                values[index++] = get(slot);
+            }
+        }
+        return values;
+    }
+
+    private void ensure(int slot) {
+        if (slot < 0) {
+            throw new IllegalArgumentException("Not a slot: " + slot + "; set names without a slot by name");
+        }
+        if (slot >= kinds.length) {
+            int size = Math.max(slot + 1, kinds.length * 2);
+            kinds = Arrays.copyOf(kinds, size);
+            objects = Arrays.copyOf(objects, size);
+            longs = Arrays.copyOf(longs, size);
+            doubles = Arrays.copyOf(doubles, size);
+        }
+        if (slot >= used) {
+            used = slot + 1;
+        }
+    }
+
+    private static final class Lazy {
+        private final Supplier<?> supplier;
+        private boolean resolved;
+        private @Nullable Object value;
+
+        Lazy(Supplier<?> supplier) {
+            this.supplier = supplier;
+        }
+
+        // Synchronized as a broadcast may render the same arguments on several threads.
+        synchronized @Nullable Object get() {
+            if (!resolved) {
+                value = supplier.get();
+                resolved = true;
+            }
+            return value;
+        }
+    }
+
+    private final class MapView extends AbstractMap<String, Object> {
+        private MessageArguments owner() {
+            return MessageArguments.this;
+        }
+
+        @Override
+        public Object get(Object key) {
+            Integer slot = key instanceof String ? SlotsByName.get(key) : null;
+            if (slot != null) {
+                return MessageArguments.this.get(slot);
+            }
+            Object value = unslotted == null ? null : unslotted.get(key);
+            return value instanceof Lazy ? ((Lazy) value).get() : value;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            Integer slot = key instanceof String ? SlotsByName.get(key) : null;
+            return slot != null ? has(slot) : unslotted != null && unslotted.containsKey(key);
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> entries = new LinkedHashMap<>();
+            for (int slot = 0; slot < used; slot++) {
+                if (kinds[slot] != Absent) {
+                    entries.put(slotName(slot), MessageArguments.this.get(slot));
+                }
+            }
+            if (unslotted != null) {
+                for (String name : unslotted.keySet()) {
+                    entries.put(name, get(name));
+                }
+            }
+            return Collections.unmodifiableMap(entries).entrySet();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import software.shattered.mini18n.MessageTemplate.FormattedPlaceholder;
+import software.shattered.mini18n.MessageTemplate.Literal;
+import software.shattered.mini18n.MessageTemplate.MetaCall;
+import software.shattered.mini18n.MessageTemplate.Placeholder;
+import software.shattered.mini18n.MessageTemplate.Segment;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * The messages of a {@link MessageSet} in a compiled binary form, written by {@link #write(MessageSet, Path)} and
+ * read back through a memory-mapped file by {@link #open(Path)}. Opening a catalog only reads its list of locales;
+ * a message is decoded the first time it is looked up, straight into its compiled template, so loading the catalog
+ * into an empty set with {@link MessageSet#addAll(MessageCatalog)} takes time proportional to the number of locales.
+ * <p>
+ * All numbers are big-endian ints and all positions are from the start of the file:
+ * <pre>
+ * header   magic, version, string count, string index position, locale count,
+ *          then the locale's tag and the position of its section for each locale
+ * section  entry count, message count, hash table mask, hash table of entry positions (0 if empty),
+ *          entry positions, count and keys of entries with meta calls
+ * entry    key, hash code of the key, variant count (byte), then variant (byte) and template position per variant
+ * template source, segment count, then per segment its type (byte) and its strings
+ * strings  the position of each string and of the end of the last one, then their UTF-8 bytes
+ * </pre>
+ * Strings are stored once per catalog and referred to by index.
+ */
+public final class MessageCatalog {
+    private static final int Magic = 0x4D313843;
+    private static final int Version = 2;
+    private static final int HeaderSize = 20;
+    private static final byte LiteralSegment = 0;
+    private static final byte PlaceholderSegment = 1;
+    private static final byte MetaCallSegment = 2;
+    private static final byte FormattedPlaceholderSegment = 3;
+
+    private final ByteBuffer buffer;
+    private final int stringIndex;
+    private final Map<Locale, LocaleMessages> locales;
+
+    private MessageCatalog(ByteBuffer buffer, Object source) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HeaderSize || buffer.getInt(0) != Magic) {
+            throw new IOException("Not a message catalog: " + source);
+        }
+        // Catalogs from version 1 are read the same, as they only lack formatted placeholders.
+        if (buffer.getInt(4) < 1 || buffer.getInt(4) > Version) {
+            throw new IOException("Unsupported message catalog version " + buffer.getInt(4) + ": " + source);
+        }
+        this.stringIndex = buffer.getInt(12);
+        int localeCount = buffer.getInt(16);
+        Map<Locale, LocaleMessages> locales = new LinkedHashMap<>();
+        for (int i = 0; i < localeCount; i++) {
+            int position = HeaderSize + 8 * i;
+            Locale locale = Locale.forLanguageTag(string(buffer.getInt(position)));
+            locales.put(locale, new MappedLocaleMessages(this, locale, buffer.getInt(position + 4)));
+        }
+        this.locales = Collections.unmodifiableMap(locales);
+    }
+
+    /**
+     * Maps a catalog into memory. The file must not change while the catalog or a set it was added to is in use.
+     */
+    public static MessageCatalog open(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Message catalog is too large to map: " + path);
+            }
+            return new MessageCatalog(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), path);
+        }
+    }
+
+    /**
+     * Writes the published messages of every locale in {@code set}.
+     */
+    public static void write(@NotNull MessageSet set, @NotNull Path path) throws IOException {
+        Files.write(path, new Writer().write(set.getPublishedLocales()));
+    }
+
+    public Set<Locale> getLocales() {
+        return locales.keySet();
+    }
+
+    Map<Locale, LocaleMessages> getLocaleMessages() {
+        return locales;
+    }
+
+    int getInt(int position) {
+        return buffer.getInt(position);
+    }
+
+    String string(int index) {
+        int start = buffer.getInt(stringIndex + 4 * index);
+        int end = buffer.getInt(stringIndex + 4 * index + 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    MessageEntry entry(Locale locale, int position) {
+        MessageEntry.Builder builder = new MessageEntry.Builder();
+        int count = buffer.get(position + 8);
+        for (int i = 0, variant = position + 9; i < count; i++, variant += 5) {
+            builder.set(buffer.get(variant), template(buffer.getInt(variant + 1)));
+        }
+        return builder.build(locale);
+    }
+
+    private MessageTemplate template(int position) {
+        String source = string(buffer.getInt(position));
+        int count = buffer.getInt(position + 4);
+        List<Segment> segments = new ArrayList<>(count);
+        for (int i = 0, segment = position + 8; i < count; i++) {
+            byte type = buffer.get(segment);
+            String value = string(buffer.getInt(segment + 1));
+            segment += 5;
+            switch (type) {
+                case LiteralSegment:
+                    segments.add(new Literal(value));
+                    break;
+                case PlaceholderSegment:
+                    segments.add(new Placeholder(value, MessageArguments.slot(value)));
+                    break;
+                case MetaCallSegment:
+                    segments.add(new MetaCall(value, string(buffer.getInt(segment)), source));
+                    segment += 4;
+                    break;
+                case FormattedPlaceholderSegment:
+                    String spec = string(buffer.getInt(segment));
+                    ValueFormat format = ValueFormat.parse(spec);
+                    if (format == null) {
+                        throw new IllegalStateException("Unknown format " + spec + " at " + segment);
+                    }
+                    segments.add(new FormattedPlaceholder(value, MessageArguments.slot(value), format));
+                    segment += 4;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown segment type " + type + " at " + segment);
+            }
+        }
+        return MessageTemplate.link(source, segments);
+    }
+
+    static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    private static final class Writer {
+        private ByteBuffer out = ByteBuffer.allocate(1 << 16);
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        byte[] write(Map<Locale, LocaleMessages> locales) {
+            List<Locale> order = new ArrayList<>(locales.keySet());
+            order.sort(Comparator.comparing(Locale::toLanguageTag));
+            putInt(Magic);
+            putInt(Version);
+            putInt(0);
+            putInt(0);
+            putInt(order.size());
+            for (Locale locale : order) {
+                putInt(string(locale.toLanguageTag()));
+                putInt(0);
+            }
+            for (int i = 0; i < order.size(); i++) {
+                int section = writeLocale(locales.get(order.get(i)).getMessages());
+                out.putInt(HeaderSize + 8 * i + 4, section);
+            }
+            out.putInt(8, strings.size());
+            out.putInt(12, writeStrings());
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        private int writeLocale(Map<String, MessageTemplate> messages) {
+            List<String> keys = new ArrayList<>(messages.keySet());
+            Collections.sort(keys);
+            Map<String, List<int[]>> entries = new LinkedHashMap<>();
+            Set<String> metaCallIds = new LinkedHashSet<>();
+            for (String key : keys) {
+                MessageTemplate template = messages.get(key);
+                int position = writeTemplate(template);
+                LocaleMessages.forEachEntry(key, (id, variant) -> {
+                    entries.computeIfAbsent(id, k -> new ArrayList<>()).add(new int[]{variant, position});
+                    if (template.hasMetaCalls()) {
+                        metaCallIds.add(id);
+                    }
+                });
+            }
+            int[] positions = new int[entries.size()];
+            int[] hashes = new int[entries.size()];
+            int index = 0;
+            for (Map.Entry<String, List<int[]>> entry : entries.entrySet()) {
+                positions[index] = out.position();
+                hashes[index++] = entry.getKey().hashCode();
+                putInt(string(entry.getKey()));
+                putInt(entry.getKey().hashCode());
+                put((byte) entry.getValue().size());
+                for (int[] variant : entry.getValue()) {
+                    put((byte) variant[0]);
+                    putInt(variant[1]);
+                }
+            }
+            int tableSize = Integer.highestOneBit(Math.max(1, positions.length) * 2 - 1) * 2;
+            int[] table = new int[tableSize];
+            for (int i = 0; i < positions.length; i++) {
+                int slot = spread(hashes[i]) & tableSize - 1;
+                while (table[slot] != 0) {
+                    slot = slot + 1 & tableSize - 1;
+                }
+                table[slot] = positions[i];
+            }
+            int section = out.position();
+            putInt(positions.length);
+            putInt(messages.size());
+            putInt(tableSize - 1);
+            for (int position : table) {
+                putInt(position);
+            }
+            for (int position : positions) {
+                putInt(position);
+            }
+            putInt(metaCallIds.size());
+            for (String id : metaCallIds) {
+                putInt(string(id));
+            }
+            return section;
+        }
+
+        private int writeTemplate(MessageTemplate template) {
+            int position = out.position();
+            Segment[] segments = template.getSegments();
+            putInt(string(template.getSource()));
+            putInt(segments.length);
+            for (Segment segment : segments) {
+                if (segment instanceof Literal) {
+                    put(LiteralSegment);
+                    putInt(string(((Literal) segment).getText()));
+                } else if (segment instanceof Placeholder) {
+                    put(PlaceholderSegment);
+                    putInt(string(((Placeholder) segment).getName()));
+                } else if (segment instanceof FormattedPlaceholder) {
+                    put(FormattedPlaceholderSegment);
+                    putInt(string(((FormattedPlaceholder) segment).getName()));
+                    putInt(string(((FormattedPlaceholder) segment).getFormat().getSpec()));
+                } else if (segment instanceof MetaCall) {
+                    put(MetaCallSegment);
+                    putInt(string(((MetaCall) segment).getId()));
+                    putInt(string(((MetaCall) segment).getArgument()));
+                } else {
+                    throw new IllegalStateException("Cannot write " + segment.getClass().getSimpleName());
+                }
+            }
+            return position;
+        }
+
+        private int writeStrings() {
+            List<byte[]> encoded = new ArrayList<>(strings.size());
+            for (String string : strings) {
+                encoded.add(string.getBytes(StandardCharsets.UTF_8));
+            }
+            int index = out.position();
+            int start = index + 4 * (strings.size() + 1);
+            for (byte[] bytes : encoded) {
+                putInt(start);
+                start += bytes.length;
+            }
+            putInt(start);
+            for (byte[] bytes : encoded) {
+                ensure(bytes.length);
+                out.put(bytes);
+            }
+            return index;
+        }
+
+        private int string(String string) {
+            Integer index = stringIndexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                strings.add(string);
+                stringIndexes.put(string, index);
+            }
+            return index;
+        }
+
+        private void put(byte value) {
+            ensure(1);
+            out.put(value);
+        }
+
+        private void putInt(int value) {
+            ensure(4);
+            out.putInt(value);
+        }
+
+        private void ensure(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                // Through Buffer, whose flip() is the one Java 8 has.
+                ((Buffer) out).flip();
+                grown.put(out);
+                out = grown;
+            }
+        }
+    }
+}
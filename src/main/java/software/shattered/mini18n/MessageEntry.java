@@ -0,0 +1,209 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.lang.PluralCategory;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Everything stored under one base key in one locale: the message itself and its plural and range variants,
+ * indexed by {@link PluralCategory#ordinal()}. Missing variants are filled in when the entry is built, so a counted
+ * lookup is a single array access.
+ */
+final class MessageEntry {
+    private static final int Other = PluralCategory.Other.ordinal();
+    static final MessageEntry Missing = new MessageEntry(Locale.ROOT, null, null, null);
+
+    private final Locale locale;
+    private final @Nullable MessageTemplate base;
+    private final MessageTemplate @Nullable [] variants;
+    private final MessageTemplate @Nullable [] ranges;
+    private final boolean hasMetaCalls;
+
+    private MessageEntry(Locale locale, @Nullable MessageTemplate base, MessageTemplate @Nullable [] variants,
+                         MessageTemplate @Nullable [] ranges) {
+        this.locale = locale;
+        this.base = base;
+        this.variants = variants;
+        this.ranges = ranges;
+        this.hasMetaCalls = hasMetaCalls(base) || hasMetaCalls(variants) || hasMetaCalls(ranges);
+    }
+
+    private static boolean hasMetaCalls(@Nullable MessageTemplate template) {
+        return template != null && template.hasMetaCalls();
+    }
+
+    private static boolean hasMetaCalls(MessageTemplate @Nullable [] templates) {
+        if (templates != null) {
+            for (MessageTemplate template : templates) {
+                if (hasMetaCalls(template)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the locale this entry was published in, whose plural rules its variants are written for.
+     */
+    Locale getLocale() {
+        return locale;
+    }
+
+    @Nullable MessageTemplate get() {
+        return base;
+    }
+
+    /**
+     * Used for both cardinal and ordinal counts, which share the {@code key.category} variants.
+     */
+    @Nullable MessageTemplate get(PluralCategory category) {
+        return variants == null ? base : variants[category.ordinal()];
+    }
+
+    /**
+     * @param category the category of the whole range, used if this entry has no range variants.
+     */
+    @Nullable MessageTemplate getRange(PluralCategory start, PluralCategory end, PluralCategory category) {
+        return ranges == null ? get(category) : ranges[start.ordinal() * PluralCategory.Count + end.ordinal()];
+    }
+
+    boolean hasVariants() {
+        return variants != null || ranges != null;
+    }
+
+    boolean hasMetaCalls() {
+        return hasMetaCalls;
+    }
+
+    /**
+     * Calls {@code action} with every template of this entry, including ones shared by several variants.
+     */
+    void forEachTemplate(Consumer<MessageTemplate> action) {
+        if (base != null) {
+            action.accept(base);
+        }
+        forEachTemplate(variants, action);
+        forEachTemplate(ranges, action);
+    }
+
+    private static void forEachTemplate(MessageTemplate @Nullable [] templates, Consumer<MessageTemplate> action) {
+        if (templates != null) {
+            for (MessageTemplate template : templates) {
+                if (template != null) {
+                    action.accept(template);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return this entry with every template replaced by {@code link}, or this entry itself if none changed.
+     */
+    MessageEntry withTemplates(UnaryOperator<MessageTemplate> link) {
+        MessageTemplate base = this.base == null ? null : link.apply(this.base);
+        MessageTemplate[] variants = withTemplates(this.variants, link);
+        MessageTemplate[] ranges = withTemplates(this.ranges, link);
+        if (base == this.base && variants == this.variants && ranges == this.ranges) {
+            return this;
+        }
+        return new MessageEntry(locale, base, variants, ranges);
+    }
+
+    private static MessageTemplate @Nullable [] withTemplates(MessageTemplate @Nullable [] templates,
+                                                             UnaryOperator<MessageTemplate> link) {
+        if (templates == null) {
+            return null;
+        }
+        MessageTemplate[] linked = null;
+        for (int i = 0; i < templates.length; i++) {
+            MessageTemplate template = templates[i] == null ? null : link.apply(templates[i]);
+            if (template != templates[i] && linked == null) {
+                linked = templates.clone();
+            }
+            if (linked != null) {
+                linked[i] = template;
+            }
+        }
+        return linked == null ? templates : linked;
+    }
+
+    /**
+     * @return the number identifying the variant for {@code category}, where 0 is the message itself.
+     */
+    static int variantOf(PluralCategory category) {
+        return 1 + category.ordinal();
+    }
+
+    /**
+     * @return the number identifying the variant for a range, which comes after those of the categories.
+     */
+    static int variantOf(PluralCategory start, PluralCategory end) {
+        return 1 + PluralCategory.Count + start.ordinal() * PluralCategory.Count + end.ordinal();
+    }
+
+    static final class Builder {
+        private @Nullable MessageTemplate base;
+        private MessageTemplate @Nullable [] variants;
+        private MessageTemplate @Nullable [] ranges;
+
+        /**
+         * @param variant the message itself if 0, or a number from {@link #variantOf}.
+         */
+        void set(int variant, MessageTemplate template) {
+            if (variant == 0) {
+                setBase(template);
+            } else if (variant <= PluralCategory.Count) {
+                setVariant(PluralCategory.byIndex(variant - 1), template);
+            } else {
+                int range = variant - 1 - PluralCategory.Count;
+                setRange(PluralCategory.byIndex(range / PluralCategory.Count),
+                        PluralCategory.byIndex(range % PluralCategory.Count), template);
+            }
+        }
+
+        void setBase(MessageTemplate base) {
+            this.base = base;
+        }
+
+        void setVariant(PluralCategory category, MessageTemplate template) {
+            if (variants == null) {
+                variants = new MessageTemplate[PluralCategory.Count];
+            }
+            variants[category.ordinal()] = template;
+        }
+
+        void setRange(PluralCategory start, PluralCategory end, MessageTemplate template) {
+            if (ranges == null) {
+                ranges = new MessageTemplate[PluralCategory.Count * PluralCategory.Count];
+            }
+            ranges[start.ordinal() * PluralCategory.Count + end.ordinal()] = template;
+        }
+
+        MessageEntry build(Locale locale) {
+            if (variants != null) {
+                // Missing categories use .other, and then the message without a category.
+                MessageTemplate fallback = variants[Other] != null ? variants[Other] : base;
+                for (int i = 0; i < variants.length; i++) {
+                    if (variants[i] == null) {
+                        variants[i] = fallback;
+                    }
+                }
+            }
+            if (ranges != null) {
+                // Missing ranges use .other+other, and then the variant for the end of the range.
+                MessageTemplate fallback = ranges[Other * PluralCategory.Count + Other];
+                for (int i = 0; i < ranges.length; i++) {
+                    if (ranges[i] == null) {
+                        ranges[i] = fallback != null ? fallback
+                                : variants != null ? variants[i % PluralCategory.Count] : base;
+                    }
+                }
+            }
+            return new MessageEntry(locale, base, variants, ranges);
+        }
+    }
+}
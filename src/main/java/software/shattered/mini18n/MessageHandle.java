@@ -0,0 +1,61 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A message key of one {@link MessageSet} resolved ahead of time, see {@link MessageSet#handle(String)}. Each
+ * locale looks the key up once per published version of the set's messages and keeps the result at the handle's
+ * index, so rendering through a handle skips hashing the key on every call. Handles stay valid as messages are added
+ * or reloaded, and render exactly what {@link MessageSet#get(Locale, String, Map)} renders for their key.
+ */
+public final class MessageHandle {
+    private final MessageSet set;
+    private final String key;
+    private final int index;
+
+    MessageHandle(MessageSet set, String key, int index) {
+        this.set = set;
+        this.key = key;
+        this.index = index;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    public @Nullable String get(Locale locale) {
+        return set.get(locale, key, this, null, null);
+    }
+
+    public @Nullable String get(Locale locale, @Nullable Map<String, Object> data) {
+        return set.get(locale, key, this, data, null);
+    }
+
+    public @Nullable String get(Locale locale, @NotNull MessageArguments arguments) {
+        return set.get(locale, key, this, null, arguments);
+    }
+
+    /**
+     * @return false if there is no such message, in which case nothing is appended.
+     */
+    public boolean render(Locale locale, @Nullable Map<String, Object> data, StringBuilder out) {
+        return set.render(locale, key, this, data, null, out);
+    }
+
+    public boolean render(Locale locale, @NotNull MessageArguments arguments, StringBuilder out) {
+        return set.render(locale, key, this, null, arguments, out);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageHandle(" + key + ")";
+    }
+}
@@ -0,0 +1,401 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.MessageTemplate.Literal;
+import software.shattered.mini18n.MessageTemplate.MetaCall;
+import software.shattered.mini18n.MessageTemplate.Reference;
+import software.shattered.mini18n.MessageTemplate.Segment;
+import software.shattered.mini18n.lang.PluralCategory;
+import software.shattered.mini18n.meta.MessageMetaProcessor;
+import software.shattered.mini18n.meta.MessageMetaProcessor.Purity;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.*;
+
+/**
+ * Resolves the {@code %message:key%} references of a set once per snapshot instead of on every render. A reference to
+ * a message without plural variants is replaced by that message's segments, so composed messages render in a single
+ * pass; a reference to a message with variants becomes a direct link to its entry, which still picks a variant from
+ * the values of each render. References are resolved through the fallback chain of each published locale, the same
+ * way {@link RecurseMetaProcessor} resolves them for a render in that locale. A reference to a message that does not
+ * exist stays a call, so its lookup and miss still reach the set's {@code MessageMetrics} on every render.
+ * <p>
+ * Only the set's own {@link RecurseMetaProcessor} counts as a reference; subclasses and other processors are called
+ * at render time as before, except for {@link Purity#Constant} ones. Their calls are made once per published locale
+ * while linking, with that locale, and their results joined into the literal text around them.
+ */
+final class MessageLinker {
+    private static final String[] VariantSuffixes;
+    static {
+        List<String> suffixes = new ArrayList<>();
+        for (PluralCategory category : PluralCategory.values()) {
+            suffixes.add("." + category.getId());
+        }
+        for (PluralCategory start : PluralCategory.values()) {
+            for (PluralCategory end : PluralCategory.values()) {
+                suffixes.add("." + start.getId() + "+" + end.getId());
+            }
+        }
+        VariantSuffixes = suffixes.toArray(new String[0]);
+    }
+
+    private final MessageSet set;
+
+    MessageLinker(MessageSet set) {
+        this.set = set;
+    }
+
+    boolean isReference(@Nullable MessageMetaProcessor processor) {
+        return processor != null && processor.getClass() == RecurseMetaProcessor.class
+                && ((RecurseMetaProcessor) processor).getSet() == set;
+    }
+
+    boolean hasReferences(MessageTemplate template) {
+        if (!template.hasMetaCalls()) {
+            return false;
+        }
+        for (Segment segment : template.getSegments()) {
+            if (isReference(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if {@code processor} is called while linking instead of on every render.
+     */
+    boolean isLinked(@Nullable MessageMetaProcessor processor) {
+        return isReference(processor) || isConstant(processor);
+    }
+
+    private static boolean isConstant(@Nullable MessageMetaProcessor processor) {
+        return processor != null && processor.getPurity() == Purity.Constant;
+    }
+
+    /**
+     * @return true if the set has a processor that references its messages or can be folded, without which there is
+     *         nothing to link.
+     */
+    boolean isActive() {
+        for (MessageMetaProcessor processor : set.getMetaProcessors()) {
+            if (isLinked(processor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasReferenceProcessor() {
+        for (MessageMetaProcessor processor : set.getMetaProcessors()) {
+            if (isReference(processor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isReference(Segment segment) {
+        return segment instanceof MetaCall && isReference(set.getMetaProcessor(((MetaCall) segment).getId()));
+    }
+
+    /**
+     * @param previous    the linked entries of the last snapshot, kept for locales whose chain has no changed
+     *                    locale.
+     * @param changed     the locales published since the last snapshot, or null to link every locale again.
+     * @param changedKeys the keys added or removed in each changed locale, or null if unknown. When known, only the
+     *                    entries that reach one of them through references are linked again, and the others keep
+     *                    their linked templates from {@code previous}.
+     * @return the entries changed by linking, by the locale whose chain they were linked against.
+     */
+    Map<Locale, Map<String, MessageEntry>> link(Map<Locale, LocaleMessages> locales, LocaleFallbacks fallbacks,
+                                                Map<Locale, Map<String, MessageEntry>> previous,
+                                                @Nullable Set<Locale> changed,
+                                                @Nullable Map<Locale, ? extends Collection<String>> changedKeys) {
+        if (!isActive()) {
+            return Collections.emptyMap();
+        }
+        Map<Locale, Map<String, MessageEntry>> linked = new HashMap<>();
+        for (Locale locale : locales.keySet()) {
+            List<Locale> chain = fallbacks.chain(locale);
+            if (changed != null && Collections.disjoint(chain, changed)) {
+                Map<String, MessageEntry> entries = previous.get(locale);
+                if (entries != null) {
+                    linked.put(locale, entries);
+                }
+                continue;
+            }
+            Linking linking = new Linking(locale, MessageSnapshot.chain(locales, fallbacks, locale));
+            if (changed != null && changedKeys != null) {
+                linking.keepUnchanged(previous.getOrDefault(locale, Collections.emptyMap()),
+                        changedIds(chain, changedKeys));
+            }
+            linking.linkAll();
+            if (!linking.linked.isEmpty()) {
+                linked.put(locale, linking.linked);
+            }
+        }
+        return linked.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(linked);
+    }
+
+    private static Set<String> changedIds(List<Locale> chain, Map<Locale, ? extends Collection<String>> changedKeys) {
+        Set<String> ids = new HashSet<>();
+        for (Locale locale : chain) {
+            Collection<String> keys = changedKeys.get(locale);
+            if (keys != null) {
+                for (String key : keys) {
+                    LocaleMessages.forEachEntry(key, (id, variant) -> ids.add(id));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Follows references from the {@code changed} keys in every locale whose chain includes their locale.
+     *
+     * @throws IllegalArgumentException naming the cycle if a message can reach itself through references.
+     */
+    void checkCycles(Map<Locale, Map<String, MessageTemplate>> catalogs, LocaleFallbacks fallbacks,
+                     Map<Locale, ? extends Collection<String>> changed) {
+        if (!hasReferenceProcessor()) {
+            return;
+        }
+        for (Locale locale : catalogs.keySet()) {
+            List<Locale> chainLocales = fallbacks.chain(locale);
+            List<Map<String, MessageTemplate>> chain = new ArrayList<>();
+            for (Locale candidate : chainLocales) {
+                Map<String, MessageTemplate> messages = catalogs.get(candidate);
+                if (messages != null) {
+                    chain.add(messages);
+                }
+            }
+            Set<String> starts = new LinkedHashSet<>();
+            for (Map.Entry<Locale, ? extends Collection<String>> entry : changed.entrySet()) {
+                if (!chainLocales.contains(entry.getKey())) {
+                    continue;
+                }
+                for (String id : entry.getValue()) {
+                    starts.add(id);
+                    int dot = id.lastIndexOf('.');
+                    if (dot > 0) {
+                        // A plural variant also changes the references of its base key.
+                        starts.add(id.substring(0, dot));
+                    }
+                }
+            }
+            CycleCheck check = new CycleCheck(locale, chain);
+            for (String id : starts) {
+                check.visit(id);
+            }
+        }
+    }
+
+    private final class Linking {
+        private final Locale locale;
+        private final LocaleMessages[] chain;
+        private final Map<String, MessageEntry> linked = new HashMap<>();
+        private final Map<String, MessageEntry> resolved = new HashMap<>();
+        private final Set<String> active = new HashSet<>();
+        private final Map<MessageTemplate, MessageTemplate> templates = new IdentityHashMap<>();
+
+        private @Nullable Map<String, MessageEntry> previous;
+        private Set<String> changedIds = Collections.emptySet();
+        private final Map<String, Boolean> dirty = new HashMap<>();
+
+        Linking(Locale locale, LocaleMessages[] chain) {
+            this.locale = locale;
+            this.chain = chain;
+        }
+
+        /**
+         * Reuses the entries in {@code previous} that cannot reach any of {@code changedIds} through references.
+         */
+        void keepUnchanged(Map<String, MessageEntry> previous, Set<String> changedIds) {
+            this.previous = previous;
+            this.changedIds = changedIds;
+        }
+
+        void linkAll() {
+            for (LocaleMessages messages : chain) {
+                for (String id : messages.getMetaCallIds()) {
+                    entry(id);
+                }
+            }
+        }
+
+        private @Nullable MessageEntry entry(String id) {
+            if (resolved.containsKey(id)) {
+                return resolved.get(id);
+            }
+            if (previous != null && !isDirty(id)) {
+                MessageEntry kept = previous.get(id);
+                if (kept != null) {
+                    linked.put(id, kept);
+                } else {
+                    kept = find(id);
+                }
+                resolved.put(id, kept);
+                return kept;
+            }
+            MessageEntry entry = find(id);
+            if (entry != null && entry.hasMetaCalls()) {
+                if (!active.add(id)) {
+                    // Cycles are rejected when messages are added; should one slip through, it stays dynamic.
+                    return entry;
+                }
+                MessageEntry result = entry.withTemplates(this::template);
+                active.remove(id);
+                if (result != entry) {
+                    linked.put(id, result);
+                }
+                entry = result;
+            }
+            resolved.put(id, entry);
+            return entry;
+        }
+
+        private @Nullable MessageEntry find(String id) {
+            for (LocaleMessages messages : chain) {
+                MessageEntry entry = messages.getEntry(id);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        private boolean isDirty(String id) {
+            Boolean known = dirty.get(id);
+            if (known != null) {
+                return known;
+            }
+            // Cycles are rejected when messages are added, so this placeholder is only seen by one that slipped
+            // through.
+            dirty.put(id, Boolean.FALSE);
+            boolean result = changedIds.contains(id);
+            MessageEntry entry = result ? null : find(id);
+            if (entry != null && entry.hasMetaCalls()) {
+                List<MessageTemplate> templates = new ArrayList<>();
+                entry.forEachTemplate(templates::add);
+                for (MessageTemplate template : templates) {
+                    for (Segment segment : template.getSegments()) {
+                        if (!result && isReference(segment)) {
+                            result = isDirty(((MetaCall) segment).getArgument());
+                        }
+                    }
+                }
+            }
+            dirty.put(id, result);
+            return result;
+        }
+
+        private MessageTemplate template(MessageTemplate template) {
+            if (!template.hasMetaCalls()) {
+                return template;
+            }
+            MessageTemplate linkedTemplate = templates.get(template);
+            if (linkedTemplate != null) {
+                return linkedTemplate;
+            }
+            List<Segment> segments = new ArrayList<>();
+            boolean changed = false;
+            for (Segment segment : template.getSegments()) {
+                MessageMetaProcessor processor = segment instanceof MetaCall
+                        ? set.getMetaProcessor(((MetaCall) segment).getId()) : null;
+                if (!isReference(processor) && isConstant(processor)) {
+                    changed = true;
+                    segments.add(new Literal(fold((MetaCall) segment, processor)));
+                    continue;
+                }
+                if (!isReference(processor)) {
+                    segments.add(segment);
+                    continue;
+                }
+                MessageEntry child = entry(((MetaCall) segment).getArgument());
+                if (child == null) {
+                    // Left to the processor, so every render still looks it up and reports the miss.
+                    segments.add(segment);
+                    continue;
+                }
+                changed = true;
+                if (child.hasVariants()) {
+                    segments.add(new Reference(child));
+                } else if (child.get() != null) {
+                    segments.addAll(Arrays.asList(child.get().getSegments()));
+                }
+            }
+            linkedTemplate = changed ? MessageTemplate.link(template.getSource(), segments) : template;
+            templates.put(template, linkedTemplate);
+            return linkedTemplate;
+        }
+
+        private String fold(MetaCall call, MessageMetaProcessor processor) {
+            StringBuilder result = new StringBuilder();
+            processor.append(locale, call.getArgument(), call.getSource(), null, result);
+            return result.toString();
+        }
+    }
+
+    private final class CycleCheck {
+        private final Locale locale;
+        private final List<Map<String, MessageTemplate>> chain;
+        private final Set<String> done = new HashSet<>();
+        private final List<String> path = new ArrayList<>();
+
+        CycleCheck(Locale locale, List<Map<String, MessageTemplate>> chain) {
+            this.locale = locale;
+            this.chain = chain;
+        }
+
+        void visit(String id) {
+            if (done.contains(id)) {
+                return;
+            }
+            int index = path.indexOf(id);
+            if (index >= 0) {
+                List<String> cycle = new ArrayList<>(path.subList(index, path.size()));
+                cycle.add(id);
+                throw new IllegalArgumentException("Message reference cycle in " + locale.toLanguageTag() + ": "
+                        + String.join(" -> ", cycle));
+            }
+            path.add(id);
+            for (String reference : references(id)) {
+                visit(reference);
+            }
+            path.remove(path.size() - 1);
+            done.add(id);
+        }
+
+        /**
+         * @return the references of every template stored under {@code id} in the first locale that has any.
+         */
+        private List<String> references(String id) {
+            List<String> references = new ArrayList<>();
+            for (Map<String, MessageTemplate> messages : chain) {
+                boolean found = addReferences(messages.get(id), references);
+                for (String suffix : VariantSuffixes) {
+                    found |= addReferences(messages.get(id + suffix), references);
+                }
+                if (found) {
+                    break;
+                }
+            }
+            return references;
+        }
+
+        private boolean addReferences(@Nullable MessageTemplate template, List<String> references) {
+            if (template == null) {
+                return false;
+            }
+            if (template.hasMetaCalls()) {
+                for (Segment segment : template.getSegments()) {
+                    if (isReference(segment)) {
+                        references.add(((MetaCall) segment).getArgument());
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
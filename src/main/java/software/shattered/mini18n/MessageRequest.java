@@ -0,0 +1,57 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One message to render as part of a batch, see {@link MessageSet#renderAll(List, String[])}.
+ */
+public final class MessageRequest {
+    private final Locale locale;
+    private final String message;
+    private final @Nullable Map<String, Object> data;
+    private final @Nullable MessageArguments arguments;
+
+    public MessageRequest(@NotNull Locale locale, @NotNull String message) {
+        this(locale, message, null, null);
+    }
+
+    public MessageRequest(@NotNull Locale locale, @NotNull String message, @Nullable Map<String, Object> data) {
+        this(locale, message, data, null);
+    }
+
+    /**
+     * The arguments are read when the batch is rendered, and must not change until it is done.
+     */
+    public MessageRequest(@NotNull Locale locale, @NotNull String message, @NotNull MessageArguments arguments) {
+        this(locale, message, null, arguments);
+    }
+
+    private MessageRequest(Locale locale, String message, @Nullable Map<String, Object> data,
+                           @Nullable MessageArguments arguments) {
+        this.locale = locale;
+        this.message = message;
+        this.data = data;
+        this.arguments = arguments;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public @Nullable Map<String, Object> getData() {
+        return data;
+    }
+
+    public @Nullable MessageArguments getArguments() {
+        return arguments;
+    }
+}
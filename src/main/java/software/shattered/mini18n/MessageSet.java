@@ -2,93 +2,718 @@ package software.shattered.mini18n;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.MessageSnapshot.ResolvedLocale;
+import software.shattered.mini18n.lang.PluralCategory;
+import software.shattered.mini18n.lang.PluralOperands;
 import software.shattered.mini18n.lang.PluralRules;
 import software.shattered.mini18n.meta.MessageMetaProcessor;
+import software.shattered.mini18n.metrics.MessageMetrics;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
+/**
+ * A set of messages across locales. Readers always see an immutable snapshot and never lock; writers stage their
+ * changes under a lock and the next snapshot is published as a whole, so {@link #addAll(Locale, Map)} and
+ * {@link #addAll(Map)} become visible atomically. A single {@link #add(Locale, String, String)} is published on top of
+ * the locale's last messages, which are only built again as a whole every so often, so loading one key at a time does
+ * not copy the locale on every call.
+ * <p>
+ * A message missing in the requested locale is looked up in its fallback chain, see
+ * {@link #setFallbacks(Locale, List)} and {@link #setDefaultLocale(Locale)}.
+ * <p>
+ * References to other messages through this set's {@link software.shattered.mini18n.meta.RecurseMetaProcessor} are
+ * resolved when a snapshot is published rather than on every render. Changes that would make a message reference
+ * itself, directly or through other messages, are rejected with an {@link IllegalArgumentException}.
+ */
 public class MessageSet {
-    private static final Pattern MetaRegex = Pattern.compile("%(.*?):(.*?)%");
-    private final Map<Locale, Map<String, String>> messages = new LinkedHashMap<>();
-    private final Map<String, MessageMetaProcessor> metaProcessors = new LinkedHashMap<>();
+    private static final int MaxRetainedBufferSize = 8192;
+    private static final ThreadLocal<RenderBuffer> RenderBuffers = ThreadLocal.withInitial(RenderBuffer::new);
+
+    private final Object writeLock = new Object();
+    // Locales with changes since the last snapshot, guarded by writeLock.
+    private final Map<Locale, Map<String, MessageTemplate>> staged = new HashMap<>();
+    // Locales read from a catalog since the last snapshot, guarded by writeLock.
+    private final Map<Locale, LocaleMessages> stagedCatalogs = new HashMap<>();
+    // Keys changed in each staged locale, or null if the whole locale changed, guarded by writeLock.
+    private final Map<Locale, Set<String>> stagedKeys = new HashMap<>();
+    private volatile MessageSnapshot snapshot = MessageSnapshot.Empty;
+    private final Map<String, MessageMetaProcessor> metaProcessors = new ConcurrentHashMap<>();
+    private final MessageLinker linker = new MessageLinker(this);
+    private volatile @Nullable MessageMetrics metrics;
+    private volatile @Nullable RenderCache renderCache;
+    private volatile @Nullable LocaleLoader loader;
+    private final KeyDictionary keys = new KeyDictionary();
+    private final Map<String, MessageHandle> handles = new ConcurrentHashMap<>();
+    // Templates by source, shared by every compact locale, or null if storage is not compact. Guarded by writeLock.
+    private @Nullable Map<String, WeakReference<MessageTemplate>> sharedTemplates;
 
     public void add(Locale locale, String id, String message) {
-        getSafeLocale(locale).put(id, message);
+        MessageTemplate template = MessageTemplate.compile(message);
+        synchronized (writeLock) {
+            if (sharedTemplates != null) {
+                template = share(sharedTemplates, template);
+            }
+            Map<String, MessageTemplate> change = Collections.singletonMap(id, template);
+            LocaleMessages current = snapshot.getLocales().get(locale);
+            LocaleMessages next = current == null || !staged.isEmpty() || !stagedCatalogs.isEmpty() ? null
+                    : LayeredLocaleMessages.of(current, change);
+            if (next == null) {
+                // A new locale, or one with too many messages on top of it, is built again as a whole.
+                stageAll(Collections.singletonMap(locale, change));
+                pin(locale);
+                publish();
+                return;
+            }
+            if (linker.hasReferences(template)) {
+                Map<Locale, Map<String, MessageTemplate>> catalogs = catalogs();
+                catalogs.put(locale, next.getMessages());
+                linker.checkCycles(catalogs, snapshot.getFallbacks(),
+                        Collections.singletonMap(locale, change.keySet()));
+            }
+            pin(locale);
+            Map<Locale, LocaleMessages> locales = new HashMap<>(snapshot.getLocales());
+            locales.put(locale, next);
+            publish(Collections.unmodifiableMap(locales), locale, change.keySet());
+        }
     }
 
     public void addAll(Locale locale, Map<String, String> messages) {
-        getSafeLocale(locale).putAll(messages);
+        addCompiled(locale, compileAll(messages));
+    }
+
+    /**
+     * Same as {@link #addAll(Locale, Map)} with messages that are already compiled, such as by a
+     * {@link CatalogLoader}.
+     */
+    void addCompiled(Locale locale, Map<String, MessageTemplate> messages) {
+        synchronized (writeLock) {
+            stageAll(Collections.singletonMap(locale, messages));
+            pin(locale);
+            publish();
+        }
     }
 
+    /**
+     * Adds messages for several locales at once. Readers see either none or all of them.
+     */
+    public void addAll(Map<Locale, Map<String, String>> messages) {
+        Map<Locale, Map<String, MessageTemplate>> compiled = new HashMap<>();
+        for (Map.Entry<Locale, Map<String, String>> entry : messages.entrySet()) {
+            compiled.put(entry.getKey(), compileAll(entry.getValue()));
+        }
+        synchronized (writeLock) {
+            stageAll(compiled);
+            compiled.keySet().forEach(this::pin);
+            publish();
+        }
+    }
+
+    /**
+     * Adds every locale of a catalog at once. A locale this set has no messages for yet is read from the catalog as
+     * its messages are used, so this costs about the same for any number of messages; other locales are merged by
+     * reading all of the catalog's messages for them.
+     */
+    public void addAll(MessageCatalog catalog) {
+        synchronized (writeLock) {
+            Map<Locale, Map<String, MessageTemplate>> merged = new HashMap<>();
+            Map<Locale, List<String>> added = new HashMap<>();
+            for (Map.Entry<Locale, LocaleMessages> entry : catalog.getLocaleMessages().entrySet()) {
+                Locale locale = entry.getKey();
+                if (staged.containsKey(locale) || stagedCatalogs.containsKey(locale)
+                        || snapshot.getLocales().containsKey(locale)) {
+                    merged.put(locale, new HashMap<>(entry.getValue().getMessages()));
+                } else {
+                    stagedCatalogs.put(locale, entry.getValue());
+                    added.put(locale, entry.getValue().getMetaCallIds());
+                }
+            }
+            try {
+                linker.checkCycles(catalogs(), snapshot.getFallbacks(), added);
+                stageAll(merged);
+            } catch (IllegalArgumentException e) {
+                stagedCatalogs.keySet().removeAll(added.keySet());
+                throw e;
+            }
+            catalog.getLocales().forEach(this::pin);
+            publish();
+        }
+    }
+
+    /**
+     * Sets the locale tried after a requested locale and its parents, or none if {@code null}.
+     */
+    public void setDefaultLocale(@Nullable Locale locale) {
+        synchronized (writeLock) {
+            LocaleFallbacks fallbacks = snapshot.getFallbacks().withDefaultLocale(locale);
+            linker.checkCycles(catalogs(), fallbacks, metaCallIds());
+            publish(fallbacks, true);
+        }
+        LocaleLoader loader = this.loader;
+        if (loader != null) {
+            loader.clearRequests();
+        }
+    }
+
+    /**
+     * Sets the locales tried, in order, when a message is missing in {@code locale}, instead of its parent locales.
+     * The default locale is still tried last. Passing {@code null} restores the parent locales.
+     */
+    public void setFallbacks(Locale locale, @Nullable List<Locale> fallbacks) {
+        synchronized (writeLock) {
+            LocaleFallbacks next = snapshot.getFallbacks().withChain(locale, fallbacks);
+            linker.checkCycles(catalogs(), next, metaCallIds());
+            publish(next, true);
+        }
+        LocaleLoader loader = this.loader;
+        if (loader != null) {
+            loader.clearRequests();
+        }
+    }
+
+    /**
+     * Switches how messages added to this set are kept in memory. Compact storage numbers every key once for the
+     * whole set and keeps each locale's messages in an array indexed by those numbers, so keys and per-key map
+     * entries are not repeated in every locale, and messages with the same text in several locales share one
+     * compiled template. It suits sets with many locales that mostly translate the same keys; lookups cost about the
+     * same either way. Locales read from a {@link MessageCatalog} stay mapped from their file.
+     * <p>
+     * Message text is not encoded any further: on Java 9 and later, text with only Latin-1 characters already takes
+     * one byte per character.
+     */
+    public void setCompactStorage(boolean compact) {
+        synchronized (writeLock) {
+            if (compact == (sharedTemplates != null)) {
+                return;
+            }
+            publish();
+            sharedTemplates = compact ? new WeakHashMap<>() : null;
+            for (Map.Entry<Locale, LocaleMessages> entry : snapshot.getLocales().entrySet()) {
+                if (!(entry.getValue() instanceof MappedLocaleMessages)) {
+                    stage(entry.getKey());
+                }
+            }
+            publish(snapshot.getFallbacks(), true);
+        }
+    }
+
+    public boolean isCompactStorage() {
+        synchronized (writeLock) {
+            return sharedTemplates != null;
+        }
+    }
+
+    /**
+     * Same as {@link #setCatalogProvider(CatalogProvider, Duration, long)} without ever evicting locales.
+     */
+    public void setCatalogProvider(@Nullable CatalogProvider provider) {
+        setCatalogProvider(provider, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Loads each locale from {@code provider} the first time a message is requested in it or in a locale that falls
+     * back to it. Loaded locales are evicted again when they were not used for {@code maxIdle}, and the least recently
+     * used ones are evicted while all loaded locales take more than about {@code maxBytes}; they are loaded again the
+     * next time they are needed. Locales that are also changed through {@code add} or {@code addAll} are never
+     * evicted. Locales loaded by a previous provider are kept, but no longer evicted.
+     *
+     * @param maxIdle  how long a locale may go unused, or {@code null} for no limit.
+     * @param maxBytes the memory budget for loaded locales, or {@link Long#MAX_VALUE} for none.
+     */
+    public void setCatalogProvider(@Nullable CatalogProvider provider, @Nullable Duration maxIdle, long maxBytes) {
+        long maxIdleNanos = maxIdle == null ? Long.MAX_VALUE : maxIdle.toNanos();
+        this.loader = provider == null ? null : new LocaleLoader(this, provider, maxIdleNanos, maxBytes);
+    }
+
+    /**
+     * Evicts the locales loaded from the catalog provider that have been idle for too long now, instead of on a
+     * later lookup.
+     *
+     * @return the number of locales evicted.
+     */
+    public int evictIdleLocales() {
+        LocaleLoader loader = this.loader;
+        return loader == null ? 0 : loader.evictIdle(System.nanoTime());
+    }
+
+    /**
+     * Replaces any processor with the same id. Calls to a {@link MessageMetaProcessor.Purity#Constant} processor are
+     * folded into the messages already added, and into those added later.
+     */
     public void addMetaProcessor(MessageMetaProcessor processor) {
-        this.metaProcessors.put(processor.getId(), processor);
+        synchronized (writeLock) {
+            MessageMetaProcessor previous = metaProcessors.put(processor.getId(), processor);
+            if (!linker.isLinked(previous) && !linker.isLinked(processor)) {
+                return;
+            }
+            try {
+                linker.checkCycles(catalogs(), snapshot.getFallbacks(), metaCallIds());
+            } catch (IllegalArgumentException e) {
+                if (previous == null) {
+                    metaProcessors.remove(processor.getId());
+                } else {
+                    metaProcessors.put(processor.getId(), previous);
+                }
+                throw e;
+            }
+            publish(snapshot.getFallbacks(), true);
+        }
     }
 
     public String get(Locale locale, String message) {
-        return get(locale, message, null);
+        return get(locale, message, (Map<String, Object>) null);
     }
     public String get(Locale locale, String message, @Nullable Map<String, Object> data) {
-        String countSpecifier = "";
-        if (data != null) {
-            Number count = getFromData(data, "count", Number.class);
-            boolean ordinal = getFromData(data, "ordinal", Boolean.class, false);
+        MessageArguments arguments = MessageArguments.viewedBy(data);
+        if (arguments != null) {
+            return get(locale, message, null, null, arguments);
+        }
+        return get(locale, message, null, data, null);
+    }
 
-            PluralRules rules = PluralRules.forLocale(locale);
+    public String get(Locale locale, String message, @NotNull MessageArguments arguments) {
+        return get(locale, message, null, null, arguments);
+    }
 
-            if (count != null) {
-                if (ordinal) {
-                    countSpecifier = "." + rules.selectOrdinal(count.doubleValue());
-                }
-                else {
-                    countSpecifier = "." + rules.select(count.doubleValue());
-                }
+    /**
+     * @param handle the handle for {@code message}, if rendering through one.
+     */
+    @Nullable String get(Locale locale, String message, @Nullable MessageHandle handle,
+                         @Nullable Map<String, Object> data, @Nullable MessageArguments arguments) {
+        MessageMetrics metrics = this.metrics;
+        long start = metrics == null ? 0L : System.nanoTime();
+        if (data != null) {
+            LazyData.enter();
+        }
+        try {
+            MessageTemplate template = find(locale, message, handle, data, arguments);
+            if (template == null) {
+                return null;
+            }
+            String result = render(template, locale, message, data, arguments);
+            if (metrics != null) {
+                metrics.onRender(locale, message, System.nanoTime() - start);
             }
+            return result;
+        } finally {
+            if (data != null) {
+                LazyData.exit();
+            }
+        }
+    }
+
+    /**
+     * Resolves {@code message} once into a handle that renders it without looking up its key again in each locale.
+     * Handles belong to this set and stay valid as its messages change, so they can be kept in static fields.
+     * Asking twice for the same key returns the same handle.
+     */
+    public MessageHandle handle(@NotNull String message) {
+        MessageHandle handle = handles.get(message);
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (handles) {
+            return handles.computeIfAbsent(message, key -> new MessageHandle(this, key, handles.size()));
+        }
+    }
+
+    /**
+     * Renders a message for each of {@code locales}, once per distinct result rather than once per locale: locales
+     * that fall back to the same message and plural variant share one string.
+     *
+     * @return the message for each distinct locale, or null for locales without it.
+     */
+    public Map<Locale, String> getAll(Collection<Locale> locales, String message,
+                                      @Nullable Map<String, Object> data) {
+        return getAll(new Broadcast(this, message, data, null, false), locales);
+    }
 
-            Number rangeMin = getFromData(data, "range_min", Number.class);
-            Number rangeMax = getFromData(data, "range_max", Number.class);
-            if (rangeMin != null && rangeMax != null) {
-                countSpecifier = "." + rules.selectRange(rangeMin.doubleValue(), rangeMax.doubleValue());
+    public Map<Locale, String> getAll(Collection<Locale> locales, String message,
+                                      @NotNull MessageArguments arguments) {
+        return getAll(new Broadcast(this, message, null, arguments, false), locales);
+    }
+
+    private static Map<Locale, String> getAll(Broadcast broadcast, Collection<Locale> locales) {
+        Map<Locale, String> results = new HashMap<>();
+        for (Locale locale : locales) {
+            results.put(locale, broadcast.get(locale));
+        }
+        return results;
+    }
+
+    /**
+     * Same as {@link #renderAll(List, String[], Executor)} on the calling thread.
+     */
+    public void renderAll(List<MessageRequest> requests, String[] results) {
+        renderAll(requests, results, null);
+    }
+
+    /**
+     * Renders many messages at once, writing the result of each request to the same index of {@code results}, or
+     * null if there is no such message. All requests are looked up in the same snapshot of the set before any is
+     * rendered, resolving each distinct locale once.
+     *
+     * @param executor if not null, large batches are rendered in parts on it while the calling thread waits.
+     * @throws IllegalArgumentException if {@code results} is shorter than {@code requests}.
+     */
+    public void renderAll(List<MessageRequest> requests, String[] results, @Nullable Executor executor) {
+        new BatchRender(this, requests, results).render(executor);
+    }
+
+    /**
+     * Same as {@link #broadcast(Collection, Function, String, Map, BiConsumer, ForkJoinPool)} on the calling thread.
+     */
+    public <T> void broadcast(Collection<? extends T> recipients, Function<? super T, Locale> localeOf,
+                              String message, @Nullable Map<String, Object> data,
+                              BiConsumer<? super T, ? super String> send) {
+        broadcast(recipients, localeOf, message, data, send, null);
+    }
+
+    /**
+     * Passes a message to {@code send} for every recipient, in the locale {@code localeOf} returns for it, rendering
+     * it once per distinct result as {@link #getAll(Collection, String, Map)} does. Recipients whose locale has no
+     * such message are passed null.
+     *
+     * @param pool if not null, large collections of recipients are split across it, so {@code localeOf} and
+     *             {@code send} must be safe to call from several threads at once.
+     */
+    public <T> void broadcast(Collection<? extends T> recipients, Function<? super T, Locale> localeOf,
+                              String message, @Nullable Map<String, Object> data,
+                              BiConsumer<? super T, ? super String> send, @Nullable ForkJoinPool pool) {
+        new Broadcast(this, message, data, null, pool != null)
+                .send(new ArrayList<>(recipients), localeOf, send, pool);
+    }
+
+    public <T> void broadcast(Collection<? extends T> recipients, Function<? super T, Locale> localeOf,
+                              String message, @NotNull MessageArguments arguments,
+                              BiConsumer<? super T, ? super String> send) {
+        broadcast(recipients, localeOf, message, arguments, send, null);
+    }
+
+    public <T> void broadcast(Collection<? extends T> recipients, Function<? super T, Locale> localeOf,
+                              String message, @NotNull MessageArguments arguments,
+                              BiConsumer<? super T, ? super String> send, @Nullable ForkJoinPool pool) {
+        new Broadcast(this, message, null, arguments, pool != null)
+                .send(new ArrayList<>(recipients), localeOf, send, pool);
+    }
+
+    /**
+     * Renders a message onto the end of {@code out} instead of returning a new string.
+     *
+     * @return false if there is no such message, in which case nothing is appended.
+     */
+    public boolean render(Locale locale, String message, @Nullable Map<String, Object> data, StringBuilder out) {
+        MessageArguments arguments = MessageArguments.viewedBy(data);
+        if (arguments != null) {
+            return render(locale, message, null, null, arguments, out);
+        }
+        return render(locale, message, null, data, null, out);
+    }
+
+    public boolean render(Locale locale, String message, @NotNull MessageArguments arguments, StringBuilder out) {
+        return render(locale, message, null, null, arguments, out);
+    }
+
+    boolean render(Locale locale, String message, @Nullable MessageHandle handle, @Nullable Map<String, Object> data,
+                   @Nullable MessageArguments arguments, StringBuilder out) {
+        MessageMetrics metrics = this.metrics;
+        long start = metrics == null ? 0L : System.nanoTime();
+        if (data != null) {
+            LazyData.enter();
+        }
+        try {
+            MessageTemplate template = find(locale, message, handle, data, arguments);
+            if (template == null) {
+                return false;
+            }
+            template.render(this, locale, data, arguments, out);
+            if (metrics != null) {
+                metrics.onRender(locale, message, System.nanoTime() - start);
+            }
+            return true;
+        } finally {
+            if (data != null) {
+                LazyData.exit();
             }
         }
+    }
 
-        Map<String, String> localeMap = getSafeLocale(locale);
-        String rawMessage = localeMap.get(message + countSpecifier);
-        if (rawMessage == null) {
-            return null;
+    /**
+     * Renders a message onto the end of {@code out}, going through a reused per-thread buffer unless {@code out} is a
+     * {@link StringBuilder} already.
+     *
+     * @return false if there is no such message, in which case nothing is appended.
+     */
+    public boolean render(Locale locale, String message, @Nullable Map<String, Object> data, Appendable out)
+            throws IOException {
+        if (out instanceof StringBuilder) {
+            return render(locale, message, data, (StringBuilder) out);
+        }
+        RenderBuffer buffer = RenderBuffers.get();
+        if (buffer.inUse) {
+            // A meta processor is rendering into an Appendable from inside another render on this thread.
+            StringBuilder builder = new StringBuilder();
+            if (!render(locale, message, data, builder)) {
+                return false;
+            }
+            out.append(builder);
+            return true;
         }
-        Matcher matcher = MetaRegex.matcher(rawMessage);
-        while (matcher.find()) {
-            String meta = matcher.group(1);
-            String result = matcher.group(2);
-            MessageMetaProcessor processor = metaProcessors.get(meta);
-            String replacement = "";
-            if (processor != null) {
-                replacement = processor.parse(locale, result, rawMessage, data);
+        buffer.inUse = true;
+        try {
+            if (!render(locale, message, data, buffer.builder)) {
+                return false;
             }
-            rawMessage = matcher.replaceFirst(replacement);
-            matcher = MetaRegex.matcher(rawMessage);
+            out.append(buffer.builder);
+        } finally {
+            buffer.release();
         }
+        return true;
+    }
 
+    /**
+     * Installs metrics that are told about every lookup and render from now on, or removes them if {@code null}.
+     */
+    public void setMetrics(@Nullable MessageMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-        if (data != null) {
-            for (Map.Entry<String, Object> entry : data.entrySet()) {
-                rawMessage = rawMessage.replace("%" + entry.getKey() + "%", entry.getValue().toString());
+    public @Nullable MessageMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Installs a cache for the strings returned by {@code get}, or removes it if {@code null}.
+     */
+    public void setRenderCache(@Nullable RenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    public @Nullable RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    String render(MessageTemplate template, Locale locale, String message, @Nullable Map<String, Object> data,
+                  @Nullable MessageArguments arguments) {
+        RenderCache cache = this.renderCache;
+        if (cache == null || template.isConstant() || !template.rendersByData(this)) {
+            return template.render(this, locale, data, arguments);
+        }
+        RenderCache.Key key = arguments != null ? RenderCache.key(locale, message, arguments)
+                : RenderCache.key(locale, message, data);
+        if (key == null) {
+            return template.render(this, locale, data, arguments);
+        }
+        String result = cache.get(key, template);
+        if (result == null) {
+            result = template.render(this, locale, data, arguments);
+            cache.put(key, template, result);
+        }
+        return result;
+    }
+
+    @Nullable MessageTemplate find(Locale locale, String message, @Nullable Map<String, Object> data,
+                                   @Nullable MessageArguments arguments) {
+        return find(locale, message, null, data, arguments);
+    }
+
+    private @Nullable MessageTemplate find(Locale locale, String message, @Nullable MessageHandle handle,
+                                           @Nullable Map<String, Object> data, @Nullable MessageArguments arguments) {
+        MessageTemplate template = findVariant(locale, message, handle, data, arguments);
+        MessageMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onLookup(locale, message, template != null);
+        }
+        return template;
+    }
+
+    private @Nullable MessageTemplate findVariant(Locale locale, String message, @Nullable MessageHandle handle,
+                                                  @Nullable Map<String, Object> data,
+                                                  @Nullable MessageArguments arguments) {
+        LocaleLoader loader = this.loader;
+        if (loader != null) {
+            loader.ensureLoaded(locale);
+        }
+        ResolvedLocale resolved = snapshot.resolve(locale);
+        MessageEntry entry = handle != null ? resolved.find(handle) : resolved.find(message);
+        return entry == null ? null : select(entry, data, arguments);
+    }
+
+    /**
+     * Picks the variant of {@code entry} for the count or range in {@code arguments}, or in {@code data} if there are
+     * no arguments.
+     */
+    @Nullable MessageTemplate select(MessageEntry entry, @Nullable Map<String, Object> data,
+                                     @Nullable MessageArguments arguments) {
+        if (arguments != null) {
+            return select(entry, arguments);
+        }
+        if (data == null) {
+            return entry.get();
+        }
+        Number rangeMin = getFromData(data, "range_min", Number.class);
+        Number rangeMax = getFromData(data, "range_max", Number.class);
+        if (rangeMin != null && rangeMax != null) {
+            PluralRules rules = PluralRules.forLocale(entry.getLocale());
+            return range(entry, rules, select(rules, rangeMin, false), select(rules, rangeMax, false));
+        }
+        Number count = getFromData(data, "count", Number.class);
+        if (count != null) {
+            boolean ordinal = getFromData(data, "ordinal", Boolean.class, false);
+            return entry.get(select(PluralRules.forLocale(entry.getLocale()), count, ordinal));
+        }
+        return entry.get();
+    }
+
+    private static @Nullable MessageTemplate range(MessageEntry entry, PluralRules rules, PluralCategory start,
+                                                   PluralCategory end) {
+        return entry.getRange(start, end, rules.selectRangeCategory(start, end));
+    }
+
+    private static @Nullable MessageTemplate select(MessageEntry entry, MessageArguments arguments) {
+        if (arguments.isNumber(MessageArguments.RangeMin) && arguments.isNumber(MessageArguments.RangeMax)) {
+            PluralRules rules = PluralRules.forLocale(entry.getLocale());
+            return range(entry, rules, select(rules, arguments, MessageArguments.RangeMin, false),
+                    select(rules, arguments, MessageArguments.RangeMax, false));
+        }
+        if (arguments.isNumber(MessageArguments.Count)) {
+            PluralRules rules = PluralRules.forLocale(entry.getLocale());
+            boolean ordinal = arguments.isTrue(MessageArguments.Ordinal);
+            return entry.get(select(rules, arguments, MessageArguments.Count, ordinal));
+        }
+        return entry.get();
+    }
+
+    @Nullable MessageMetaProcessor getMetaProcessor(String id) {
+        return metaProcessors.get(id);
+    }
+
+    List<Locale> getFallbackChain(Locale locale) {
+        return snapshot.getFallbacks().chain(locale);
+    }
+
+    /**
+     * Adds the messages a catalog provider loaded for {@code locale}.
+     *
+     * @return false if the locale already had messages, in which case it must not be evicted.
+     */
+    boolean addLoaded(Locale locale, Map<String, String> messages) {
+        Map<String, MessageTemplate> compiled = compileAll(messages);
+        synchronized (writeLock) {
+            boolean existed = staged.containsKey(locale) || stagedCatalogs.containsKey(locale)
+                    || snapshot.getLocales().containsKey(locale);
+            stageAll(Collections.singletonMap(locale, compiled));
+            publish();
+            return !existed;
+        }
+    }
+
+    /**
+     * Drops a locale loaded by a catalog provider.
+     *
+     * @return false if the locale was kept because dropping it would close a reference cycle.
+     */
+    boolean evict(Locale locale) {
+        synchronized (writeLock) {
+            publish();
+            if (!snapshot.getLocales().containsKey(locale)) {
+                return true;
             }
+            Map<Locale, LocaleMessages> next = new HashMap<>(snapshot.getLocales());
+            next.remove(locale);
+            Map<Locale, Collection<String>> metaCallIds = metaCallIds();
+            metaCallIds.remove(locale);
+            Map<Locale, Map<String, MessageTemplate>> catalogs = catalogs();
+            catalogs.remove(locale);
+            try {
+                linker.checkCycles(catalogs, snapshot.getFallbacks(), metaCallIds);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            Map<Locale, LocaleMessages> locales = Collections.unmodifiableMap(next);
+            snapshot = new MessageSnapshot(locales, snapshot.getFallbacks(), linker.link(locales,
+                    snapshot.getFallbacks(), snapshot.getLinked(), Collections.singleton(locale), null));
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the {@code changed} messages of {@code locale} and removes the {@code removed} ones in one publish,
+     * leaving its other messages and everything linked only to them as they are.
+     */
+    void apply(Locale locale, Map<String, MessageTemplate> compiled, Collection<String> removed) {
+        synchronized (writeLock) {
+            Map<String, MessageTemplate> before = removed.isEmpty() ? null : new HashMap<>(stage(locale));
+            stageAll(Collections.singletonMap(locale, compiled));
+            if (before != null) {
+                Map<String, MessageTemplate> localeMap = stage(locale);
+                localeMap.keySet().removeAll(removed);
+                stageKeys(locale, removed);
+                try {
+                    // A removed message now resolves through the fallbacks, which may close a cycle.
+                    linker.checkCycles(catalogs(), snapshot.getFallbacks(),
+                            Collections.singletonMap(locale, removed));
+                } catch (IllegalArgumentException e) {
+                    localeMap.clear();
+                    localeMap.putAll(before);
+                    throw e;
+                }
+            }
+            pin(locale);
+            publish();
+        }
+    }
+
+    Collection<MessageMetaProcessor> getMetaProcessors() {
+        return metaProcessors.values();
+    }
+
+    /**
+     * @return the messages of every locale as last published.
+     */
+    Map<Locale, LocaleMessages> getPublishedLocales() {
+        return snapshot.getLocales();
+    }
+
+    private static PluralCategory select(PluralRules rules, Number count, boolean ordinal) {
+        if (count instanceof Integer || count instanceof Long || count instanceof Short || count instanceof Byte) {
+            long value = count.longValue();
+            return ordinal ? rules.selectOrdinalCategory(value) : rules.selectCategory(value);
         }
-        return rawMessage;
+        if (count instanceof PluralOperands) {
+            PluralOperands operands = (PluralOperands) count;
+            return ordinal ? rules.selectOrdinalCategory(operands) : rules.selectCategory(operands);
+        }
+        double value = count.doubleValue();
+        return ordinal ? rules.selectOrdinalCategory(value) : rules.selectCategory(value);
     }
 
+    private static PluralCategory select(PluralRules rules, MessageArguments arguments, int slot, boolean ordinal) {
+        if (arguments.isIntegral(slot)) {
+            long value = arguments.getLong(slot);
+            return ordinal ? rules.selectOrdinalCategory(value) : rules.selectCategory(value);
+        }
+        Object count = arguments.getObject(slot);
+        if (count instanceof PluralOperands) {
+            PluralOperands operands = (PluralOperands) count;
+            return ordinal ? rules.selectOrdinalCategory(operands) : rules.selectCategory(operands);
+        }
+        double value = arguments.getDouble(slot);
+        return ordinal ? rules.selectOrdinalCategory(value) : rules.selectCategory(value);
+    }
 
     private <T> @Nullable T getFromData(@NotNull Map<String, Object> data, @NotNull String key, Class<T> tClass) {
         return getFromData(data, key, tClass, null);
     }
     private <T> T getFromData(@NotNull Map<String, Object> data, @NotNull String key, Class<T> tClass, T def) {
-        if (!data.containsKey(key)) {
-            return def;
-        }
-        Object value = data.get(key);
+        Object value = LazyData.get(data, key);
         if (tClass.isInstance(value)) {
             //noinspection unchecked -- checked above
             return (T) value;
@@ -96,12 +721,212 @@ public class MessageSet {
         return def;
     }
 
-    private Map<String, String> getSafeLocale(Locale locale) {
-        if (messages.containsKey(locale)) {
-            return messages.get(locale);
+    // Must hold writeLock. Locales changed directly are never evicted by the catalog provider.
+    private void pin(Locale locale) {
+        LocaleLoader loader = this.loader;
+        if (loader != null) {
+            loader.pin(locale);
+        }
+    }
+
+    private static Map<String, MessageTemplate> compileAll(Map<String, String> messages) {
+        Map<String, MessageTemplate> compiled = new HashMap<>(messages.size() * 4 / 3 + 1);
+        for (Map.Entry<String, String> entry : messages.entrySet()) {
+            compiled.put(entry.getKey(), MessageTemplate.compile(entry.getValue()));
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the snapshot to read from, after loading {@code locales} through the catalog provider if there is one.
+     */
+    MessageSnapshot snapshot(Collection<Locale> locales) {
+        LocaleLoader loader = this.loader;
+        if (loader != null) {
+            for (Locale locale : locales) {
+                loader.ensureLoaded(locale);
+            }
+        }
+        return snapshot;
+    }
+
+    // Must hold writeLock. Changes that would make a message reference itself are rolled back.
+    private void stageAll(Map<Locale, Map<String, MessageTemplate>> changes) {
+        boolean hasReferences = false;
+        for (Map<String, MessageTemplate> messages : changes.values()) {
+            for (MessageTemplate template : messages.values()) {
+                hasReferences |= linker.hasReferences(template);
+            }
+        }
+        if (!hasReferences) {
+            // Only a message with references can close a cycle.
+            for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : changes.entrySet()) {
+                stage(entry.getKey()).putAll(entry.getValue());
+                stageKeys(entry.getKey(), entry.getValue().keySet());
+            }
+            return;
+        }
+        Map<Locale, Map<String, MessageTemplate>> replaced = new HashMap<>();
+        for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : changes.entrySet()) {
+            Map<String, MessageTemplate> localeMap = stage(entry.getKey());
+            Map<String, MessageTemplate> previous = new HashMap<>();
+            for (Map.Entry<String, MessageTemplate> message : entry.getValue().entrySet()) {
+                previous.put(message.getKey(), localeMap.put(message.getKey(), message.getValue()));
+            }
+            replaced.put(entry.getKey(), previous);
+            stageKeys(entry.getKey(), entry.getValue().keySet());
+        }
+        Map<Locale, Set<String>> changed = new HashMap<>();
+        for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : changes.entrySet()) {
+            changed.put(entry.getKey(), entry.getValue().keySet());
+        }
+        try {
+            linker.checkCycles(catalogs(), snapshot.getFallbacks(), changed);
+        } catch (IllegalArgumentException e) {
+            for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : replaced.entrySet()) {
+                Map<String, MessageTemplate> localeMap = staged.get(entry.getKey());
+                for (Map.Entry<String, MessageTemplate> message : entry.getValue().entrySet()) {
+                    if (message.getValue() == null) {
+                        localeMap.remove(message.getKey());
+                    } else {
+                        localeMap.put(message.getKey(), message.getValue());
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Must hold writeLock. Every locale's messages as they will be published.
+    private Map<Locale, Map<String, MessageTemplate>> catalogs() {
+        Map<Locale, Map<String, MessageTemplate>> catalogs = new HashMap<>();
+        for (Map.Entry<Locale, LocaleMessages> entry : snapshot.getLocales().entrySet()) {
+            catalogs.put(entry.getKey(), entry.getValue().getMessages());
+        }
+        for (Map.Entry<Locale, LocaleMessages> entry : stagedCatalogs.entrySet()) {
+            catalogs.put(entry.getKey(), entry.getValue().getMessages());
+        }
+        catalogs.putAll(staged);
+        return catalogs;
+    }
+
+    // Must hold writeLock. The keys of every message that may reference another, by locale.
+    private Map<Locale, Collection<String>> metaCallIds() {
+        Map<Locale, Collection<String>> ids = new HashMap<>();
+        for (Map.Entry<Locale, LocaleMessages> entry : snapshot.getLocales().entrySet()) {
+            ids.put(entry.getKey(), entry.getValue().getMetaCallIds());
+        }
+        for (Map.Entry<Locale, LocaleMessages> entry : stagedCatalogs.entrySet()) {
+            ids.put(entry.getKey(), entry.getValue().getMetaCallIds());
+        }
+        for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : staged.entrySet()) {
+            List<String> keys = new ArrayList<>();
+            for (Map.Entry<String, MessageTemplate> message : entry.getValue().entrySet()) {
+                if (message.getValue().hasMetaCalls()) {
+                    keys.add(message.getKey());
+                }
+            }
+            ids.put(entry.getKey(), keys);
+        }
+        return ids;
+    }
+
+    // Must hold writeLock.
+    private Map<String, MessageTemplate> stage(Locale locale) {
+        Map<String, MessageTemplate> localeMap = staged.get(locale);
+        if (localeMap == null) {
+            LocaleMessages current = stagedCatalogs.remove(locale);
+            if (current == null) {
+                current = snapshot.getLocales().get(locale);
+            }
+            if (current == null || current != snapshot.getLocales().get(locale)) {
+                // A locale new to the snapshot changes the chains it is in, not just some keys.
+                stagedKeys.put(locale, null);
+            }
+            localeMap = current == null ? new HashMap<>() : new HashMap<>(current.getMessages());
+            staged.put(locale, localeMap);
         }
-        Map<String, String> localeMap = new LinkedHashMap<>();
-        messages.put(locale, localeMap);
         return localeMap;
     }
-}
\ No newline at end of file
+
+    // Must hold writeLock. Records the keys changed in a staged locale, for linking only what depends on them.
+    private void stageKeys(Locale locale, Collection<String> keys) {
+        if (stagedKeys.containsKey(locale) && stagedKeys.get(locale) == null) {
+            return;
+        }
+        stagedKeys.computeIfAbsent(locale, key -> new HashSet<>()).addAll(keys);
+    }
+
+    // Must hold writeLock. May replace templates in messages with equal ones already in use.
+    private LocaleMessages localeMessages(Locale locale, Map<String, MessageTemplate> messages) {
+        Map<String, WeakReference<MessageTemplate>> shared = sharedTemplates;
+        if (shared == null) {
+            return new CompiledLocaleMessages(locale, messages);
+        }
+        for (Map.Entry<String, MessageTemplate> entry : messages.entrySet()) {
+            entry.setValue(share(shared, entry.getValue()));
+        }
+        return new CompactLocaleMessages(locale, messages, keys);
+    }
+
+    // Must hold writeLock. An equal template already in use, or template itself after sharing it.
+    private static MessageTemplate share(Map<String, WeakReference<MessageTemplate>> shared,
+                                         MessageTemplate template) {
+        WeakReference<MessageTemplate> reference = shared.get(template.getSource());
+        MessageTemplate existing = reference == null ? null : reference.get();
+        if (existing != null) {
+            return existing;
+        }
+        // Keyed by the template's own source, so the entry lives exactly as long as the template.
+        shared.put(template.getSource(), new WeakReference<>(template));
+        return template;
+    }
+
+    // Must hold writeLock.
+    private void publish() {
+        if (staged.isEmpty() && stagedCatalogs.isEmpty()) {
+            return;
+        }
+        publish(snapshot.getFallbacks(), false);
+    }
+
+    // Must hold writeLock. Links references again for the locales affected by staged changes, or all if relinkAll.
+    private void publish(LocaleFallbacks fallbacks, boolean relinkAll) {
+        Map<Locale, LocaleMessages> next = new HashMap<>(snapshot.getLocales());
+        for (Map.Entry<Locale, Map<String, MessageTemplate>> entry : staged.entrySet()) {
+            next.put(entry.getKey(), localeMessages(entry.getKey(), entry.getValue()));
+        }
+        next.putAll(stagedCatalogs);
+        Set<Locale> changed = new HashSet<>(staged.keySet());
+        changed.addAll(stagedCatalogs.keySet());
+        Map<Locale, LocaleMessages> locales = Collections.unmodifiableMap(next);
+        Map<Locale, Set<String>> changedKeys = stagedCatalogs.isEmpty() && !stagedKeys.containsValue(null)
+                ? stagedKeys : null;
+        Map<Locale, Map<String, MessageEntry>> linked = linker.link(locales, fallbacks, snapshot.getLinked(),
+                relinkAll ? null : changed, changedKeys);
+        staged.clear();
+        stagedCatalogs.clear();
+        stagedKeys.clear();
+        snapshot = new MessageSnapshot(locales, fallbacks, linked);
+    }
+
+    // Must hold writeLock, with nothing staged. Publishes locales where only keys of locale changed.
+    private void publish(Map<Locale, LocaleMessages> locales, Locale locale, Set<String> keys) {
+        Map<Locale, Map<String, MessageEntry>> linked = linker.link(locales, snapshot.getFallbacks(),
+                snapshot.getLinked(), Collections.singleton(locale), Collections.singletonMap(locale, keys));
+        snapshot = new MessageSnapshot(locales, snapshot.getFallbacks(), linked);
+    }
+
+    private static final class RenderBuffer {
+        private final StringBuilder builder = new StringBuilder();
+        private boolean inUse;
+
+        private void release() {
+            builder.setLength(0);
+            if (builder.capacity() > MaxRetainedBufferSize) {
+                builder.trimToSize();
+            }
+            inUse = false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable view of every published locale, plus caches of how requested locales and keys resolve against it.
+ * The caches are bounded and die with the snapshot, so arbitrary locale tags from clients cannot grow memory and a
+ * lookup for an uncovered locale costs the same as a covered one after the first time.
+ * <p>
+ * Entries whose {@code %message:%} references were linked by {@link MessageLinker} are kept per published locale and
+ * are only used for requests that resolve through exactly that locale's chain.
+ */
+final class MessageSnapshot {
+    static final MessageSnapshot Empty = new MessageSnapshot(Collections.emptyMap(), LocaleFallbacks.None,
+            Collections.emptyMap());
+    private static final int MaxResolvedLocales = 256;
+    private static final int MaxResolvedKeys = 4096;
+    private static final LocaleMessages[] NoMessages = new LocaleMessages[0];
+    private static final MessageEntry[] NoEntries = new MessageEntry[0];
+
+    private final Map<Locale, LocaleMessages> locales;
+    private final LocaleFallbacks fallbacks;
+    private final Map<Locale, Map<String, MessageEntry>> linked;
+    private final Map<Locale, ResolvedLocale> resolved = new ConcurrentHashMap<>();
+
+    MessageSnapshot(Map<Locale, LocaleMessages> locales, LocaleFallbacks fallbacks,
+                    Map<Locale, Map<String, MessageEntry>> linked) {
+        this.locales = locales;
+        this.fallbacks = fallbacks;
+        this.linked = linked;
+    }
+
+    Map<Locale, LocaleMessages> getLocales() {
+        return locales;
+    }
+
+    LocaleFallbacks getFallbacks() {
+        return fallbacks;
+    }
+
+    Map<Locale, Map<String, MessageEntry>> getLinked() {
+        return linked;
+    }
+
+    ResolvedLocale resolve(Locale locale) {
+        ResolvedLocale resolvedLocale = resolved.get(locale);
+        if (resolvedLocale != null) {
+            return resolvedLocale;
+        }
+        LocaleMessages[] chain = chain(locales, fallbacks, locale);
+        Map<String, MessageEntry> linkedEntries = null;
+        if (chain.length > 0) {
+            Locale first = chain[0].getLocale();
+            linkedEntries = linked.get(first);
+            if (linkedEntries != null && !first.equals(locale)
+                    && !Arrays.equals(chain, chain(locales, fallbacks, first))) {
+                linkedEntries = null;
+            }
+        }
+        resolvedLocale = new ResolvedLocale(chain, linkedEntries);
+        if (resolved.size() >= MaxResolvedLocales) {
+            resolved.clear();
+        }
+        ResolvedLocale existing = resolved.putIfAbsent(locale, resolvedLocale);
+        return existing == null ? resolvedLocale : existing;
+    }
+
+    /**
+     * @return the published locales tried for {@code locale}, in order.
+     */
+    static LocaleMessages[] chain(Map<Locale, LocaleMessages> locales, LocaleFallbacks fallbacks, Locale locale) {
+        List<LocaleMessages> chain = new ArrayList<>();
+        for (Locale candidate : fallbacks.chain(locale)) {
+            LocaleMessages messages = locales.get(candidate);
+            if (messages != null) {
+                chain.add(messages);
+            }
+        }
+        return chain.toArray(NoMessages);
+    }
+
+    static final class ResolvedLocale {
+        private final LocaleMessages[] chain;
+        private final @Nullable Map<String, MessageEntry> linked;
+        private final @Nullable Map<String, MessageEntry> hits;
+        // Entries found through handles, by handle index. Filled without locking; a lost write is looked up again.
+        private volatile MessageEntry[] handleHits = NoEntries;
+
+        private ResolvedLocale(LocaleMessages[] chain, @Nullable Map<String, MessageEntry> linked) {
+            this.chain = chain;
+            this.linked = linked;
+            this.hits = chain.length > 1 ? new ConcurrentHashMap<>() : null;
+        }
+
+        /**
+         * @return the entry for {@code id} from the first locale in the chain that has it.
+         */
+        @Nullable MessageEntry find(String id) {
+            if (linked != null) {
+                MessageEntry entry = linked.get(id);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            if (hits == null) {
+                return chain.length == 0 ? null : chain[0].getEntry(id);
+            }
+            MessageEntry entry = hits.get(id);
+            if (entry != null) {
+                return entry == MessageEntry.Missing ? null : entry;
+            }
+            entry = MessageEntry.Missing;
+            for (LocaleMessages messages : chain) {
+                MessageEntry candidate = messages.getEntry(id);
+                if (candidate != null) {
+                    entry = candidate;
+                    break;
+                }
+            }
+            if (hits.size() < MaxResolvedKeys) {
+                hits.put(id, entry);
+            }
+            return entry == MessageEntry.Missing ? null : entry;
+        }
+
+        /**
+         * @return the same entry as {@link #find(String)} for the handle's key, by array index after the first time.
+         */
+        @Nullable MessageEntry find(MessageHandle handle) {
+            int index = handle.getIndex();
+            MessageEntry[] entries = handleHits;
+            if (index < entries.length) {
+                MessageEntry entry = entries[index];
+                if (entry != null) {
+                    return entry == MessageEntry.Missing ? null : entry;
+                }
+            }
+            MessageEntry entry = find(handle.getKey());
+            if (index >= entries.length) {
+                synchronized (this) {
+                    entries = handleHits;
+                    if (index >= entries.length) {
+                        handleHits = entries = Arrays.copyOf(entries, Math.max(index + 1, entries.length * 2));
+                    }
+                }
+            }
+            entries[index] = entry == null ? MessageEntry.Missing : entry;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.meta.MessageMetaProcessor;
+import software.shattered.mini18n.meta.MessageMetaProcessor.Purity;
+import software.shattered.mini18n.metrics.MessageMetrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A message parsed once into literal text, {@code %placeholder%} slots and {@code %meta:argument%} calls, so that
+ * rendering is a single pass over the segments instead of repeated regex scanning and string replacement.
+ * Placeholders may name a format after a comma, such as {@code %count,number%} or {@code %when,date:short%}, which
+ * renders their value for the locale; see {@link ValueFormat} for the formats.
+ */
+public final class MessageTemplate {
+    private static final Segment[] NoSegments = new Segment[0];
+
+    private final String source;
+    private final Segment[] segments;
+    private final int literalLength;
+    private final boolean hasMetaCalls;
+    private final boolean isLocalized;
+
+    private MessageTemplate(String source, Segment[] segments, int literalLength) {
+        this.source = source;
+        this.segments = segments;
+        this.literalLength = literalLength;
+        boolean hasMetaCalls = false;
+        boolean isLocalized = false;
+        for (Segment segment : segments) {
+            hasMetaCalls |= segment instanceof MetaCall
+                    || segment instanceof Reference && ((Reference) segment).entry.hasMetaCalls();
+            isLocalized |= segment instanceof FormattedPlaceholder || segment instanceof Reference;
+        }
+        this.hasMetaCalls = hasMetaCalls;
+        this.isLocalized = isLocalized;
+    }
+
+    public static MessageTemplate compile(@NotNull String source) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            int open = source.indexOf('%', i);
+            if (open < 0) {
+                literal.append(source, i, length);
+                break;
+            }
+            literal.append(source, i, open);
+            int close = source.indexOf('%', open + 1);
+            if (close < 0) {
+                literal.append(source, open, length);
+                break;
+            }
+            Segment token = parseToken(source, source.substring(open + 1, close));
+            if (token == null) {
+                // Not a placeholder, so the opening '%' is plain text and the closing one may start the next token.
+                literal.append(source, open, close);
+                i = close;
+                continue;
+            }
+            if (literal.length() > 0) {
+                literalLength += literal.length();
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(token);
+            i = close + 1;
+        }
+        if (literal.length() > 0) {
+            literalLength += literal.length();
+            segments.add(new Literal(literal.toString()));
+        }
+        return new MessageTemplate(source, segments.toArray(NoSegments), literalLength);
+    }
+
+    private static @Nullable Segment parseToken(String source, String token) {
+        if (token.isEmpty() || token.indexOf('\n') >= 0) {
+            return null;
+        }
+        int colon = token.indexOf(':');
+        String name = colon < 0 ? token : token.substring(0, colon);
+        if (name.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isWhitespace(name.charAt(i))) {
+                return null;
+            }
+        }
+        int comma = name.indexOf(',');
+        if (comma > 0) {
+            ValueFormat format = ValueFormat.parse(token.substring(comma + 1));
+            if (format == null) {
+                // Read as before formats were supported, as a placeholder named by the whole token.
+                return colon < 0 ? new Placeholder(name, MessageArguments.slot(name)) : null;
+            }
+            String placeholder = name.substring(0, comma);
+            return new FormattedPlaceholder(placeholder, MessageArguments.slot(placeholder), format);
+        }
+        if (colon < 0) {
+            return new Placeholder(name, MessageArguments.slot(name));
+        }
+        return new MetaCall(name, token.substring(colon + 1), source);
+    }
+
+    /**
+     * Builds a template from segments taken out of other templates, joining adjacent literals.
+     */
+    static MessageTemplate link(String source, List<Segment> segments) {
+        List<Segment> joined = new ArrayList<>(segments.size());
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        for (Segment segment : segments) {
+            if (segment instanceof Literal) {
+                literal.append(((Literal) segment).text);
+                continue;
+            }
+            if (literal.length() > 0) {
+                literalLength += literal.length();
+                joined.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            joined.add(segment);
+        }
+        if (joined.isEmpty()) {
+            return new MessageTemplate(literal.toString(), literal.length() == 0 ? NoSegments
+                    : new Segment[]{new Literal(literal.toString())}, literal.length());
+        }
+        if (literal.length() > 0) {
+            literalLength += literal.length();
+            joined.add(new Literal(literal.toString()));
+        }
+        return new MessageTemplate(source, joined.toArray(NoSegments), literalLength);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return true if this template has no placeholders or meta calls and always renders to its source.
+     */
+    public boolean isConstant() {
+        return segments.length == 0 || segments.length == 1 && segments[0] instanceof Literal;
+    }
+
+    /**
+     * @return true if rendering may call a meta processor, including from a linked message.
+     */
+    boolean hasMetaCalls() {
+        return hasMetaCalls;
+    }
+
+    /**
+     * @return true if the same values may render differently in different locales, because of a formatted
+     *         placeholder or a plural reference, even with no meta calls.
+     */
+    boolean isLocalized() {
+        return isLocalized;
+    }
+
+    /**
+     * @return true if this template renders the same for the same locale and data, because every meta call it makes
+     *         is to a processor that is not {@link Purity#Volatile}.
+     */
+    boolean rendersByData(MessageSet set) {
+        if (!hasMetaCalls) {
+            return true;
+        }
+        for (Segment segment : segments) {
+            if (segment instanceof MetaCall) {
+                MessageMetaProcessor processor = set.getMetaProcessor(((MetaCall) segment).id);
+                if (processor != null && processor.getPurity() == Purity.Volatile) {
+                    return false;
+                }
+            } else if (segment instanceof Reference && ((Reference) segment).entry.hasMetaCalls()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the name of every placeholder in this template, in the order they first appear, mapped to the format
+     *         given for it, such as {@code "date:short"}, or to null if it has none.
+     */
+    public Map<String, String> getPlaceholders() {
+        Map<String, String> placeholders = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            if (segment instanceof Placeholder) {
+                placeholders.putIfAbsent(((Placeholder) segment).name, null);
+            } else if (segment instanceof FormattedPlaceholder) {
+                FormattedPlaceholder placeholder = (FormattedPlaceholder) segment;
+                if (placeholders.get(placeholder.name) == null) {
+                    placeholders.put(placeholder.name, placeholder.format.getSpec());
+                }
+            }
+        }
+        return placeholders;
+    }
+
+    /**
+     * @return the argument of every {@code %id:argument%} call in this template, in order, such as the keys of the
+     *         messages it includes with {@code %message:key%}.
+     */
+    public List<String> getMetaArguments(@NotNull String id) {
+        List<String> arguments = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment instanceof MetaCall && ((MetaCall) segment).id.equals(id)) {
+                arguments.add(((MetaCall) segment).argument);
+            }
+        }
+        return arguments;
+    }
+
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    String render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                  @Nullable MessageArguments arguments) {
+        if (isConstant()) {
+            return source;
+        }
+        StringBuilder builder = new StringBuilder(literalLength + 16 * segments.length);
+        render(set, locale, data, arguments, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Values are taken from {@code arguments} if given, and from {@code data} otherwise.
+     */
+    void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                @Nullable MessageArguments arguments, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.render(set, locale, data, arguments, out);
+        }
+    }
+
+    static void appendValue(StringBuilder out, @Nullable Object value) {
+        if (value instanceof CharSequence) {
+            out.append((CharSequence) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte) {
+            out.append(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            out.append(((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            out.append(((Float) value).floatValue());
+        } else if (value instanceof Boolean) {
+            out.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            out.append(((Character) value).charValue());
+        } else {
+            out.append(value);
+        }
+    }
+
+    static abstract class Segment {
+        abstract void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                             @Nullable MessageArguments arguments, StringBuilder out);
+    }
+
+    static final class Literal extends Segment {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        @Override
+        void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                    @Nullable MessageArguments arguments, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    static final class Placeholder extends Segment {
+        private final String name;
+        private final int slot;
+
+        Placeholder(String name, int slot) {
+            this.name = name;
+            this.slot = slot;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        @Override
+        void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                    @Nullable MessageArguments arguments, StringBuilder out) {
+            if (arguments != null) {
+                if (slot != MessageArguments.NoSlot) {
+                    if (!arguments.append(slot, out)) {
+                        out.append('%').append(name).append('%');
+                    }
+                    return;
+                }
+                data = arguments.asMap();
+            }
+            Object value = data == null ? null : LazyData.get(data, name);
+            if (value == null && (data == null || !data.containsKey(name))) {
+                out.append('%').append(name).append('%');
+                return;
+            }
+            appendValue(out, value);
+        }
+    }
+
+    static final class FormattedPlaceholder extends Segment {
+        private final String name;
+        private final int slot;
+        private final ValueFormat format;
+
+        FormattedPlaceholder(String name, int slot, ValueFormat format) {
+            this.name = name;
+            this.slot = slot;
+            this.format = format;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        ValueFormat getFormat() {
+            return format;
+        }
+
+        @Override
+        void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                    @Nullable MessageArguments arguments, StringBuilder out) {
+            if (arguments != null) {
+                if (slot != MessageArguments.NoSlot) {
+                    if (!arguments.append(slot, format, locale, out)) {
+                        appendToken(out);
+                    }
+                    return;
+                }
+                data = arguments.asMap();
+            }
+            Object value = data == null ? null : LazyData.get(data, name);
+            if (value == null && (data == null || !data.containsKey(name))) {
+                appendToken(out);
+                return;
+            }
+            format.append(locale, value, out);
+        }
+
+        private void appendToken(StringBuilder out) {
+            out.append('%').append(name).append(',').append(format.getSpec()).append('%');
+        }
+    }
+
+    static final class MetaCall extends Segment {
+        private final String id;
+        private final String argument;
+        // The message this call was written in, which is handed to the processor even after the call is inlined.
+        private final String source;
+
+        MetaCall(String id, String argument, String source) {
+            this.id = id;
+            this.argument = argument;
+            this.source = source;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getArgument() {
+            return argument;
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        @Override
+        void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                    @Nullable MessageArguments arguments, StringBuilder out) {
+            MessageMetaProcessor processor = set.getMetaProcessor(id);
+            if (processor == null) {
+                return;
+            }
+            MessageMetrics metrics = set.getMetrics();
+            long start = metrics == null ? 0L : System.nanoTime();
+            Map<String, Object> values = arguments != null ? arguments.asMap() : LazyData.view(data);
+            processor.append(locale, argument, source, values, out);
+            if (metrics != null) {
+                metrics.onMetaProcessor(id, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * A link to a referenced message with plural variants, which picks its variant from the values of each render.
+     */
+    static final class Reference extends Segment {
+        private final MessageEntry entry;
+
+        Reference(MessageEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        void render(MessageSet set, Locale locale, @Nullable Map<String, Object> data,
+                    @Nullable MessageArguments arguments, StringBuilder out) {
+            MessageTemplate template = set.select(entry, data, arguments);
+            if (template != null) {
+                template.render(set, locale, data, arguments, out);
+            }
+        }
+    }
+}
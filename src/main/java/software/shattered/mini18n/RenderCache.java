@@ -0,0 +1,230 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.lang.PluralOperands;
+import software.shattered.mini18n.meta.MessageMetaProcessor.Purity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An opt-in cache of the strings returned by {@link MessageSet#get(Locale, String, Map)}, keyed on the locale, the
+ * message key and the values of the render, see {@link MessageSet#setRenderCache(RenderCache)}. It holds about
+ * {@code maxBytes} of keys and results, split across independently locked segments that each drop their least
+ * recently used renders first.
+ * <p>
+ * Only renders whose values are all strings, boxed primitives or numbers such as {@link PluralOperands}, and whose meta
+ * calls all go to processors that are not {@link Purity#Volatile}, are cached, since anything else may render
+ * differently for the same values. Calls to {@link Purity#DataDependent} processors render the same for the same
+ * values, and calls to {@link Purity#Constant} ones are already folded into the template. Renders that inline another
+ * message with meta calls are not cached. Messages without placeholders never enter the cache: their compiled template
+ * already holds the result for each locale. An entry is only used while the set would still render the same compiled
+ * message for it, so messages changed by {@code add} and {@code addAll} are seen by the next render.
+ */
+public final class RenderCache {
+    public static final long DefaultMaxBytes = 4L * 1024 * 1024;
+    private static final int SegmentCount = 16;
+    private static final int EntryBytes = 96;
+    private static final int ValueBytes = 32;
+
+    private final Segment[] segments = new Segment[SegmentCount];
+    private final long maxSegmentBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RenderCache() {
+        this(DefaultMaxBytes);
+    }
+
+    public RenderCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxSegmentBytes = Math.max(1, maxBytes / SegmentCount);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public RenderCacheStats getStats() {
+        long size = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+                bytes += segment.bytes;
+            }
+        }
+        return new RenderCacheStats(hits.sum(), misses.sum(), evictions.sum(), size, bytes);
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the key of a render with {@code data}, or null if one of its values cannot be cached. Lazy values are
+     *         not, since they would have to be computed for the key. The key reads {@code data} itself, which is only
+     *         copied once the key is {@linkplain #put stored}.
+     */
+    static @Nullable Key key(Locale locale, String message, @Nullable Map<String, Object> data) {
+        data = LazyData.unwrap(data);
+        if (data == null || data.isEmpty()) {
+            return new Key(locale, message, Collections.emptyMap(), 0);
+        }
+        int bytes = 0;
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (!isCacheable(entry.getValue())) {
+                return null;
+            }
+            bytes += ValueBytes + 2 * entry.getKey().length() + bytesOf(entry.getValue());
+        }
+        return new Key(locale, message, data, bytes);
+    }
+
+    static @Nullable Key key(Locale locale, String message, MessageArguments arguments) {
+        Object[] values = arguments.cacheKey();
+        if (values == null) {
+            return null;
+        }
+        int bytes = 0;
+        for (int i = 1; i < values.length; i += 2) {
+            bytes += ValueBytes + bytesOf(values[i]);
+        }
+        return new Key(locale, message, values, bytes);
+    }
+
+    static boolean isCacheable(@Nullable Object value) {
+        return value == null || value instanceof String || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value instanceof Boolean || value instanceof Character
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof PluralOperands || value instanceof BigDecimal || value instanceof BigInteger;
+    }
+
+    private static int bytesOf(@Nullable Object value) {
+        return value instanceof String ? 2 * ((String) value).length() : 0;
+    }
+
+    /**
+     * @return the cached render for {@code key}, or null if there is none or it was rendered from another template.
+     */
+    @Nullable String get(Key key, MessageTemplate template) {
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            if (entry != null && entry.template == template) {
+                hits.increment();
+                return entry.result;
+            }
+            if (entry != null) {
+                segment.entries.remove(key);
+                segment.bytes -= entry.bytes;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(Key key, MessageTemplate template, String result) {
+        long bytes = EntryBytes + key.bytes + 2L * (key.message.length() + result.length());
+        if (bytes > maxSegmentBytes) {
+            return;
+        }
+        key = key.stored();
+        Segment segment = segmentOf(key);
+        synchronized (segment) {
+            Entry previous = segment.entries.put(key, new Entry(template, result, bytes));
+            segment.bytes += bytes - (previous == null ? 0 : previous.bytes);
+            Iterator<Entry> eldest = segment.entries.values().iterator();
+            while (segment.bytes > maxSegmentBytes && eldest.hasNext()) {
+                segment.bytes -= eldest.next().bytes;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private Segment segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ hash >>> 16) & SegmentCount - 1];
+    }
+
+    static final class Key {
+        private final Locale locale;
+        private final String message;
+        // The render's data, copied once stored, or slot and value pairs of its arguments.
+        private final Object values;
+        private final int bytes;
+        private final int hash;
+
+        private Key(Locale locale, String message, Object values, int bytes) {
+            this.locale = locale;
+            this.message = message;
+            this.values = values;
+            this.bytes = bytes;
+            int valuesHash = values instanceof Object[] ? Arrays.hashCode((Object[]) values) : values.hashCode();
+            this.hash = (locale.hashCode() * 31 + message.hashCode()) * 31 + valuesHash;
+        }
+
+        private Key(Key key, Object values) {
+            this.locale = key.locale;
+            this.message = key.message;
+            this.values = values;
+            this.bytes = key.bytes;
+            this.hash = key.hash;
+        }
+
+        /**
+         * @return this key with its own copy of the render's data, which the caller may change after the render.
+         */
+        private Key stored() {
+            if (!(values instanceof Map) || ((Map<?, ?>) values).isEmpty()) {
+                return this;
+            }
+            return new Key(this, new HashMap<>((Map<?, ?>) values));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && message.equals(other.message) && locale.equals(other.locale)
+                    && Objects.deepEquals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final MessageTemplate template;
+        private final String result;
+        private final long bytes;
+
+        private Entry(MessageTemplate template, String result, long bytes) {
+            this.template = template;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Segment {
+        private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+    }
+}
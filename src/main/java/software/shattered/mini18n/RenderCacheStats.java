@@ -0,0 +1,63 @@
+package software.shattered.mini18n;
+
+/**
+ * The counters of a {@link RenderCache} at one point in time.
+ */
+public final class RenderCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+    private final long bytes;
+
+    RenderCacheStats(long hits, long misses, long evictions, long size, long bytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.bytes = bytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Includes renders whose cached result was dropped because their message changed.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the share of cacheable renders that were served from the cache, or 0 if there were none.
+     */
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of renders dropped to stay within the size of the cache.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the estimated memory held by cached keys and renders.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCacheStats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size
+                + ", bytes=" + bytes + "}";
+    }
+}
@@ -0,0 +1,385 @@
+package software.shattered.mini18n;
+
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.lang.PluralOperands;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How a formatted placeholder such as {@code %price,currency%} or {@code %when,date:short%} renders its value, parsed
+ * once when its message is compiled. The formats are:
+ * <ul>
+ *     <li>{@code number} and {@code integer}: a grouped decimal, or one rounded to a whole number.</li>
+ *     <li>{@code percent}: a fraction as a percentage, so 0.25 is 25%.</li>
+ *     <li>{@code currency}, or {@code currency:EUR} for a fixed currency: an amount in the locale's currency.</li>
+ *     <li>{@code date}, {@code time} and {@code datetime}, with an optional {@code :short}, {@code :medium},
+ *     {@code :long} or {@code :full}: a {@link TemporalAccessor}, {@link Date}, or milliseconds since the epoch, in
+ *     the system time zone unless the value has its own.</li>
+ *     <li>{@code duration}: a {@link Duration} or milliseconds as hours, minutes and seconds, such as 1:05:09.</li>
+ * </ul>
+ * Date formatters are immutable and shared by every thread. Number formatters are not thread-safe, so each thread
+ * keeps its own per locale. Whole numbers in the {@code number} and {@code integer} formats skip them entirely and
+ * are written digit by digit with the locale's symbols, without boxing or allocating. A value the format does not
+ * apply to is rendered as it would be without one.
+ */
+abstract class ValueFormat {
+    private static final Map<Locale, LongSymbols> Symbols = new ConcurrentHashMap<>();
+    // Shared by every placeholder with the same spec, so their formatters are created once.
+    private static final Map<String, ValueFormat> Formats = new ConcurrentHashMap<>();
+
+    private final String spec;
+
+    private ValueFormat(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * @return the format for {@code spec}, such as {@code "date:short"}, or null if there is no such format.
+     */
+    static @Nullable ValueFormat parse(String spec) {
+        ValueFormat format = Formats.get(spec);
+        if (format == null) {
+            format = create(spec);
+            if (format != null) {
+                ValueFormat previous = Formats.putIfAbsent(spec, format);
+                format = previous != null ? previous : format;
+            }
+        }
+        return format;
+    }
+
+    private static @Nullable ValueFormat create(String spec) {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String style = colon < 0 ? null : spec.substring(colon + 1);
+        switch (kind) {
+            case "number":
+            case "integer":
+            case "percent":
+                return style == null ? new NumberValueFormat(spec, kind) : null;
+            case "currency":
+                if (style != null) {
+                    try {
+                        return new NumberValueFormat(spec, kind, Currency.getInstance(style));
+                    } catch (IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+                return new NumberValueFormat(spec, kind);
+            case "date":
+            case "time":
+            case "datetime":
+                FormatStyle formatStyle = style == null ? FormatStyle.MEDIUM : formatStyle(style);
+                return formatStyle == null ? null : new DateValueFormat(spec, kind, formatStyle);
+            case "duration":
+                return style == null ? new DurationValueFormat(spec) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static @Nullable FormatStyle formatStyle(String style) {
+        switch (style) {
+            case "short":
+                return FormatStyle.SHORT;
+            case "medium":
+                return FormatStyle.MEDIUM;
+            case "long":
+                return FormatStyle.LONG;
+            case "full":
+                return FormatStyle.FULL;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the text after the {@code ,} of the placeholder, such as {@code "date:short"}.
+     */
+    String getSpec() {
+        return spec;
+    }
+
+    void append(Locale locale, @Nullable Object value, StringBuilder out) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            append(locale, ((Number) value).longValue(), out);
+        } else if (value instanceof Double || value instanceof Float) {
+            append(locale, ((Number) value).doubleValue(), out);
+        } else {
+            appendObject(locale, value, out);
+        }
+    }
+
+    abstract void append(Locale locale, long value, StringBuilder out);
+
+    abstract void append(Locale locale, double value, StringBuilder out);
+
+    abstract void appendObject(Locale locale, @Nullable Object value, StringBuilder out);
+
+    private static final class NumberValueFormat extends ValueFormat {
+        private final String kind;
+        private final @Nullable Currency currency;
+        private final ThreadLocal<Map<Locale, NumberFormat>> formats = ThreadLocal.withInitial(HashMap::new);
+
+        NumberValueFormat(String spec, String kind) {
+            this(spec, kind, null);
+        }
+
+        NumberValueFormat(String spec, String kind, @Nullable Currency currency) {
+            super(spec);
+            this.kind = kind;
+            this.currency = currency;
+        }
+
+        @Override
+        void append(Locale locale, long value, StringBuilder out) {
+            if (kind.equals("number") || kind.equals("integer")) {
+                LongSymbols symbols = Symbols.computeIfAbsent(locale, LongSymbols::new);
+                if (symbols.append(value, out)) {
+                    return;
+                }
+            }
+            out.append(format(locale).format(value));
+        }
+
+        @Override
+        void append(Locale locale, double value, StringBuilder out) {
+            out.append(format(locale).format(value));
+        }
+
+        @Override
+        void appendObject(Locale locale, @Nullable Object value, StringBuilder out) {
+            if (value instanceof PluralOperands && kind.equals("number")) {
+                // Keeps the fraction digits as written, so 1.50 stays 1.50.
+                PluralOperands operands = (PluralOperands) value;
+                NumberFormat format = format(locale);
+                int minimum = format.getMinimumFractionDigits();
+                int maximum = format.getMaximumFractionDigits();
+                format.setMinimumFractionDigits(operands.v);
+                format.setMaximumFractionDigits(Math.max(operands.v, maximum));
+                out.append(format.format(operands.doubleValue()));
+                format.setMinimumFractionDigits(minimum);
+                format.setMaximumFractionDigits(maximum);
+            } else if (value instanceof Number) {
+                out.append(format(locale).format(value));
+            } else {
+                MessageTemplate.appendValue(out, value);
+            }
+        }
+
+        private NumberFormat format(Locale locale) {
+            Map<Locale, NumberFormat> formats = this.formats.get();
+            NumberFormat format = formats.get(locale);
+            if (format == null) {
+                format = create(locale);
+                formats.put(locale, format);
+            }
+            return format;
+        }
+
+        private NumberFormat create(Locale locale) {
+            switch (kind) {
+                case "integer":
+                    return NumberFormat.getIntegerInstance(locale);
+                case "percent":
+                    return NumberFormat.getPercentInstance(locale);
+                case "currency":
+                    NumberFormat format = NumberFormat.getCurrencyInstance(locale);
+                    if (currency != null) {
+                        format.setCurrency(currency);
+                        format.setMinimumFractionDigits(Math.max(0, currency.getDefaultFractionDigits()));
+                        format.setMaximumFractionDigits(Math.max(0, currency.getDefaultFractionDigits()));
+                    }
+                    return format;
+                default:
+                    return NumberFormat.getNumberInstance(locale);
+            }
+        }
+    }
+
+    private static final class DateValueFormat extends ValueFormat {
+        private final String kind;
+        private final FormatStyle style;
+        private final Map<Locale, DateTimeFormatter> formatters = new ConcurrentHashMap<>();
+
+        DateValueFormat(String spec, String kind, FormatStyle style) {
+            super(spec);
+            this.kind = kind;
+            this.style = style;
+        }
+
+        @Override
+        void append(Locale locale, long value, StringBuilder out) {
+            appendObject(locale, Instant.ofEpochMilli(value), out);
+        }
+
+        @Override
+        void append(Locale locale, double value, StringBuilder out) {
+            append(locale, (long) value, out);
+        }
+
+        @Override
+        void appendObject(Locale locale, @Nullable Object value, StringBuilder out) {
+            TemporalAccessor temporal = value instanceof Date ? ((Date) value).toInstant()
+                    : value instanceof TemporalAccessor ? (TemporalAccessor) value : null;
+            if (temporal == null) {
+                MessageTemplate.appendValue(out, value);
+                return;
+            }
+            DateTimeFormatter formatter = formatters.get(locale);
+            if (formatter == null) {
+                formatter = formatters.computeIfAbsent(locale, this::create);
+            }
+            int length = out.length();
+            try {
+                formatter.formatTo(temporal, out);
+            } catch (DateTimeException e) {
+                // Such as a time for a LocalDate.
+                out.setLength(length);
+                MessageTemplate.appendValue(out, value);
+            }
+        }
+
+        private DateTimeFormatter create(Locale locale) {
+            DateTimeFormatter formatter = kind.equals("date") ? DateTimeFormatter.ofLocalizedDate(style)
+                    : kind.equals("time") ? DateTimeFormatter.ofLocalizedTime(style)
+                    : DateTimeFormatter.ofLocalizedDateTime(style);
+            return formatter.withLocale(locale).withZone(ZoneId.systemDefault());
+        }
+    }
+
+    private static final class DurationValueFormat extends ValueFormat {
+        DurationValueFormat(String spec) {
+            super(spec);
+        }
+
+        @Override
+        void append(Locale locale, long value, StringBuilder out) {
+            LongSymbols symbols = Symbols.computeIfAbsent(locale, LongSymbols::new);
+            long seconds = value / 1000;
+            if (seconds < 0) {
+                out.append(symbols.minus);
+                seconds = -seconds;
+            }
+            symbols.appendDigits(seconds / 3600, 1, out);
+            out.append(':');
+            symbols.appendDigits(seconds / 60 % 60, 2, out);
+            out.append(':');
+            symbols.appendDigits(seconds % 60, 2, out);
+        }
+
+        @Override
+        void append(Locale locale, double value, StringBuilder out) {
+            append(locale, (long) value, out);
+        }
+
+        @Override
+        void appendObject(Locale locale, @Nullable Object value, StringBuilder out) {
+            if (value instanceof Duration) {
+                append(locale, ((Duration) value).toMillis(), out);
+            } else if (value instanceof Number) {
+                append(locale, ((Number) value).longValue(), out);
+            } else {
+                MessageTemplate.appendValue(out, value);
+            }
+        }
+    }
+
+    /**
+     * The symbols a locale writes whole numbers with, read once from its {@link DecimalFormat}.
+     */
+    private static final class LongSymbols {
+        private final char zero;
+        private final char minus;
+        private final char separator;
+        // 0 if the locale does not group digits.
+        private final int groupingSize;
+        // Null if the locale's format is not a DecimalFormat, so its output cannot be matched.
+        private final @Nullable String positivePrefix;
+        private final @Nullable String positiveSuffix;
+        private final @Nullable String negativePrefix;
+        private final @Nullable String negativeSuffix;
+
+        LongSymbols(Locale locale) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            NumberFormat format = NumberFormat.getNumberInstance(locale);
+            this.zero = symbols.getZeroDigit();
+            this.minus = symbols.getMinusSign();
+            this.separator = symbols.getGroupingSeparator();
+            if (format instanceof DecimalFormat) {
+                DecimalFormat decimal = (DecimalFormat) format;
+                this.groupingSize = decimal.isGroupingUsed() ? decimal.getGroupingSize() : 0;
+                this.positivePrefix = decimal.getPositivePrefix();
+                this.positiveSuffix = decimal.getPositiveSuffix();
+                this.negativePrefix = decimal.getNegativePrefix();
+                this.negativeSuffix = decimal.getNegativeSuffix();
+            } else {
+                this.groupingSize = 0;
+                this.positivePrefix = null;
+                this.positiveSuffix = null;
+                this.negativePrefix = null;
+                this.negativeSuffix = null;
+            }
+        }
+
+        /**
+         * @return false if the value must go through a {@link NumberFormat} instead.
+         */
+        boolean append(long value, StringBuilder out) {
+            if (value == Long.MIN_VALUE || positivePrefix == null) {
+                return false;
+            }
+            boolean negative = value < 0;
+            out.append(negative ? negativePrefix : positivePrefix);
+            if (negative) {
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value / 10; rest > 0; rest /= 10) {
+                digits++;
+            }
+            long divisor = 1;
+            for (int i = 1; i < digits; i++) {
+                divisor *= 10;
+            }
+            for (int i = digits; i > 0; i--) {
+                out.append((char) (zero + value / divisor % 10));
+                divisor /= 10;
+                if (groupingSize > 0 && i > 1 && (i - 1) % groupingSize == 0) {
+                    out.append(separator);
+                }
+            }
+            out.append(negative ? negativeSuffix : positiveSuffix);
+            return true;
+        }
+
+        /**
+         * Appends a value that is not negative, padded with zeroes to at least {@code minimum} digits.
+         */
+        void appendDigits(long value, int minimum, StringBuilder out) {
+            // Written lowest digit first, then reversed in place.
+            int start = out.length();
+            do {
+                out.append((char) (zero + value % 10));
+                value /= 10;
+                minimum--;
+            } while (value > 0 || minimum > 0);
+            for (int i = start, j = out.length() - 1; i < j; i++, j--) {
+                char c = out.charAt(i);
+                out.setCharAt(i, out.charAt(j));
+                out.setCharAt(j, c);
+            }
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package software.shattered.mini18n.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.CatalogLoader;
+import software.shattered.mini18n.MessageArguments;
+import software.shattered.mini18n.MessageHandle;
+import software.shattered.mini18n.MessageTemplate;
+import software.shattered.mini18n.lang.PluralCategory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Generates a class with a typed method for every message of a reference locale, read from a directory of
+ * translation files as {@link CatalogLoader} reads them. Each method takes a parameter per placeholder, typed by its
+ * format, and a {@code long count} if the message has plural variants, and renders its message through a
+ * {@link MessageHandle} with the values passed by {@link MessageArguments} slot. A misspelled key or placeholder is
+ * then a compile error rather than a missing message, and rendering skips looking up the key and building a map.
+ * <p>
+ * Run from a build with {@code AccessorGenerator <catalog directory> <locale> <class name> <output directory>}.
+ */
+public final class AccessorGenerator {
+    private static final String MessageReference = "message";
+    private static final int MaxDocLength = 120;
+    private static final Set<String> Keywords = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "false", "final", "finally", "float", "for", "goto",
+            "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null",
+            "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch",
+            "synchronized", "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while", "_"));
+
+    private final Map<String, Message> byKey = new TreeMap<>();
+
+    private AccessorGenerator(Map<String, MessageTemplate> messages) {
+        for (Map.Entry<String, MessageTemplate> entry : messages.entrySet()) {
+            String key = entry.getKey();
+            Variant variant = Variant.of(key);
+            String base = variant == Variant.Base ? key : key.substring(0, key.lastIndexOf('.'));
+            byKey.computeIfAbsent(base, Message::new).add(key, variant, entry.getValue());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: AccessorGenerator <catalog directory> <locale> <class name> <output directory>");
+            System.exit(2);
+        }
+        Path file = write(Paths.get(args[0]), Locale.forLanguageTag(args[1]), args[2], Paths.get(args[3]));
+        System.out.println("Wrote " + file);
+    }
+
+    /**
+     * Generates the accessors for {@code locale} in {@code catalogs} into the source tree under {@code output}.
+     *
+     * @return the file written.
+     * @throws IOException if the catalogs cannot be read or have no messages for the locale.
+     */
+    public static Path write(@NotNull Path catalogs, @NotNull Locale locale, @NotNull String className,
+                             @NotNull Path output) throws IOException {
+        Map<String, MessageTemplate> messages = CatalogLoader.read(catalogs, locale);
+        if (messages.isEmpty()) {
+            throw new IOException("No messages for " + locale.toLanguageTag() + " in " + catalogs);
+        }
+        Path file = output.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, generate(className, locale, messages).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * @param className the fully qualified name of the class to generate.
+     * @return the source of the class.
+     */
+    public static String generate(@NotNull String className, @NotNull Locale locale,
+                                  @NotNull Map<String, MessageTemplate> messages) {
+        return new AccessorGenerator(messages).generate(className, locale);
+    }
+
+    private String generate(String className, Locale locale) {
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+        Names fields = new Names("Arguments", "take", "give");
+        List<Accessor> accessors = new ArrayList<>();
+        for (Message message : byKey.values()) {
+            Map<String, String> placeholders = new LinkedHashMap<>();
+            boolean[] variants = new boolean[2];
+            collect(message, placeholders, variants, new HashSet<>());
+            message.handle = fields.take(identifier(message.key, false));
+            if (variants[0] || !variants[1]) {
+                accessors.add(new Accessor(message, message.handle, variants[0], false, placeholders));
+            }
+            if (variants[1]) {
+                accessors.add(new Accessor(message, fields.take(message.handle + "Range"), false, true,
+                        placeholders));
+            }
+        }
+        accessors.sort(Comparator.comparing(accessor -> accessor.name));
+        Names constants = new Names("Arguments", simpleName);
+        Map<String, String> slots = new TreeMap<>();
+        for (Accessor accessor : accessors) {
+            for (String placeholder : accessor.getSetPlaceholders()) {
+                if (!slots.containsKey(placeholder)) {
+                    slots.put(placeholder, constants.take(identifier(placeholder, true) + "Slot"));
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder();
+        out.append("// Generated by AccessorGenerator from the ").append(locale.toLanguageTag())
+                .append(" messages. Do not edit.\n");
+        if (dot >= 0) {
+            out.append("package ").append(className, 0, dot).append(";\n\n");
+        }
+        out.append("import software.shattered.mini18n.MessageArguments;\n");
+        out.append("import software.shattered.mini18n.MessageHandle;\n");
+        out.append("import software.shattered.mini18n.MessageSet;\n\n");
+        out.append("import java.util.Locale;\n\n");
+        out.append("/**\n");
+        out.append(" * Typed accessors for the messages of {@code ").append(locale.toLanguageTag())
+                .append("}. Each method renders its message through a\n");
+        out.append(" * {@link MessageHandle}, and returns null if neither the locale nor its fallbacks have it.\n");
+        out.append(" */\n");
+        out.append("public final class ").append(simpleName).append(" {\n");
+        for (Map.Entry<String, String> slot : slots.entrySet()) {
+            out.append("    private static final int ").append(slot.getValue()).append(" = MessageArguments.slot(")
+                    .append(literal(slot.getKey())).append(");\n");
+        }
+        boolean hasArguments = false;
+        for (Accessor accessor : accessors) {
+            hasArguments |= accessor.hasArguments();
+        }
+        if (hasArguments) {
+            out.append("    // Reused by each thread. A render started while another is using them, such as by a\n");
+            out.append("    // lazy value, gets its own.\n");
+            out.append("    private static final ThreadLocal<MessageArguments[]> Arguments =\n");
+            out.append("            ThreadLocal.withInitial(() -> new MessageArguments[1]);\n");
+        }
+        if (!slots.isEmpty() || hasArguments) {
+            out.append('\n');
+        }
+        for (Message message : byKey.values()) {
+            out.append("    private final MessageHandle ").append(message.handle).append(";\n");
+        }
+        out.append('\n');
+        out.append("    public ").append(simpleName).append("(MessageSet set) {\n");
+        for (Message message : byKey.values()) {
+            out.append("        this.").append(message.handle).append(" = set.handle(")
+                    .append(literal(message.key)).append(");\n");
+        }
+        out.append("    }\n");
+        for (Accessor accessor : accessors) {
+            out.append('\n');
+            accessor.write(out, slots);
+        }
+        if (hasArguments) {
+            out.append('\n');
+            out.append("    private static MessageArguments take() {\n");
+            out.append("        MessageArguments[] held = Arguments.get();\n");
+            out.append("        MessageArguments arguments = held[0];\n");
+            out.append("        held[0] = null;\n");
+            out.append("        return arguments != null ? arguments : new MessageArguments();\n");
+            out.append("    }\n\n");
+            out.append("    private static void give(MessageArguments arguments) {\n");
+            out.append("        Arguments.get()[0] = arguments.clear();\n");
+            out.append("    }\n");
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * Collects the placeholders of a message and of the messages it includes, and whether any of them have plural
+     * or range variants.
+     */
+    private void collect(Message message, Map<String, String> placeholders, boolean[] variants, Set<String> seen) {
+        if (!seen.add(message.key)) {
+            return;
+        }
+        variants[0] |= message.counted;
+        variants[1] |= message.ranged;
+        for (MessageTemplate template : message.templates) {
+            for (Map.Entry<String, String> placeholder : template.getPlaceholders().entrySet()) {
+                if (placeholders.get(placeholder.getKey()) == null) {
+                    placeholders.put(placeholder.getKey(), placeholder.getValue());
+                }
+            }
+            for (String key : template.getMetaArguments(MessageReference)) {
+                Message included = byKey.get(key);
+                if (included != null) {
+                    collect(included, placeholders, variants, seen);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the parameter type for a placeholder with the format {@code spec}, or null for any value.
+     */
+    private static @Nullable String typeOf(@Nullable String spec) {
+        if (spec == null) {
+            return null;
+        }
+        int colon = spec.indexOf(':');
+        switch (colon < 0 ? spec : spec.substring(0, colon)) {
+            case "integer":
+                return "long";
+            case "number":
+            case "percent":
+            case "currency":
+                return "double";
+            case "date":
+            case "time":
+            case "datetime":
+                return "java.time.temporal.TemporalAccessor";
+            case "duration":
+                return "java.time.Duration";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return {@code name} as a Java identifier in camel case, such as {@code shopItems} for {@code shop.items}.
+     */
+    static String identifier(String name, boolean capitalize) {
+        StringBuilder identifier = new StringBuilder();
+        boolean upper = capitalize;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) || c > 0x7F) {
+                upper = identifier.length() > 0 || capitalize;
+                continue;
+            }
+            if (identifier.length() == 0 && Character.isDigit(c)) {
+                identifier.append(capitalize ? 'M' : 'm');
+            }
+            identifier.append(upper ? Character.toUpperCase(c)
+                    : identifier.length() == 0 ? Character.toLowerCase(c) : c);
+            upper = false;
+        }
+        if (identifier.length() == 0) {
+            identifier.append(capitalize ? "Message" : "message");
+        }
+        String result = identifier.toString();
+        return Keywords.contains(result) ? result + "_" : result;
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                literal.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7E) {
+                literal.append(String.format("\\u%04x", (int) c));
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * @return {@code text} as one line of a doc comment, which must not end the comment or start a unicode escape.
+     */
+    private static String doc(String text) {
+        StringBuilder doc = new StringBuilder();
+        for (int i = 0; i < text.length() && doc.length() < MaxDocLength; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    doc.append("&amp;");
+                    break;
+                case '<':
+                    doc.append("&lt;");
+                    break;
+                case '>':
+                    doc.append("&gt;");
+                    break;
+                case '@':
+                    doc.append("&#64;");
+                    break;
+                case '/':
+                    doc.append("&#47;");
+                    break;
+                case '\\':
+                    doc.append("&#92;");
+                    break;
+                case '\n':
+                case '\r':
+                    doc.append(' ');
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7E) {
+                        doc.append("&#").append((int) c).append(';');
+                    } else {
+                        doc.append(c);
+                    }
+            }
+        }
+        return doc.length() >= MaxDocLength ? doc + "..." : doc.toString();
+    }
+
+    /**
+     * Hands out identifiers that are not taken yet, numbering repeats.
+     */
+    private static final class Names {
+        private final Set<String> taken = new HashSet<>();
+
+        Names(String... reserved) {
+            taken.addAll(Arrays.asList(reserved));
+        }
+
+        String take(String name) {
+            String unique = name;
+            for (int i = 2; !taken.add(unique); i++) {
+                unique = name + i;
+            }
+            return unique;
+        }
+    }
+
+    private enum Variant {
+        Base, Plural, Range;
+
+        static Variant of(String key) {
+            int dot = key.lastIndexOf('.');
+            if (dot < 0) {
+                return Base;
+            }
+            String suffix = key.substring(dot + 1);
+            int plus = suffix.indexOf('+');
+            if (plus < 0) {
+                return PluralCategory.forId(suffix) != null ? Plural : Base;
+            }
+            return PluralCategory.forId(suffix.substring(0, plus)) != null
+                    && PluralCategory.forId(suffix.substring(plus + 1)) != null ? Range : Base;
+        }
+    }
+
+    /**
+     * A base key and the templates of it and its variants.
+     */
+    private static final class Message {
+        private final String key;
+        private final List<MessageTemplate> templates = new ArrayList<>();
+        private @Nullable MessageTemplate base;
+        private @Nullable MessageTemplate other;
+        private boolean counted;
+        private boolean ranged;
+        // The name of its handle field, and of its accessor unless it only has range variants.
+        private String handle = "";
+
+        Message(String key) {
+            this.key = key;
+        }
+
+        void add(String key, Variant variant, MessageTemplate template) {
+            templates.add(template);
+            if (variant == Variant.Base) {
+                base = template;
+            } else if (variant == Variant.Plural) {
+                counted = true;
+                if (key.endsWith("." + PluralCategory.Other.getId())) {
+                    other = template;
+                }
+            } else {
+                ranged = true;
+            }
+        }
+
+        /**
+         * @return the text shown in the accessor's doc comment: the message itself, or its {@code other} variant.
+         */
+        String display() {
+            MessageTemplate template = base != null ? base : other != null ? other : templates.get(0);
+            return template.getSource();
+        }
+    }
+
+    private static final class Accessor {
+        private final Message message;
+        private final String name;
+        private final boolean counted;
+        private final boolean ranged;
+        private final Map<String, String> placeholders;
+
+        Accessor(Message message, String name, boolean counted, boolean ranged, Map<String, String> placeholders) {
+            this.message = message;
+            this.name = name;
+            this.counted = counted;
+            this.ranged = ranged;
+            this.placeholders = placeholders;
+        }
+
+        /**
+         * @return the placeholders that get a parameter of their own, rather than being set by the count or range.
+         */
+        List<String> getSetPlaceholders() {
+            List<String> set = new ArrayList<>();
+            for (String placeholder : placeholders.keySet()) {
+                boolean isCount = counted && placeholder.equals("count")
+                        || ranged && (placeholder.equals("range_min") || placeholder.equals("range_max"));
+                if (!isCount) {
+                    set.add(placeholder);
+                }
+            }
+            return set;
+        }
+
+        boolean hasArguments() {
+            return counted || ranged || !getSetPlaceholders().isEmpty();
+        }
+
+        void write(StringBuilder out, Map<String, String> slots) {
+            Names names = new Names("locale", "arguments");
+            StringBuilder parameters = new StringBuilder("Locale locale");
+            StringBuilder values = new StringBuilder("arguments");
+            if (counted) {
+                String count = names.take("count");
+                parameters.append(", long ").append(count);
+                values.append(".count(").append(count).append(')');
+            }
+            if (ranged) {
+                String min = names.take("rangeMin");
+                String max = names.take("rangeMax");
+                parameters.append(", long ").append(min).append(", long ").append(max);
+                values.append(".range(").append(min).append(", ").append(max).append(')');
+            }
+            for (String placeholder : getSetPlaceholders()) {
+                String parameter = names.take(identifier(placeholder, false));
+                String type = typeOf(placeholders.get(placeholder));
+                parameters.append(", ").append(type == null ? "Object" : type).append(' ').append(parameter);
+                values.append(".set(").append(slots.get(placeholder)).append(", ").append(parameter).append(')');
+            }
+            String handle = message.handle;
+
+            out.append("    /**\n");
+            out.append("     * {@code ").append(doc(message.key)).append("}: ").append(doc(message.display()))
+                    .append('\n');
+            out.append("     */\n");
+            out.append("    public String ").append(name).append('(').append(parameters).append(") {\n");
+            if (!hasArguments()) {
+                out.append("        return ").append(handle).append(".get(locale);\n");
+            } else {
+                out.append("        MessageArguments arguments = take();\n");
+                out.append("        try {\n");
+                out.append("            return ").append(handle).append(".get(locale, ").append(values).append(");\n");
+                out.append("        } finally {\n");
+                out.append("            give(arguments);\n");
+                out.append("        }\n");
+            }
+            out.append("    }\n");
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package software.shattered.mini18n.lang;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The built-in plural rules, from the cardinal, ordinal and range rules of CLDR 44. Languages with the same rules
+ * share one compiled instance. Each rule lists its categories as {@code category: condition}, separated by
+ * {@code ;}, and leaves out {@code other}.
+ */
+final class CldrPluralRules {
+    private static final String ManyMillions = "many: e = 0 and i != 0 and i % 1000000 = 0 and v = 0 or e != 0..5";
+    private static final String Slavic = "one: v = 0 and i % 10 = 1 and i % 100 != 11; "
+            + "few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14; "
+            + "many: v = 0 and i % 10 = 0 or v = 0 and i % 10 = 5..9 or v = 0 and i % 100 = 11..14";
+
+    // Rules are collected as text first, since a language's cardinal, ordinal and range rules are listed apart.
+    private final Map<String, String[]> sources = new HashMap<>();
+    private final Map<String, PluralRules> byLanguage = new ConcurrentHashMap<>();
+    private final Map<String, PluralRules> compiled = new HashMap<>();
+
+    private CldrPluralRules() {
+    }
+
+    /**
+     * @return the built-in rules by language code.
+     */
+    static Map<String, PluralRules> load() {
+        CldrPluralRules rules = new CldrPluralRules();
+        rules.addCardinal();
+        rules.addOrdinal();
+        rules.addRanges();
+        rules.compile();
+        // Kept for messages published under the code before it was corrected to zh.
+        rules.byLanguage.put("cn", rules.byLanguage.get("zh"));
+        return rules.byLanguage;
+    }
+
+    private String[] sources(String language) {
+        return sources.computeIfAbsent(language, ignored -> new String[]{"", "", ""});
+    }
+
+    private void cardinal(String languages, String rules) {
+        for (String language : languages.split(" ")) {
+            sources(language)[0] = rules;
+        }
+    }
+
+    private void ordinal(String languages, String rules) {
+        for (String language : languages.split(" ")) {
+            sources(language)[1] = rules;
+        }
+    }
+
+    private void ranges(String languages, String rules) {
+        for (String language : languages.split(" ")) {
+            sources(language)[2] = rules;
+        }
+    }
+
+    private void addCardinal() {
+        cardinal("bm bo dz hnj id ig ii in ja jbo jv jw kde kea km ko lkt lo ms my nqo osa sah ses sg su th to "
+                + "tpi vi wo yo yue zh", "");
+        cardinal("am as bn doi fa gu hi kn pcm zu", "one: i = 0 or n = 1");
+        cardinal("ff hy kab", "one: i = 0,1");
+        cardinal("ast de en et fi fy gl ia io lij nl sc sv sw ur yi", "one: i = 1 and v = 0");
+        cardinal("si", "one: n = 0,1 or i = 0 and f = 1");
+        cardinal("ak bho guw ln mg nso pa ti wa", "one: n = 0..1");
+        cardinal("tzm", "one: n = 0..1 or n = 11..99");
+        cardinal("af an asa az bal bem bez bg brx ce cgg chr ckb dv ee el eo eu fo fur gsw ha haw hu jgo jmc ka "
+                + "kaj kcg kk kkj kl ks ksb ku ky lb lg mas mgo ml mn mr nah nb nd ne nn nnh no nr ny nyn om or os "
+                + "pap ps rm rof rwk saq sd sdh seh sn so sq ss ssy st syr ta te teo tig tk tn tr ts ug uz ve vo vun "
+                + "wae xh xog", "one: n = 1");
+        cardinal("da", "one: n = 1 or t != 0 and i = 0,1");
+        cardinal("is", "one: t = 0 and i % 10 = 1 and i % 100 != 11 or t % 10 = 1 and t % 100 != 11");
+        cardinal("mk", "one: v = 0 and i % 10 = 1 and i % 100 != 11 or f % 10 = 1 and f % 100 != 11");
+        cardinal("ceb fil tl", "one: v = 0 and i = 1,2,3 or v = 0 and i % 10 != 4,6,9 or v != 0 and f % 10 != 4,6,9");
+        cardinal("lv prg", "zero: n % 10 = 0 or n % 100 = 11..19 or v = 2 and f % 100 = 11..19; "
+                + "one: n % 10 = 1 and n % 100 != 11 or v = 2 and f % 10 = 1 and f % 100 != 11 "
+                + "or v != 2 and f % 10 = 1");
+        cardinal("lag", "zero: n = 0; one: i = 0,1 and n != 0");
+        cardinal("ksh", "zero: n = 0; one: n = 1");
+        cardinal("he", "one: i = 1 and v = 0 or i = 0 and v != 0; two: i = 2 and v = 0");
+        cardinal("iu naq sat se sma smi smj smn sms", "one: n = 1; two: n = 2");
+        cardinal("es", "one: n = 1; " + ManyMillions);
+        cardinal("ca it vec", "one: i = 1 and v = 0; " + ManyMillions);
+        cardinal("fr", "one: i = 0,1; " + ManyMillions);
+        cardinal("pt", "one: i = 0..1; " + ManyMillions);
+        cardinal("shi", "one: i = 0 or n = 1; few: n = 2..10");
+        cardinal("mo ro", "one: i = 1 and v = 0; few: v != 0 or n = 0 or n != 1 and n % 100 = 1..19");
+        cardinal("bs hr sh sr", "one: v = 0 and i % 10 = 1 and i % 100 != 11 or f % 10 = 1 and f % 100 != 11; "
+                + "few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14 or f % 10 = 2..4 and f % 100 != 12..14");
+        cardinal("gd", "one: n = 1,11; two: n = 2,12; few: n = 3..10,13..19");
+        cardinal("sl", "one: v = 0 and i % 100 = 1; two: v = 0 and i % 100 = 2; "
+                + "few: v = 0 and i % 100 = 3..4 or v != 0");
+        cardinal("dsb hsb", "one: v = 0 and i % 100 = 1 or f % 100 = 1; two: v = 0 and i % 100 = 2 or f % 100 = 2; "
+                + "few: v = 0 and i % 100 = 3..4 or f % 100 = 3..4");
+        cardinal("cs sk", "one: i = 1 and v = 0; few: i = 2..4 and v = 0; many: v != 0");
+        cardinal("pl", "one: i = 1 and v = 0; few: v = 0 and i % 10 = 2..4 and i % 100 != 12..14; "
+                + "many: v = 0 and i != 1 and i % 10 = 0..1 or v = 0 and i % 10 = 5..9 or v = 0 and i % 100 = 12..14");
+        cardinal("be", "one: n % 10 = 1 and n % 100 != 11; few: n % 10 = 2..4 and n % 100 != 12..14; "
+                + "many: n % 10 = 0 or n % 10 = 5..9 or n % 100 = 11..14");
+        cardinal("lt", "one: n % 10 = 1 and n % 100 != 11..19; few: n % 10 = 2..9 and n % 100 != 11..19; "
+                + "many: f != 0");
+        cardinal("ru uk", Slavic);
+        cardinal("br", "one: n % 10 = 1 and n % 100 != 11,71,91; two: n % 10 = 2 and n % 100 != 12,72,92; "
+                + "few: n % 10 = 3..4,9 and n % 100 != 10..19,70..79,90..99; many: n != 0 and n % 1000000 = 0");
+        cardinal("mt", "one: n = 1; two: n = 2; few: n = 0 or n % 100 = 3..10; many: n % 100 = 11..19");
+        cardinal("ga", "one: n = 1; two: n = 2; few: n = 3..6; many: n = 7..10");
+        cardinal("gv", "one: v = 0 and i % 10 = 1; two: v = 0 and i % 10 = 2; "
+                + "few: v = 0 and i % 100 = 0,20,40,60,80; many: v != 0");
+        cardinal("kw", "zero: n = 0; one: n = 1; two: n % 100 = 2,22,42,62,82 "
+                + "or n % 1000 = 0 and n % 100000 = 1000..20000,40000,60000,80000 or n != 0 and n % 1000000 = 100000; "
+                + "few: n % 100 = 3,23,43,63,83; many: n != 1 and n % 100 = 1,21,41,61,81");
+        cardinal("ar ars", "zero: n = 0; one: n = 1; two: n = 2; few: n % 100 = 3..10; many: n % 100 = 11..99");
+        cardinal("cy", "zero: n = 0; one: n = 1; two: n = 2; few: n = 3; many: n = 6");
+    }
+
+    private void addOrdinal() {
+        ordinal("bal fil fr ga hy lo mo ms ro tl vi", "one: n = 1");
+        ordinal("en", "one: n % 10 = 1 and n % 100 != 11; two: n % 10 = 2 and n % 100 != 12; "
+                + "few: n % 10 = 3 and n % 100 != 13");
+        ordinal("sv", "one: n % 10 = 1,2 and n % 100 != 11,12");
+        ordinal("hu", "one: n = 1,5");
+        ordinal("ne", "one: n = 1..4");
+        ordinal("be", "few: n % 10 = 2,3 and n % 100 != 12,13");
+        ordinal("uk", "few: n % 10 = 3 and n % 100 != 13");
+        ordinal("tk", "few: n % 10 = 6,9 or n = 10");
+        ordinal("kk", "many: n % 10 = 6 or n % 10 = 9 or n % 10 = 0 and n != 0");
+        ordinal("it sc vec", "many: n = 11,8,80,800");
+        ordinal("lij", "many: n = 11,8,80..89,800..899");
+        ordinal("ka", "one: i = 1; many: i = 0 or i % 100 = 2..20,40,60,80");
+        ordinal("sq", "one: n = 1; many: n % 10 = 4 and n % 100 != 14");
+        ordinal("kw", "one: n = 1..4 or n % 100 = 1..4,21..24,41..44,61..64,81..84; many: n = 5 or n % 100 = 5");
+        ordinal("mk", "one: i % 10 = 1 and i % 100 != 11; two: i % 10 = 2 and i % 100 != 12; "
+                + "many: i % 10 = 7,8 and i % 100 != 17,18");
+        ordinal("ca", "one: n = 1,3; two: n = 2; few: n = 4");
+        ordinal("mr", "one: n = 1; two: n = 2,3; few: n = 4");
+        ordinal("gu hi", "one: n = 1; two: n = 2,3; few: n = 4; many: n = 6");
+        ordinal("as bn", "one: n = 1,5,7,8,9,10; two: n = 2,3; few: n = 4; many: n = 6");
+        ordinal("or", "one: n = 1,5,7..9; two: n = 2,3; few: n = 4; many: n = 6");
+        ordinal("gd", "one: n = 1,11; two: n = 2,12; few: n = 3,13");
+        ordinal("az", "one: i % 10 = 1,2,5,7,8 or i % 100 = 20,50,70,80; "
+                + "few: i % 10 = 3,4 or i % 1000 = 100,200,300,400,500,600,700,800,900; "
+                + "many: i = 0 or i % 10 = 6 or i % 100 = 40,60,90");
+        ordinal("cy", "zero: n = 0,7,8,9; one: n = 1; two: n = 2; few: n = 3,4; many: n = 5,6");
+    }
+
+    // Only the languages whose ranges do not all take the category of their end.
+    private void addRanges() {
+        ranges("lv prg", "zero+zero: other; one+zero: other; other+zero: other");
+        ranges("mo ro", "few+one: few");
+        ranges("sl", "one+one: few; two+one: few; few+one: few; other+one: few");
+        ranges("ar ars", "zero+one: zero; zero+two: zero; one+two: other; other+one: other; other+two: other");
+        ranges("af bg ca en es et eu fi nb sv ur", "other+one: other");
+        ranges("fa", "one+one: other; other+one: other");
+        ranges("ka", "one+other: one; other+one: other");
+        ranges("si", "other+one: other");
+        ranges("mk", "one+one: other; other+one: other");
+    }
+
+    private void compile() {
+        for (Map.Entry<String, String[]> entry : sources.entrySet()) {
+            String[] source = entry.getValue();
+            PluralRules rules = compiled.computeIfAbsent(String.join("|", source), ignored ->
+                    new CompiledPluralRules(CompiledPluralRules.parse(categories(source[0])),
+                            CompiledPluralRules.parse(categories(source[1])), ranges(source[2])));
+            byLanguage.put(entry.getKey(), rules);
+        }
+    }
+
+    static Map<PluralCategory, String> categories(String rules) {
+        Map<PluralCategory, String> categories = new EnumMap<>(PluralCategory.class);
+        for (String rule : rules.split(";")) {
+            if (rule.trim().isEmpty()) {
+                continue;
+            }
+            int colon = rule.indexOf(':');
+            categories.put(category(rule.substring(0, colon)), rule.substring(colon + 1));
+        }
+        return categories;
+    }
+
+    private static PluralCategory @Nullable [] ranges(String rules) {
+        if (rules.isEmpty()) {
+            return null;
+        }
+        PluralCategory[] ranges = new PluralCategory[PluralCategory.Count * PluralCategory.Count];
+        for (String rule : rules.split(";")) {
+            int plus = rule.indexOf('+');
+            int colon = rule.indexOf(':');
+            PluralCategory start = category(rule.substring(0, plus));
+            PluralCategory end = category(rule.substring(plus + 1, colon));
+            ranges[start.ordinal() * PluralCategory.Count + end.ordinal()] = category(rule.substring(colon + 1));
+        }
+        return ranges;
+    }
+
+    private static PluralCategory category(String id) {
+        PluralCategory category = PluralCategory.forId(id.trim());
+        if (category == null) {
+            throw new IllegalArgumentException("Unknown plural category: " + id);
+        }
+        return category;
+    }
+}
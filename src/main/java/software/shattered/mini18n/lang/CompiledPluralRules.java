@@ -0,0 +1,102 @@
+package software.shattered.mini18n.lang;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * Plural rules compiled from CLDR conditions, see {@link PluralRules#compile(Map, Map)}. Every integer below
+ * {@link #TableSize} has its categories looked up in a table built once from the conditions, so the counts messages
+ * are usually rendered with cost one array access regardless of how involved the language's rules are. Other counts
+ * test the conditions of each category in turn.
+ */
+final class CompiledPluralRules extends PluralRules.OperandRules {
+    static final int TableSize = 1000;
+    // The categories tested in order, where the first whose condition holds is selected. Other always holds.
+    private static final PluralCategory[] Tested = {
+            PluralCategory.Zero, PluralCategory.One, PluralCategory.Two, PluralCategory.Few, PluralCategory.Many
+    };
+    private static final PluralCategory[] Categories = PluralCategory.values();
+
+    private final PluralCondition[] cardinal;
+    private final PluralCondition[] ordinal;
+    private final byte[] cardinalTable = new byte[TableSize];
+    private final byte[] ordinalTable = new byte[TableSize];
+    private final PluralCategory @Nullable [] ranges;
+
+    /**
+     * @param cardinal conditions by {@link PluralCategory#ordinal()}, null where the category is not used.
+     * @param ranges categories of ranges by start and end ordinal, null where a range takes its end's category.
+     */
+    CompiledPluralRules(PluralCondition[] cardinal, PluralCondition[] ordinal,
+                        PluralCategory @Nullable [] ranges) {
+        this.cardinal = cardinal;
+        this.ordinal = ordinal;
+        this.ranges = ranges;
+        for (int i = 0; i < TableSize; i++) {
+            cardinalTable[i] = (byte) evaluate(cardinal, i, i, 0, 0).ordinal();
+            ordinalTable[i] = (byte) evaluate(ordinal, i, i, 0, 0).ordinal();
+        }
+    }
+
+    static PluralCondition[] parse(Map<PluralCategory, String> conditions) {
+        PluralCondition[] parsed = new PluralCondition[PluralCategory.Count];
+        for (Map.Entry<PluralCategory, String> entry : conditions.entrySet()) {
+            if (entry.getKey() != PluralCategory.Other) {
+                parsed[entry.getKey().ordinal()] = PluralCondition.parse(entry.getValue());
+            }
+        }
+        return parsed;
+    }
+
+    private static PluralCategory evaluate(PluralCondition[] conditions, double n, long i, int v, long f) {
+        for (PluralCategory category : Tested) {
+            PluralCondition condition = conditions[category.ordinal()];
+            if (condition != null && condition.test(n, i, v, f)) {
+                return category;
+            }
+        }
+        return PluralCategory.Other;
+    }
+
+    @Override
+    PluralCategory select(double n, long i, int v, long f) {
+        if (v == 0 && i < TableSize) {
+            return Categories[cardinalTable[(int) i]];
+        }
+        return evaluate(cardinal, n, i, v, f);
+    }
+
+    @Override
+    PluralCategory selectOrdinal(double n, long i, int v, long f) {
+        if (v == 0 && i < TableSize) {
+            return Categories[ordinalTable[(int) i]];
+        }
+        return evaluate(ordinal, n, i, v, f);
+    }
+
+    @Override
+    public PluralCategory selectCategory(long count) {
+        if (count >= 0 && count < TableSize) {
+            return Categories[cardinalTable[(int) count]];
+        }
+        return super.selectCategory(count);
+    }
+
+    @Override
+    public PluralCategory selectOrdinalCategory(long count) {
+        if (count >= 0 && count < TableSize) {
+            return Categories[ordinalTable[(int) count]];
+        }
+        return super.selectOrdinalCategory(count);
+    }
+
+    @Override
+    public PluralCategory selectRangeCategory(PluralCategory start, PluralCategory end) {
+        if (ranges == null) {
+            return end;
+        }
+        PluralCategory category = ranges[start.ordinal() * PluralCategory.Count + end.ordinal()];
+        return category == null ? end : category;
+    }
+}
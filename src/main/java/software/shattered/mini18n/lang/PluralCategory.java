@@ -0,0 +1,54 @@
+package software.shattered.mini18n.lang;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The CLDR plural categories. The ordinal of each category is stable and small, so it can index a variant table.
+ */
+public enum PluralCategory {
+    Zero("zero"),
+    One("one"),
+    Two("two"),
+    Few("few"),
+    Many("many"),
+    Other("other");
+
+    public static final int Count = 6;
+    private static final PluralCategory[] Values = values();
+
+    private final String id;
+
+    PluralCategory(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the name used in message keys, such as {@code "one"} in {@code dollars.one}.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public static PluralCategory byIndex(int index) {
+        return Values[index];
+    }
+
+    public static @Nullable PluralCategory forId(String id) {
+        switch (id) {
+            case "zero":
+                return Zero;
+            case "one":
+                return One;
+            case "two":
+                return Two;
+            case "few":
+                return Few;
+            case "many":
+                return Many;
+            case "other":
+                return Other;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package software.shattered.mini18n.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled <a href="https://unicode.org/reports/tr35/tr35-numbers.html#Plural_rules_syntax">CLDR plural rule
+ * condition</a>, such as {@code v = 0 and i % 10 = 2..4 and i % 100 != 12..14}. Samples after {@code @} are ignored.
+ * The compact decimal exponent operands {@code c} and {@code e} are always 0, since counts are never written in
+ * compact form here.
+ */
+final class PluralCondition {
+    static final PluralCondition Always = new PluralCondition(new Relation[0][]);
+
+    // Any of these must hold, where each holds if all of its relations hold.
+    private final Relation[][] anyOf;
+
+    private PluralCondition(Relation[][] anyOf) {
+        this.anyOf = anyOf;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code source} is not a valid condition.
+     */
+    static PluralCondition parse(String source) {
+        int samples = source.indexOf('@');
+        Parser parser = new Parser(samples < 0 ? source : source.substring(0, samples));
+        if (parser.atEnd()) {
+            return Always;
+        }
+        List<Relation[]> anyOf = new ArrayList<>();
+        do {
+            List<Relation> allOf = new ArrayList<>();
+            do {
+                allOf.add(parser.relation());
+            } while (parser.accept("and"));
+            anyOf.add(allOf.toArray(new Relation[0]));
+        } while (parser.accept("or"));
+        if (!parser.atEnd()) {
+            throw parser.error("Expected 'and' or 'or'");
+        }
+        return new PluralCondition(anyOf.toArray(new Relation[0][]));
+    }
+
+    boolean test(double n, long i, int v, long f) {
+        if (anyOf.length == 0) {
+            return true;
+        }
+        for (Relation[] allOf : anyOf) {
+            boolean holds = true;
+            for (Relation relation : allOf) {
+                if (!relation.test(n, i, v, f)) {
+                    holds = false;
+                    break;
+                }
+            }
+            if (holds) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Relation {
+        private final char operand;
+        private final long modulus;
+        private final boolean equal;
+        // Inclusive bounds, two per range.
+        private final long[] ranges;
+
+        private Relation(char operand, long modulus, boolean equal, long[] ranges) {
+            this.operand = operand;
+            this.modulus = modulus;
+            this.equal = equal;
+            this.ranges = ranges;
+        }
+
+        boolean test(double n, long i, int v, long f) {
+            if (operand == 'n') {
+                double value = modulus == 0 ? n : n % modulus;
+                // Only whole numbers are in a range; n = 1..3 does not hold for 1.5.
+                return (value == Math.rint(value) && contains((long) value)) == equal;
+            }
+            long value = operand(i, v, f);
+            return contains(modulus == 0 ? value : value % modulus) == equal;
+        }
+
+        private long operand(long i, int v, long f) {
+            switch (operand) {
+                case 'i':
+                    return i;
+                case 'v':
+                    return v;
+                case 'f':
+                    return f;
+                case 't':
+                    while (f != 0 && f % 10 == 0) {
+                        f /= 10;
+                    }
+                    return f;
+                case 'w':
+                    while (v > 0 && f % 10 == 0) {
+                        f /= 10;
+                        v--;
+                    }
+                    return v;
+                default:
+                    // c and e, the compact decimal exponent.
+                    return 0;
+            }
+        }
+
+        private boolean contains(long value) {
+            for (int index = 0; index < ranges.length; index += 2) {
+                if (value >= ranges[index] && value <= ranges[index + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private int position;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        boolean atEnd() {
+            skipSpaces();
+            return position == source.length();
+        }
+
+        Relation relation() {
+            skipSpaces();
+            char operand = position < source.length() ? source.charAt(position) : 0;
+            if ("nivwftce".indexOf(operand) < 0 || operand == 0) {
+                throw error("Expected an operand");
+            }
+            position++;
+            long modulus = 0;
+            if (accept("%") || accept("mod")) {
+                modulus = number();
+                if (modulus == 0) {
+                    throw error("Modulus must not be 0");
+                }
+            }
+            boolean equal;
+            if (accept("!=")) {
+                equal = false;
+            } else if (accept("=")) {
+                equal = true;
+            } else {
+                throw error("Expected '=' or '!='");
+            }
+            List<Long> ranges = new ArrayList<>();
+            do {
+                long start = number();
+                long end = accept("..") ? number() : start;
+                ranges.add(start);
+                ranges.add(end);
+            } while (accept(","));
+            long[] bounds = new long[ranges.size()];
+            for (int index = 0; index < bounds.length; index++) {
+                bounds[index] = ranges.get(index);
+            }
+            return new Relation(operand, modulus, equal, bounds);
+        }
+
+        boolean accept(String token) {
+            skipSpaces();
+            if (!source.startsWith(token, position)) {
+                return false;
+            }
+            int end = position + token.length();
+            if (Character.isLetter(token.charAt(0)) && end < source.length()
+                    && Character.isLetter(source.charAt(end))) {
+                return false;
+            }
+            position = end;
+            return true;
+        }
+
+        private long number() {
+            skipSpaces();
+            int start = position;
+            while (position < source.length() && Character.isDigit(source.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a number");
+            }
+            return Long.parseLong(source.substring(start, position));
+        }
+
+        private void skipSpaces() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + position + " in plural rule: " + source);
+        }
+    }
+}
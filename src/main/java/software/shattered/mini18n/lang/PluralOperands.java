@@ -0,0 +1,203 @@
+package software.shattered.mini18n.lang;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The <a href="https://unicode.org/reports/tr35/tr35-numbers.html#Operands">Unicode plural operands</a> of a number.
+ * Unlike a {@code double}, a parsed decimal keeps its visible precision, so {@code "1.0"} and {@code "1"} select
+ * different categories where the language cares. Passing an instance as the {@code count} of a message uses these
+ * operands for the plural and prints the number as it was written.
+ */
+public final class PluralOperands extends Number {
+    private static final long serialVersionUID = 1L;
+    private static final int MaxFractionDigits = 18;
+    private static final long[] LongPowersOfTen = new long[MaxFractionDigits + 1];
+    private static final double[] PowersOfTen = new double[MaxFractionDigits + 1];
+    private static final double MaxExactDouble = 9007199254740992.0;
+    static {
+        long power = 1;
+        for (int i = 0; i <= MaxFractionDigits; i++) {
+            LongPowersOfTen[i] = power;
+            PowersOfTen[i] = power;
+            power *= 10;
+        }
+    }
+
+    /** The absolute value. */
+    public final double n;
+    /** The integer digits of {@link #n}. */
+    public final long i;
+    /** The number of visible fraction digits, with trailing zeros. */
+    public final int v;
+    /** The number of visible fraction digits, without trailing zeros. */
+    public final int w;
+    /** The visible fraction digits, with trailing zeros. */
+    public final long f;
+    /** The visible fraction digits, without trailing zeros. */
+    public final long t;
+    private final boolean negative;
+
+    private PluralOperands(boolean negative, long i, int v, long f) {
+        this.negative = negative;
+        this.i = i;
+        this.v = v;
+        this.f = f;
+        this.n = v == 0 ? i : i + f / PowersOfTen[v];
+        int w = v;
+        long t = f;
+        while (w > 0 && t % 10 == 0) {
+            t /= 10;
+            w--;
+        }
+        this.w = w;
+        this.t = t;
+    }
+
+    public static PluralOperands of(long number) {
+        return new PluralOperands(number < 0, Math.abs(number), 0, 0);
+    }
+
+    public static PluralOperands of(double number) {
+        double n = Math.abs(number);
+        int v = visibleFractionDigits(n);
+        return new PluralOperands(number < 0, integerDigits(n), v, fractionDigits(n, v));
+    }
+
+    /**
+     * Parses a plain decimal such as {@code "-12.50"}, keeping every written fraction digit as visible.
+     *
+     * @throws NumberFormatException if {@code number} is not a plain decimal.
+     */
+    public static PluralOperands parse(@NotNull CharSequence number) {
+        int length = number.length();
+        int index = 0;
+        boolean negative = false;
+        if (index < length && (number.charAt(index) == '-' || number.charAt(index) == '+')) {
+            negative = number.charAt(index) == '-';
+            index++;
+        }
+        long integer = 0;
+        int integerDigits = 0;
+        try {
+            for (; index < length && number.charAt(index) != '.'; index++, integerDigits++) {
+                integer = Math.addExact(Math.multiplyExact(integer, 10), digit(number, index));
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Too many integer digits: " + number);
+        }
+        long fraction = 0;
+        int v = 0;
+        if (index < length) {
+            for (index++; index < length; index++, v++) {
+                if (v == MaxFractionDigits) {
+                    throw new NumberFormatException("Too many fraction digits: " + number);
+                }
+                fraction = fraction * 10 + digit(number, index);
+            }
+        }
+        if (integerDigits == 0 && v == 0) {
+            throw new NumberFormatException("Not a decimal: " + number);
+        }
+        return new PluralOperands(negative, integer, v, fraction);
+    }
+
+    private static int digit(CharSequence number, int index) {
+        char c = number.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not a decimal: " + number);
+        }
+        return c - '0';
+    }
+
+    /**
+     * @return the integer digits of {@code n}, which must not be negative.
+     */
+    static long integerDigits(double n) {
+        return (long) n;
+    }
+
+    /**
+     * @return the smallest number of fraction digits that still reads back as {@code n}, which must not be negative.
+     */
+    static int visibleFractionDigits(double n) {
+        if (n == Math.rint(n) || Double.isNaN(n) || Double.isInfinite(n)) {
+            return 0;
+        }
+        for (int v = 1; v <= MaxFractionDigits; v++) {
+            double scaled = n * PowersOfTen[v];
+            if (scaled >= MaxExactDouble) {
+                return v - 1;
+            }
+            if (Math.rint(scaled) / PowersOfTen[v] == n) {
+                return v;
+            }
+        }
+        return MaxFractionDigits;
+    }
+
+    /**
+     * @return the first {@code v} fraction digits of {@code n} as an integer.
+     */
+    static long fractionDigits(double n, int v) {
+        if (v == 0) {
+            return 0;
+        }
+        long scaled = (long) Math.rint(n * PowersOfTen[v]);
+        return scaled - integerDigits(n) * LongPowersOfTen[v];
+    }
+
+    @Override
+    public int intValue() {
+        return (int) longValue();
+    }
+
+    @Override
+    public long longValue() {
+        return negative ? -i : i;
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return negative ? -n : n;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PluralOperands)) {
+            return false;
+        }
+        PluralOperands other = (PluralOperands) o;
+        return negative == other.negative && i == other.i && v == other.v && f == other.f;
+    }
+
+    @Override
+    public int hashCode() {
+        return (Long.hashCode(i) * 31 + v) * 31 + Long.hashCode(f) + (negative ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(20);
+        if (negative) {
+            builder.append('-');
+        }
+        builder.append(i);
+        if (v > 0) {
+            builder.append('.');
+            String digits = Long.toString(f);
+            for (int zeros = v - digits.length(); zeros > 0; zeros--) {
+                builder.append('0');
+            }
+            builder.append(digits);
+        }
+        return builder.toString();
+    }
+}
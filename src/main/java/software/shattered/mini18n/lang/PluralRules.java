@@ -1,117 +1,22 @@
 package software.shattered.mini18n.lang;
 
-import java.text.NumberFormat;
-import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 
 public abstract class PluralRules {
-    public static final PluralRules ChinesePluralRules = new PluralRules() {
-        @Override
-        public String select(double count) {
-            return "other";
-        }
-
-        @Override
-        public String selectOrdinal(double count) {
-            return "other";
-        }
-    };
-
-    public static final PluralRules EnglishPluralRules = new PluralRules() {
-        @Override
-        public String select(double count) {
-            Pluralization pluralization = pluralizeNumber(count);
-            if (pluralization.integral == 1L && pluralization.visibleDecimalDigits == 0)  {
-                return "one";
-            }
-            return "other";
-        }
-
-
-        @Override
-        public String selectOrdinal(double count) {
-            double abs = pluralizeNumber(count).absolute;
-            if (abs % 10.0 == 1.0 && abs % 100.0 != 11.0) {
-                return "one";
-            }
-            if (abs % 10.0 == 2.0 && abs % 100.0 != 12.0) {
-                return "two";
-            }
-            if (abs % 10.0 == 3.0 && abs % 100.0 != 13.0) {
-                return "few";
-            }
-            return "other";
-        }
-    };
-
-    public static final PluralRules FrenchPluralRules = new PluralRules() {
-        @Override
-        public String select(double count) {
-            long integral = pluralizeNumber(count).integral;
-            if (integral == 0L) {
-                return "one";
-            } else if (integral == 1L) {
-                return "one";
-            }
-            return "other";
-        }
-
-        @Override
-        public String selectOrdinal(double count) {
-            double abs = pluralizeNumber(count).absolute;
-            if (abs == 1.0) {
-                return "one";
-            }
-            return "other";
-        }
-    };
-
-    public static final PluralRules HindiPluralRules = new PluralRules() {
-        @Override
-        public String select(double count) {
-            Pluralization pluralization = pluralizeNumber(count);
-            if (pluralization.integral == 0L || pluralization.absolute == 1.0) {
-                return "one";
-            }
-            return "other";
-        }
-
-        @Override
-        public String selectOrdinal(double count) {
-            double abs = pluralizeNumber(count).absolute;
-            if (abs == 1.0) {
-                return "one";
-            }
-            if (abs == 2.0 || abs == 3.0) {
-                return "two";
-            }
-            if (abs == 4.0) {
-                return "few";
-            }
-            if (abs == 6.0) {
-                return "many";
-            }
-            return "other";
-        }
-    };
+    // Built first, since the constants below are taken from it.
+    private static final Map<String, PluralRules> rules = CldrPluralRules.load();
 
-    public static final PluralRules SpanishPluralRules = new PluralRules() {
-        @Override
-        public String select(double count) {
-            double abs = pluralizeNumber(count).absolute;
-            if (abs == 1.0) {
-                return "one";
-            }
-            return "other";
-        }
-
-        @Override
-        public String selectOrdinal(double count) {
-            return "other";
-        }
-    };
+    public static final PluralRules ChinesePluralRules = rules.get("zh");
+    public static final PluralRules EnglishPluralRules = rules.get("en");
+    public static final PluralRules FrenchPluralRules = rules.get("fr");
+    public static final PluralRules HindiPluralRules = rules.get("hi");
+    public static final PluralRules SpanishPluralRules = rules.get("es");
 
+    /**
+     * @deprecated Use {@link PluralOperands}, which also keeps the fraction digits.
+     */
+    @Deprecated
     protected static class Pluralization {
         public final double absolute;
         public final long integral;
@@ -124,25 +29,16 @@ public abstract class PluralRules {
         }
     }
 
-    protected static final NumberFormat InternalNumberFormat = NumberFormat.getNumberInstance(Locale.US);
-    static {
-        InternalNumberFormat.setGroupingUsed(false);
-        InternalNumberFormat.setMaximumFractionDigits(Integer.MAX_VALUE);
-    }
-
-    public static PluralRules DefaultRules = EnglishPluralRules;
-    private static final Map<String, PluralRules> rules = new LinkedHashMap<String, PluralRules>() {{
-        put("cn", ChinesePluralRules);
-        put("en", EnglishPluralRules);
-        put("fr", FrenchPluralRules);
-        put("hi", HindiPluralRules);
-        put("es", SpanishPluralRules);
-    }};
+    public static volatile PluralRules DefaultRules = EnglishPluralRules;
 
     public static void add(Locale locale, PluralRules rules) {
         PluralRules.rules.put(locale.getLanguage(), rules);
     }
 
+    /**
+     * Built-in rules cover the languages of CLDR, where {@code cn} is kept as another code for {@code zh}. Languages
+     * without rules use {@link #DefaultRules}.
+     */
     public static PluralRules forLocale(Locale locale) {
         PluralRules rules = PluralRules.rules.get(locale.getLanguage());
         if (rules == null) {
@@ -151,25 +47,167 @@ public abstract class PluralRules {
         return rules;
     }
 
+    /**
+     * Compiles rules written in the <a href="https://unicode.org/reports/tr35/tr35-numbers.html#Plural_rules_syntax">
+     * CLDR plural rule syntax</a>, such as {@code "v = 0 and i % 10 = 1 and i % 100 != 11"} for
+     * {@link PluralCategory#One}. A count takes the first of zero, one, two, few and many whose condition holds, and
+     * other if none do. Integer counts below 1000 are looked up in a table computed here.
+     *
+     * @param cardinal conditions by category, where any for other is ignored.
+     * @param ordinal conditions by category for ordinal counts, where any for other is ignored.
+     * @throws IllegalArgumentException if a condition is not valid.
+     */
+    public static PluralRules compile(Map<PluralCategory, String> cardinal, Map<PluralCategory, String> ordinal) {
+        return new CompiledPluralRules(CompiledPluralRules.parse(cardinal), CompiledPluralRules.parse(ordinal),
+                null);
+    }
+
     public abstract String select(double count);
     public abstract String selectOrdinal(double count);
     public String selectRange(double first, double second) {
         return select(first) + "+" + select(second);
     }
 
+    /**
+     * @return the category of a range from a count in {@code start} to one in {@code end}, used when a message has
+     *         no variant for that range. This is {@code end} unless the language's CLDR range rules say otherwise.
+     */
+    public PluralCategory selectRangeCategory(PluralCategory start, PluralCategory end) {
+        return end;
+    }
+
+    public String select(long count) {
+        return select((double) count);
+    }
+
+    public String selectOrdinal(long count) {
+        return selectOrdinal((double) count);
+    }
+
+    /**
+     * Selects with the exact operands of a decimal, so that e.g. {@code 1.0} can differ from {@code 1}. Rules that
+     * only implement {@link #select(double)} see the plain value.
+     */
+    public String select(PluralOperands operands) {
+        return select(operands.doubleValue());
+    }
+
+    public String selectOrdinal(PluralOperands operands) {
+        return selectOrdinal(operands.doubleValue());
+    }
+
+    public PluralCategory selectCategory(double count) {
+        return categoryOf(select(count));
+    }
+
+    public PluralCategory selectCategory(long count) {
+        return categoryOf(select(count));
+    }
+
+    public PluralCategory selectCategory(PluralOperands operands) {
+        return categoryOf(select(operands));
+    }
+
+    public PluralCategory selectOrdinalCategory(double count) {
+        return categoryOf(selectOrdinal(count));
+    }
+
+    public PluralCategory selectOrdinalCategory(long count) {
+        return categoryOf(selectOrdinal(count));
+    }
+
+    public PluralCategory selectOrdinalCategory(PluralOperands operands) {
+        return categoryOf(selectOrdinal(operands));
+    }
+
+    private static PluralCategory categoryOf(String id) {
+        PluralCategory category = PluralCategory.forId(id);
+        return category == null ? PluralCategory.Other : category;
+    }
+
     /**
      * A reimplementation of [Unicode Operands](https://unicode.org/reports/tr35/tr35-numbers.html#Operands).
+     *
+     * @deprecated Use {@link PluralOperands#of(double)}.
      */
+    @Deprecated
     protected Pluralization pluralizeNumber(double number) {
         double n = Math.abs(number);
-        // Integral Part
-        long i = (long) number;
-        long ai = Math.abs(i);
-        // Visible Decimal Digits
-        String formatted = InternalNumberFormat.format(n - ai);
-        // cut off the "0." if it's there
-        int v =  formatted.length() > 2 ? formatted.length() - 2 : 0;
-
-        return new Pluralization(n, (long) Math.floor(number), v);
+        return new Pluralization(n, (long) Math.floor(number), PluralOperands.visibleFractionDigits(n));
+    }
+
+    /**
+     * Built-in rules written against the operands directly, so that selecting from a {@code double} or {@code long}
+     * does not allocate.
+     */
+    static abstract class OperandRules extends PluralRules {
+        abstract PluralCategory select(double n, long i, int v, long f);
+        abstract PluralCategory selectOrdinal(double n, long i, int v, long f);
+
+        @Override
+        public String select(double count) {
+            return selectCategory(count).getId();
+        }
+
+        @Override
+        public String selectOrdinal(double count) {
+            return selectOrdinalCategory(count).getId();
+        }
+
+        @Override
+        public String select(long count) {
+            return selectCategory(count).getId();
+        }
+
+        @Override
+        public String selectOrdinal(long count) {
+            return selectOrdinalCategory(count).getId();
+        }
+
+        @Override
+        public String select(PluralOperands operands) {
+            return selectCategory(operands).getId();
+        }
+
+        @Override
+        public String selectOrdinal(PluralOperands operands) {
+            return selectOrdinalCategory(operands).getId();
+        }
+
+        @Override
+        public PluralCategory selectCategory(double count) {
+            double n = Math.abs(count);
+            int v = PluralOperands.visibleFractionDigits(n);
+            return select(n, PluralOperands.integerDigits(n), v, PluralOperands.fractionDigits(n, v));
+        }
+
+        @Override
+        public PluralCategory selectCategory(long count) {
+            long i = Math.abs(count);
+            return select((double) i, i, 0, 0);
+        }
+
+        @Override
+        public PluralCategory selectCategory(PluralOperands operands) {
+            return select(operands.n, operands.i, operands.v, operands.f);
+        }
+
+        @Override
+        public PluralCategory selectOrdinalCategory(double count) {
+            double n = Math.abs(count);
+            int v = PluralOperands.visibleFractionDigits(n);
+            return selectOrdinal(n, PluralOperands.integerDigits(n), v, PluralOperands.fractionDigits(n, v));
+        }
+
+        @Override
+        public PluralCategory selectOrdinalCategory(long count) {
+            long i = Math.abs(count);
+            return selectOrdinal((double) i, i, 0, 0);
+        }
+
+        @Override
+        public PluralCategory selectOrdinalCategory(PluralOperands operands) {
+            return selectOrdinal(operands.n, operands.i, operands.v, operands.f);
+        }
     }
 }
@@ -6,6 +6,46 @@ import java.util.Locale;
 import java.util.Map;
 
 public interface MessageMetaProcessor {
+    /**
+     * What the result of a processor depends on, which decides how often a {@code MessageSet} has to call it.
+     */
+    enum Purity {
+        /**
+         * Depends only on the locale and the argument. Calls are made once per published locale when messages are
+         * loaded, and their results written into the compiled message.
+         */
+        Constant,
+        /**
+         * Depends only on the locale, the argument and the render's data, so a rendered message can be cached by its
+         * data like one without meta calls.
+         */
+        DataDependent,
+        /**
+         * May differ between any two calls, so it is called on every render.
+         */
+        Volatile
+    }
+
     String getId();
     String parse(Locale locale, String argument, String currentMessage, @Nullable Map<String, Object> data);
+
+    /**
+     * Appends the result of {@link #parse} to {@code out}. Processors that can write their result directly should
+     * override this, so rendering does not build a string for every call.
+     */
+    default void append(Locale locale, String argument, String currentMessage, @Nullable Map<String, Object> data,
+                        StringBuilder out) {
+        String result = parse(locale, argument, currentMessage, data);
+        if (result != null) {
+            out.append(result);
+        }
+    }
+
+    /**
+     * Must not change while the processor is added to a set. Processors are {@link Purity#Volatile} unless they say
+     * otherwise.
+     */
+    default Purity getPurity() {
+        return Purity.Volatile;
+    }
 }
@@ -1,6 +1,7 @@
 package software.shattered.mini18n.meta;
 
 import org.jetbrains.annotations.Nullable;
+import software.shattered.mini18n.MessageArguments;
 import software.shattered.mini18n.MessageSet;
 
 import java.util.Locale;
@@ -9,9 +10,28 @@ import java.util.Map;
 public class RecurseMetaProcessor implements MessageMetaProcessor {
     public final String Id = "message";
     private final MessageSet set;
+    // False for subclasses that override parse, whose result append has to go through.
+    private final boolean rendersDirectly;
 
     public RecurseMetaProcessor(MessageSet set) {
         this.set = set;
+        this.rendersDirectly = inheritsParse(getClass());
+    }
+
+    /**
+     * @return true if {@code type} does not override parse, so it still renders as this class does.
+     */
+    private static boolean inheritsParse(Class<?> type) {
+        try {
+            return type.getMethod("parse", Locale.class, String.class, String.class, Map.class)
+                    .getDeclaringClass() == RecurseMetaProcessor.class;
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    public MessageSet getSet() {
+        return set;
     }
 
     @Override
@@ -27,4 +47,25 @@ public class RecurseMetaProcessor implements MessageMetaProcessor {
         }
         return replacement;
     }
+
+    @Override
+    public void append(Locale locale, String argument, String currentMessage, @Nullable Map<String, Object> data,
+                       StringBuilder out) {
+        if (rendersDirectly) {
+            set.render(locale, argument, data, out);
+        } else {
+            MessageMetaProcessor.super.append(locale, argument, currentMessage, data, out);
+        }
+    }
+
+    /**
+     * Renders the referenced message straight into {@code out}, without building an intermediate string.
+     */
+    public void append(Locale locale, String argument, @Nullable Map<String, Object> data, StringBuilder out) {
+        set.render(locale, argument, data, out);
+    }
+
+    public void append(Locale locale, String argument, MessageArguments arguments, StringBuilder out) {
+        set.render(locale, argument, arguments, out);
+    }
 }
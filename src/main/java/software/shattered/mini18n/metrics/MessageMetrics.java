@@ -0,0 +1,27 @@
+package software.shattered.mini18n.metrics;
+
+import java.util.Locale;
+
+/**
+ * Receives events from a {@link software.shattered.mini18n.MessageSet} it was installed on. Methods are called on the
+ * rendering thread, so implementations must be thread-safe and cheap. No events are produced, and no time is measured,
+ * while no metrics are installed.
+ */
+public interface MessageMetrics {
+    /**
+     * Also called for each {@code %message:...%} reference to a message that did not exist when the referencing
+     * message was published, as those are looked up again on every render.
+     *
+     * @param found whether the message, or the plural variant it selected, existed.
+     */
+    void onLookup(Locale locale, String message, boolean found);
+
+    /**
+     * Called after a message has been rendered. Messages that {@code %message:...%} references were linked to when
+     * they were published are part of the render of the message that references them, and are not reported on their
+     * own.
+     */
+    void onRender(Locale locale, String message, long nanos);
+
+    void onMetaProcessor(String id, long nanos);
+}
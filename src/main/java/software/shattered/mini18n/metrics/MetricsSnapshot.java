@@ -0,0 +1,124 @@
+package software.shattered.mini18n.metrics;
+
+import java.util.*;
+
+/**
+ * An immutable copy of the values of a {@link RecordingMetrics} at one point in time.
+ */
+public final class MetricsSnapshot {
+    static final int LatencyBuckets = 64;
+
+    private final Map<Locale, Lookups> localeLookups;
+    private final Map<Locale, Map<String, Lookups>> keyLookups;
+    private final Map<Locale, Set<String>> missingKeys;
+    private final Map<String, Timing> metaProcessors;
+    private final long[] renderLatency;
+
+    MetricsSnapshot(Map<Locale, Lookups> localeLookups, Map<Locale, Map<String, Lookups>> keyLookups,
+                    Map<Locale, Set<String>> missingKeys, Map<String, Timing> metaProcessors, long[] renderLatency) {
+        this.localeLookups = Collections.unmodifiableMap(localeLookups);
+        this.keyLookups = Collections.unmodifiableMap(keyLookups);
+        this.missingKeys = Collections.unmodifiableMap(missingKeys);
+        this.metaProcessors = Collections.unmodifiableMap(metaProcessors);
+        this.renderLatency = renderLatency;
+    }
+
+    /**
+     * @return the bucket a latency falls in; bucket {@code i} holds latencies below {@code 2^i} nanoseconds.
+     */
+    static int bucketOf(long nanos) {
+        return Math.min(LatencyBuckets - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    public Map<Locale, Lookups> getLocaleLookups() {
+        return localeLookups;
+    }
+
+    /**
+     * @return lookups per key, for the keys that were tracked.
+     */
+    public Map<String, Lookups> getKeyLookups(Locale locale) {
+        Map<String, Lookups> keys = keyLookups.get(locale);
+        return keys == null ? Collections.emptyMap() : keys;
+    }
+
+    public Map<Locale, Set<String>> getMissingKeys() {
+        return missingKeys;
+    }
+
+    public Map<String, Timing> getMetaProcessors() {
+        return metaProcessors;
+    }
+
+    /**
+     * @return the number of renders per latency bucket, where bucket {@code i} holds renders that took less than
+     * {@code 2^i} nanoseconds.
+     */
+    public long[] getRenderLatencyHistogram() {
+        return renderLatency.clone();
+    }
+
+    public long getRenderCount() {
+        long count = 0;
+        for (long bucket : renderLatency) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * @return an upper bound, in nanoseconds, of the latency of the given fraction of renders, or 0 if there were
+     * none.
+     */
+    public long getRenderLatencyPercentile(double fraction) {
+        long count = getRenderCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int i = 0; i < renderLatency.length; i++) {
+            seen += renderLatency[i];
+            if (seen >= target) {
+                return i == LatencyBuckets - 1 ? Long.MAX_VALUE : 1L << i;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public static final class Lookups {
+        private final long hits;
+        private final long misses;
+
+        Lookups(long hits, long misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+    }
+
+    public static final class Timing {
+        private final long count;
+        private final long nanos;
+
+        Timing(long count, long nanos) {
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package software.shattered.mini18n.metrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts lookups per locale and key, remembers which keys were missing, and keeps counts and timings of meta
+ * processors and a histogram of render latencies. Counters are {@link LongAdder}s, so concurrent renders do not
+ * contend on them. The number of tracked locales, keys and missing keys is bounded: lookups of keys beyond the bound
+ * are only counted per locale, and lookups in locales beyond it are not recorded.
+ */
+public class RecordingMetrics implements MessageMetrics {
+    private final int maxTrackedKeys;
+    private final int maxMissingKeys;
+    private final int maxTrackedLocales;
+    private final AtomicInteger trackedKeys = new AtomicInteger();
+    private final AtomicInteger missingKeyCount = new AtomicInteger();
+    private final AtomicInteger trackedLocales = new AtomicInteger();
+    private final Map<Locale, LocaleCounters> locales = new ConcurrentHashMap<>();
+    private final Map<Locale, Set<String>> missingKeys = new ConcurrentHashMap<>();
+    private final Map<String, Timer> metaProcessors = new ConcurrentHashMap<>();
+    private final LongAdder[] renderLatency = new LongAdder[MetricsSnapshot.LatencyBuckets];
+
+    public RecordingMetrics() {
+        this(10000, 1000);
+    }
+
+    public RecordingMetrics(int maxTrackedKeys, int maxMissingKeys) {
+        this(maxTrackedKeys, maxMissingKeys, 1000);
+    }
+
+    public RecordingMetrics(int maxTrackedKeys, int maxMissingKeys, int maxTrackedLocales) {
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.maxMissingKeys = maxMissingKeys;
+        this.maxTrackedLocales = maxTrackedLocales;
+        for (int i = 0; i < renderLatency.length; i++) {
+            renderLatency[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void onLookup(Locale locale, String message, boolean found) {
+        LocaleCounters counters = locales.get(locale);
+        if (counters == null) {
+            if (!reserve(trackedLocales, maxTrackedLocales)) {
+                return;
+            }
+            counters = putIfAbsent(locales, locale, new LocaleCounters(), trackedLocales);
+        }
+        (found ? counters.hits : counters.misses).increment();
+        Counter counter = counters.keys.get(message);
+        if (counter == null && reserve(trackedKeys, maxTrackedKeys)) {
+            counter = putIfAbsent(counters.keys, message, new Counter(), trackedKeys);
+        }
+        if (counter != null) {
+            (found ? counter.hits : counter.misses).increment();
+        }
+        if (!found) {
+            Set<String> missing = missingKeys.get(locale);
+            if ((missing == null || !missing.contains(message)) && reserve(missingKeyCount, maxMissingKeys)) {
+                if (missing == null) {
+                    missing = missingKeys.computeIfAbsent(locale, key -> ConcurrentHashMap.newKeySet());
+                }
+                if (!missing.add(message)) {
+                    missingKeyCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes one of the {@code max} places counted by {@code count}, so concurrent lookups cannot overshoot it.
+     *
+     * @return false if there is none left.
+     */
+    private static boolean reserve(AtomicInteger count, int max) {
+        if (count.incrementAndGet() <= max) {
+            return true;
+        }
+        count.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds {@code value} for a place reserved in {@code count}, giving the place back if another lookup added one
+     * first.
+     */
+    private static <K, V> V putIfAbsent(Map<K, V> map, K key, V value, AtomicInteger count) {
+        V existing = map.putIfAbsent(key, value);
+        if (existing == null) {
+            return value;
+        }
+        count.decrementAndGet();
+        return existing;
+    }
+
+    @Override
+    public void onRender(Locale locale, String message, long nanos) {
+        renderLatency[MetricsSnapshot.bucketOf(nanos)].increment();
+    }
+
+    @Override
+    public void onMetaProcessor(String id, long nanos) {
+        Timer timer = metaProcessors.get(id);
+        if (timer == null) {
+            timer = metaProcessors.computeIfAbsent(id, key -> new Timer());
+        }
+        timer.count.increment();
+        timer.nanos.add(nanos);
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<Locale, MetricsSnapshot.Lookups> localeLookups = new HashMap<>();
+        Map<Locale, Map<String, MetricsSnapshot.Lookups>> keyLookups = new HashMap<>();
+        for (Map.Entry<Locale, LocaleCounters> entry : locales.entrySet()) {
+            LocaleCounters counters = entry.getValue();
+            localeLookups.put(entry.getKey(), new MetricsSnapshot.Lookups(counters.hits.sum(), counters.misses.sum()));
+            Map<String, MetricsSnapshot.Lookups> keys = new HashMap<>();
+            for (Map.Entry<String, Counter> key : counters.keys.entrySet()) {
+                keys.put(key.getKey(), new MetricsSnapshot.Lookups(key.getValue().hits.sum(),
+                        key.getValue().misses.sum()));
+            }
+            keyLookups.put(entry.getKey(), Collections.unmodifiableMap(keys));
+        }
+        Map<Locale, Set<String>> missing = new HashMap<>();
+        for (Map.Entry<Locale, Set<String>> entry : missingKeys.entrySet()) {
+            missing.put(entry.getKey(), Collections.unmodifiableSet(new TreeSet<>(entry.getValue())));
+        }
+        Map<String, MetricsSnapshot.Timing> processors = new HashMap<>();
+        for (Map.Entry<String, Timer> entry : metaProcessors.entrySet()) {
+            processors.put(entry.getKey(), new MetricsSnapshot.Timing(entry.getValue().count.sum(),
+                    entry.getValue().nanos.sum()));
+        }
+        long[] latency = new long[renderLatency.length];
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = renderLatency[i].sum();
+        }
+        return new MetricsSnapshot(localeLookups, keyLookups, missing, processors, latency);
+    }
+
+    public void reset() {
+        locales.clear();
+        missingKeys.clear();
+        metaProcessors.clear();
+        trackedKeys.set(0);
+        missingKeyCount.set(0);
+        trackedLocales.set(0);
+        for (LongAdder bucket : renderLatency) {
+            bucket.reset();
+        }
+    }
+
+    private static final class LocaleCounters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final Map<String, Counter> keys = new ConcurrentHashMap<>();
+    }
+
+    private static final class Counter {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
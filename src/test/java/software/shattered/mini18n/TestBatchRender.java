@@ -0,0 +1,71 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestBatchRender {
+    private static final Locale locale = Locale.forLanguageTag("tbr");
+    private static final Locale otherLocale = Locale.forLanguageTag("tbs");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+        PluralRules.add(otherLocale, PluralRules.ChinesePluralRules);
+    }
+
+    private static MessageSet set() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-items.one", "%count% item");
+        set.add(locale, "test-items.other", "%count% items");
+        set.add(locale, "test-name", "Hello, %name%!");
+        set.add(otherLocale, "test-name", "你好, %name%!");
+        return set;
+    }
+
+    @Test
+    public void shouldRenderEveryRequest() {
+        MessageSet set = set();
+        List<MessageRequest> requests = Arrays.asList(
+                new MessageRequest(locale, "test-items", new MessageArguments().count(1)),
+                new MessageRequest(locale, "test-items", Collections.singletonMap("count", 4)),
+                new MessageRequest(otherLocale, "test-name", Collections.singletonMap("name", "Hunter")),
+                new MessageRequest(otherLocale, "test-items"),
+                new MessageRequest(locale, "test-name"));
+        String[] results = new String[requests.size()];
+        set.renderAll(requests, results);
+
+        assertThat(results, arrayContaining("1 item", "4 items", "你好, Hunter!", null, "Hello, %name%!"));
+        assertThrows(IllegalArgumentException.class, () -> set.renderAll(requests, new String[1]));
+    }
+
+    @Test
+    public void shouldRenderLargeBatchesOnAnExecutor() {
+        MessageSet set = set();
+        List<MessageRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            requests.add(i % 2 == 0
+                    ? new MessageRequest(locale, "test-items", Collections.singletonMap("count", i))
+                    : new MessageRequest(otherLocale, "test-name", Collections.singletonMap("name", "p" + i)));
+        }
+        String[] results = new String[requests.size()];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            set.renderAll(requests, results, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            assertThat(results[i], equalTo(i % 2 == 0 ? i + " items" : "你好, p" + i + "!"));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.metrics.RecordingMetrics;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestBroadcast {
+    private static final Locale locale = Locale.forLanguageTag("tba");
+    private static final Locale childLocale = Locale.forLanguageTag("tba-US");
+    private static final Locale otherLocale = Locale.forLanguageTag("tbb");
+    private static final Locale missingLocale = Locale.forLanguageTag("tbc");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+        PluralRules.add(otherLocale, PluralRules.ChinesePluralRules);
+    }
+
+    private static MessageSet set(RecordingMetrics metrics) {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-items.one", "%count% item");
+        set.add(locale, "test-items.other", "%count% items");
+        set.add(otherLocale, "test-items", "%count% 件");
+        set.setMetrics(metrics);
+        return set;
+    }
+
+    @Test
+    public void shouldRenderOncePerDistinctResult() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        MessageSet set = set(metrics);
+
+        Map<Locale, String> results = set.getAll(Arrays.asList(locale, childLocale, otherLocale, missingLocale),
+                "test-items", Collections.singletonMap("count", 1));
+        assertThat(results.get(locale), equalTo("1 item"));
+        assertThat(results.get(childLocale), sameInstance(results.get(locale)));
+        assertThat(results.get(otherLocale), equalTo("1 件"));
+        assertThat(results.get(missingLocale), nullValue());
+        assertThat(results.containsKey(missingLocale), equalTo(true));
+        assertThat(metrics.snapshot().getRenderCount(), equalTo(2L));
+    }
+
+    @Test
+    public void shouldSendToEveryRecipient() {
+        RecordingMetrics metrics = new RecordingMetrics();
+        MessageSet set = set(metrics);
+        List<Locale> recipients = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            recipients.add(i % 3 == 0 ? locale : i % 3 == 1 ? childLocale : otherLocale);
+        }
+
+        Map<Integer, String> sent = new ConcurrentHashMap<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < recipients.size(); i++) {
+            indexes.add(i);
+        }
+        set.broadcast(indexes, recipients::get, "test-items", new MessageArguments().count(2), sent::put,
+                ForkJoinPool.commonPool());
+
+        assertThat(sent.size(), equalTo(recipients.size()));
+        for (int i = 0; i < recipients.size(); i++) {
+            assertThat(sent.get(i), equalTo(recipients.get(i).equals(otherLocale) ? "2 件" : "2 items"));
+        }
+        assertThat(metrics.snapshot().getRenderCount(), equalTo(2L));
+    }
+}
@@ -0,0 +1,157 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestCatalogLoader {
+    private static final Locale properties = Locale.forLanguageTag("tla");
+    private static final Locale yaml = Locale.forLanguageTag("tlb");
+    private static final Locale json = Locale.forLanguageTag("tlc");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(yaml, PluralRules.EnglishPluralRules);
+        PluralRules.add(json, PluralRules.EnglishPluralRules);
+    }
+
+    private static Path directory() throws IOException {
+        Path directory = Files.createTempDirectory("mini18n");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void shouldReadEveryFormat() throws IOException {
+        Path directory = directory();
+        write(directory.resolve("tla.properties"),
+                "# A comment",
+                "greeting = Hello, %name%!",
+                "multi=first \\",
+                "    second",
+                "escaped\\ key:caf\\u00e9\\tbar");
+        write(directory.resolve("tlb.yml"),
+                "---",
+                "shop:",
+                "  items:",
+                "    one: '%count% item'",
+                "    other: \"%count% items\\n\"  # Trailing comment",
+                "  empty:",
+                "  title: Shop # Comment",
+                "literal: |",
+                "  line one",
+                "  line two",
+                "",
+                "folded: >-",
+                "  joined",
+                "  text",
+                "top: plain");
+        write(directory.resolve("tlc.json"),
+                "{",
+                "  \"shop\": {\"items\": {\"one\": \"%count% item\", \"other\": \"%count% items\"}},",
+                "  \"unicode\": \"caf\\u00e9 \\\"quoted\\\"\",",
+                "  \"number\": 12, \"missing\": null",
+                "}");
+        write(directory.resolve("notes.txt"), "ignored");
+        MessageSet set = new MessageSet();
+
+        Map<Locale, Integer> loaded = CatalogLoader.load(set, directory);
+
+        assertThat(loaded, equalTo(Map.of(properties, 3, yaml, 6, json, 4)));
+        assertThat(set.get(properties, "greeting", Collections.singletonMap("name", "Hunter")),
+                equalTo("Hello, Hunter!"));
+        assertThat(set.get(properties, "multi"), equalTo("first second"));
+        assertThat(set.get(properties, "escaped key"), equalTo("caf\u00e9\tbar"));
+        assertThat(set.get(yaml, "shop.items", new MessageArguments().count(1)), equalTo("1 item"));
+        assertThat(set.get(yaml, "shop.items", new MessageArguments().count(3)), equalTo("3 items\n"));
+        assertThat(set.get(yaml, "shop.title"), equalTo("Shop"));
+        assertThat(set.get(yaml, "literal"), equalTo("line one\nline two\n"));
+        assertThat(set.get(yaml, "folded"), equalTo("joined text"));
+        assertThat(set.get(yaml, "top"), equalTo("plain"));
+        assertThat(set.get(json, "shop.items", new MessageArguments().count(2)), equalTo("2 items"));
+        assertThat(set.get(json, "unicode"), equalTo("caf\u00e9 \"quoted\""));
+        assertThat(set.get(json, "number"), equalTo("12"));
+        assertThat(set.get(json, "missing"), nullValue());
+    }
+
+    @Test
+    public void shouldMergeTheFilesOfALocaleDirectory() throws IOException {
+        Path directory = directory();
+        write(directory.resolve("tla").resolve("a.properties"), "shared=First", "first=A");
+        write(directory.resolve("tla").resolve("nested").resolve("b.json"),
+                "{\"shared\": \"Second\", \"second\": \"B\"}");
+        MessageSet set = new MessageSet();
+
+        assertThat(CatalogLoader.load(set, directory), equalTo(Map.of(properties, 3)));
+        assertThat(set.get(properties, "first"), equalTo("A"));
+        assertThat(set.get(properties, "second"), equalTo("B"));
+        assertThat(set.get(properties, "shared"), equalTo("Second"));
+    }
+
+    @Test
+    public void shouldLoadTheOtherLocalesWhenOneFails() throws IOException {
+        Path directory = directory();
+        write(directory.resolve("tla.properties"), "greeting=Hello");
+        write(directory.resolve("tlb.yml"), "shop:", "  - first", "  - second");
+        write(directory.resolve("tlc.json"), "{\"greeting\": [\"Hello\"]}");
+        MessageSet set = new MessageSet();
+
+        IOException error = assertThrows(IOException.class, () -> CatalogLoader.load(set, directory));
+
+        assertThat(error.getMessage(), allOf(containsString("tlb.yml"), containsString("line 2")));
+        assertThat(error.getSuppressed(), arrayWithSize(1));
+        assertThat(error.getSuppressed()[0].getMessage(), containsString("Arrays are not supported"));
+        assertThat(set.get(properties, "greeting"), equalTo("Hello"));
+        assertThat(set.get(yaml, "shop"), nullValue());
+    }
+
+    @Test
+    public void shouldLoadManyLocalesInParallel() throws IOException {
+        Path directory = directory();
+        List<Locale> locales = new ArrayList<>();
+        for (int l = 0; l < 8; l++) {
+            Locale locale = Locale.forLanguageTag("tl" + (char) ('d' + l));
+            locales.add(locale);
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                lines.add("message-" + i + "=Message " + i + " in " + locale.toLanguageTag());
+            }
+            write(directory.resolve(locale.toLanguageTag() + ".properties"), lines.toArray(new String[0]));
+        }
+        MessageSet set = new MessageSet();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Map<Locale, Integer> loaded;
+        try {
+            loaded = CatalogLoader.load(set, directory, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertThat(loaded.keySet(), contains(locales.toArray()));
+        for (Locale locale : locales) {
+            assertThat(loaded.get(locale), equalTo(2000));
+            assertThat(set.get(locale, "message-1999"), equalTo("Message 1999 in " + locale.toLanguageTag()));
+        }
+    }
+}
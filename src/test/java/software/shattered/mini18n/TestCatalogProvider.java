@@ -0,0 +1,192 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestCatalogProvider {
+    private static final Locale parent = Locale.forLanguageTag("tcp");
+    private static final Locale child = Locale.forLanguageTag("tcp-XA");
+    private static final Locale other = Locale.forLanguageTag("tcq");
+
+    private static final class CountingProvider implements CatalogProvider {
+        private final Map<Locale, Integer> calls = new ConcurrentHashMap<>();
+
+        @Override
+        public Map<String, String> load(Locale locale) {
+            calls.merge(locale, 1, Integer::sum);
+            if (locale.equals(parent)) {
+                return Collections.singletonMap("test-parent", "From the parent.");
+            }
+            if (locale.equals(child)) {
+                return Collections.singletonMap("test-child", "From the child.");
+            }
+            if (locale.equals(other)) {
+                return Collections.singletonMap("test-parent", "From another locale.");
+            }
+            return null;
+        }
+
+        int calls(Locale locale) {
+            return calls.getOrDefault(locale, 0);
+        }
+    }
+
+    @Test
+    public void shouldLoadARequestedLocaleAndItsParentsOnce() {
+        MessageSet set = new MessageSet();
+        CountingProvider provider = new CountingProvider();
+        set.setCatalogProvider(provider);
+
+        assertThat(set.get(child, "test-child"), equalTo("From the child."));
+        assertThat(set.get(child, "test-parent"), equalTo("From the parent."));
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        assertThat(provider.calls(child), equalTo(1));
+        assertThat(provider.calls(parent), equalTo(1));
+        assertThat(provider.calls(other), equalTo(0));
+    }
+
+    @Test
+    public void shouldLoadOnceForConcurrentRequests() throws Exception {
+        MessageSet set = new MessageSet();
+        CountDownLatch release = new CountDownLatch(1);
+        CountingProvider counting = new CountingProvider();
+        set.setCatalogProvider(locale -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return counting.load(locale);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> set.get(parent, "test-parent")));
+            }
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS), equalTo("From the parent."));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(counting.calls(parent), equalTo(1));
+    }
+
+    @Test
+    public void shouldEvictIdleLocalesAndLoadThemAgain() throws Exception {
+        MessageSet set = new MessageSet();
+        CountingProvider provider = new CountingProvider();
+        set.setCatalogProvider(provider, Duration.ofMillis(20), Long.MAX_VALUE);
+
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        Thread.sleep(60);
+        assertThat(set.evictIdleLocales(), equalTo(1));
+        assertThat(set.getPublishedLocales().containsKey(parent), equalTo(false));
+
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        assertThat(provider.calls(parent), equalTo(2));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedLocalesOverBudget() throws Exception {
+        MessageSet set = new MessageSet();
+        CountingProvider provider = new CountingProvider();
+        set.setCatalogProvider(provider, null, 1);
+
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        assertThat(set.get(other, "test-parent"), equalTo("From another locale."));
+        assertThat(set.getPublishedLocales().keySet(), contains(other));
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        assertThat(provider.calls(parent), equalTo(2));
+    }
+
+    @Test
+    public void shouldKeepLocalesChangedDirectly() throws Exception {
+        MessageSet set = new MessageSet();
+        CountingProvider provider = new CountingProvider();
+        set.setCatalogProvider(provider, Duration.ofMillis(20), Long.MAX_VALUE);
+
+        assertThat(set.get(parent, "test-parent"), equalTo("From the parent."));
+        set.add(parent, "test-added", "Added directly.");
+        Thread.sleep(60);
+        assertThat(set.evictIdleLocales(), equalTo(0));
+        assertThat(set.get(parent, "test-added"), equalTo("Added directly."));
+        assertThat(provider.calls(parent), equalTo(1));
+    }
+
+    @Test
+    public void shouldForgetLeastRecentlyUsedLocalesWithoutMessages() {
+        MessageSet set = new MessageSet();
+        CountingProvider provider = new CountingProvider();
+        set.setCatalogProvider(provider);
+        List<Locale> empty = new ArrayList<>();
+        for (char first = 'a'; first <= 'z'; first++) {
+            for (char second = 'a'; second <= 'l'; second++) {
+                empty.add(Locale.forLanguageTag("tx" + first + second));
+            }
+        }
+
+        for (Locale locale : empty) {
+            assertThat(set.get(locale, "test-parent"), nullValue());
+        }
+        assertThat(set.get(empty.get(0), "test-parent"), nullValue());
+        assertThat(set.get(empty.get(empty.size() - 1), "test-parent"), nullValue());
+        assertThat(provider.calls(empty.get(0)), equalTo(2));
+        assertThat(provider.calls(empty.get(empty.size() - 1)), equalTo(1));
+    }
+
+    @Test
+    public void shouldRejectLookupsFromTheProviderInTheLoadingLocale() {
+        MessageSet set = new MessageSet();
+        set.setCatalogProvider(locale -> {
+            set.get(locale, "test-parent");
+            return Collections.singletonMap("test-parent", "From the parent.");
+        });
+
+        assertThrows(IllegalStateException.class, () -> set.get(parent, "test-parent"));
+    }
+
+    @Test
+    public void shouldRejectLookupsThatWaitForEachOtherAcrossThreads() throws Exception {
+        MessageSet set = new MessageSet();
+        CyclicBarrier bothLoading = new CyclicBarrier(2);
+        set.setCatalogProvider(locale -> {
+            try {
+                bothLoading.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                throw new IllegalStateException(e);
+            }
+            set.get(locale.equals(parent) ? other : parent, "test-parent");
+            return Collections.singletonMap("test-parent", "Loaded.");
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> set.get(parent, "test-parent"));
+            Future<String> second = executor.submit(() -> set.get(other, "test-parent"));
+            int rejected = 0;
+            for (Future<String> result : Arrays.asList(first, second)) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+                    rejected++;
+                }
+            }
+            assertThat(rejected, greaterThan(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
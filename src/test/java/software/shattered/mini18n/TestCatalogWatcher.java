@@ -0,0 +1,131 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestCatalogWatcher {
+    private static final Locale locale = Locale.forLanguageTag("tcw");
+
+    private static Path directory() throws IOException {
+        Path directory = Files.createTempDirectory("mini18n");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.write(file, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        file.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void shouldApplyChangedKeysAndTheirReferences() throws IOException {
+        Path directory = directory();
+        Path file = directory.resolve("tcw.properties");
+        write(file, "name=Alice", "greeting=Hello, %message:name%!", "other=%message:plain% %x%", "plain=Plain");
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        RenderCache cache = new RenderCache();
+        set.setRenderCache(cache);
+
+        try (CatalogWatcher watcher = CatalogWatcher.watch(set, directory)) {
+            Map<String, Object> data = Collections.singletonMap("x", "x");
+            assertThat(set.get(locale, "greeting"), equalTo("Hello, Alice!"));
+            assertThat(set.get(locale, "other", data), equalTo("Plain x"));
+
+            write(file, "name=Bob", "greeting=Hello, %message:name%!", "other=%message:plain% %x%", "plain=Plain");
+            assertThat(watcher.reload(file), equalTo(true));
+            assertThat(watcher.reload(file), equalTo(false));
+            assertThat(set.get(locale, "greeting"), equalTo("Hello, Bob!"));
+            // Not linked to the changed key, so its cached render is still valid.
+            assertThat(set.get(locale, "other", data), equalTo("Plain x"));
+            assertThat(cache.getStats().getHits(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void shouldRemoveKeysRemovedFromTheFile() throws IOException {
+        Path directory = directory();
+        Path file = directory.resolve("tcw.properties");
+        write(file, "kept=Kept", "removed=Removed");
+        MessageSet set = new MessageSet();
+
+        try (CatalogWatcher watcher = CatalogWatcher.watch(set, directory)) {
+            assertThat(set.get(locale, "removed"), equalTo("Removed"));
+
+            write(file, "kept=Kept");
+            watcher.reload();
+            assertThat(set.get(locale, "kept"), equalTo("Kept"));
+            assertThat(set.get(locale, "removed"), nullValue());
+
+            Files.delete(file);
+            watcher.reload();
+            assertThat(set.get(locale, "kept"), nullValue());
+        }
+    }
+
+    @Test
+    public void shouldReloadEveryFormatAndLocaleDirectory() throws IOException {
+        Path directory = directory();
+        Path yaml = directory.resolve("tcw.yml");
+        Path nested = directory.resolve("tcw");
+        Files.createDirectory(nested);
+        nested.toFile().deleteOnExit();
+        Path json = nested.resolve("shop.json");
+        write(yaml, "title: Title", "shop:", "  name: Shop");
+        write(json, "{\"shop\": {\"open\": \"Open\"}}");
+        MessageSet set = new MessageSet();
+
+        try (CatalogWatcher watcher = CatalogWatcher.watch(set, directory)) {
+            assertThat(set.get(locale, "title"), equalTo("Title"));
+            assertThat(set.get(locale, "shop.open"), equalTo("Open"));
+
+            write(json, "{\"shop\": {\"closed\": \"Closed\"}}");
+            assertThat(watcher.reload(json), equalTo(true));
+            assertThat(set.get(locale, "shop.open"), nullValue());
+            assertThat(set.get(locale, "shop.closed"), equalTo("Closed"));
+            assertThat(set.get(locale, "shop.name"), equalTo("Shop"));
+
+            write(yaml, "title: Changed");
+            assertThat(watcher.reload(yaml), equalTo(true));
+            assertThat(set.get(locale, "title"), equalTo("Changed"));
+            assertThat(set.get(locale, "shop.name"), nullValue());
+            assertThat(set.get(locale, "shop.closed"), equalTo("Closed"));
+        }
+    }
+
+    @Test
+    public void shouldPickUpChangedFiles() throws Exception {
+        Path directory = directory();
+        MessageSet set = new MessageSet();
+
+        try (CatalogWatcher ignored = CatalogWatcher.watch(set, directory)) {
+            write(directory.resolve("tcw.properties"), "watched=Watched");
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (set.get(locale, "watched") == null && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(set.get(locale, "watched"), equalTo("Watched"));
+
+            Path nested = directory.resolve("tcw");
+            Files.createDirectory(nested);
+            nested.toFile().deleteOnExit();
+            write(nested.resolve("nested.yaml"), "nested: Nested");
+            while (set.get(locale, "nested") == null && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(set.get(locale, "nested"), equalTo("Nested"));
+        }
+    }
+}
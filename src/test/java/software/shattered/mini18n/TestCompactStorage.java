@@ -0,0 +1,83 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestCompactStorage {
+    private static final Locale locale = Locale.forLanguageTag("tcs");
+    private static final Locale childLocale = Locale.forLanguageTag("tcs-XA");
+    private static final Locale otherLocale = Locale.forLanguageTag("tct");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+        PluralRules.add(otherLocale, PluralRules.ChinesePluralRules);
+    }
+
+    @Test
+    public void shouldRenderLikeTheDefaultStorage() {
+        MessageSet set = new MessageSet();
+        set.setCompactStorage(true);
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.add(locale, "test-items.one", "%count% item");
+        set.add(locale, "test-items.other", "%count% items");
+        set.add(locale, "test-brand", "Shattered");
+        set.add(locale, "test-welcome", "Welcome to %message:test-brand%, %name%!");
+        set.add(childLocale, "test-brand", "Shattered XA");
+        set.add(otherLocale, "test-brand", "Shattered");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Hunter");
+        data.put("count", 1);
+        assertThat(set.get(locale, "test-items", data), equalTo("1 item"));
+        assertThat(set.get(locale, "test-items.other", data), equalTo("1 items"));
+        assertThat(set.get(childLocale, "test-items", Collections.singletonMap("count", 2)), equalTo("2 items"));
+        assertThat(set.get(childLocale, "test-welcome", data), equalTo("Welcome to Shattered XA, Hunter!"));
+        assertThat(set.get(otherLocale, "test-items"), nullValue());
+
+        Map<String, MessageTemplate> messages = set.getPublishedLocales().get(locale).getMessages();
+        assertThat(messages.size(), equalTo(4));
+        assertThat(messages.keySet(), containsInAnyOrder("test-items.one", "test-items.other", "test-brand",
+                "test-welcome"));
+        assertThat(messages.get("test-items"), nullValue());
+    }
+
+    @Test
+    public void shouldShareEqualMessagesAcrossLocales() {
+        MessageSet set = new MessageSet();
+        set.setCompactStorage(true);
+        set.add(locale, "test-brand", "Shattered");
+        set.add(otherLocale, "test-brand", "Shattered");
+        set.add(otherLocale, "test-other-brand", "Shattered");
+
+        MessageTemplate brand = set.getPublishedLocales().get(locale).getMessages().get("test-brand");
+        assertThat(set.getPublishedLocales().get(otherLocale).getMessages().get("test-brand"), sameInstance(brand));
+        assertThat(set.getPublishedLocales().get(otherLocale).getMessages().get("test-other-brand"),
+                sameInstance(brand));
+    }
+
+    @Test
+    public void shouldSwitchExistingMessages() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple", "Hello, %name%!");
+        set.setCompactStorage(true);
+        assertThat(set.isCompactStorage(), equalTo(true));
+        assertThat(set.getPublishedLocales().get(locale), instanceOf(CompactLocaleMessages.class));
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("name", "Hunter")),
+                equalTo("Hello, Hunter!"));
+
+        set.add(locale, "test-other", "Other");
+        set.setCompactStorage(false);
+        assertThat(set.getPublishedLocales().get(locale), instanceOf(CompiledLocaleMessages.class));
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("name", "Hunter")),
+                equalTo("Hello, Hunter!"));
+        assertThat(set.get(locale, "test-other"), equalTo("Other"));
+    }
+}
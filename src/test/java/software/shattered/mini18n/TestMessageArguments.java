@@ -0,0 +1,141 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.meta.MessageMetaProcessor;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestMessageArguments {
+    private static final Locale locale = Locale.forLanguageTag("TEST");
+    private static final int Name = MessageArguments.slot("name");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+    }
+
+    @Test
+    public void shouldResolveSlotsOnce() {
+        assertThat(MessageArguments.slot("name"), equalTo(Name));
+        assertThat(MessageArguments.slot("count"), equalTo(MessageArguments.Count));
+    }
+
+    @Test
+    public void shouldRejectMissingSlots() {
+        MessageArguments arguments = new MessageArguments();
+        assertThrows(IllegalArgumentException.class, () -> arguments.set(MessageArguments.NoSlot, "value"));
+        assertThat(arguments.has(MessageArguments.NoSlot), equalTo(false));
+        assertThat(arguments.get(MessageArguments.NoSlot), nullValue());
+    }
+
+    @Test
+    public void shouldRenderBySlot() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple", "Hello, %name%! %missing%");
+
+        MessageArguments arguments = new MessageArguments().set(Name, "Hunter");
+        assertThat(set.get(locale, "test-simple", arguments), equalTo("Hello, Hunter! %missing%"));
+
+        arguments.clear().set("name", 42L);
+        assertThat(set.get(locale, "test-simple", arguments), equalTo("Hello, 42! %missing%"));
+    }
+
+    @Test
+    public void shouldPluralizePrimitiveCounts() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple.one", "There is %count% item.");
+        set.add(locale, "test-simple.other", "There are %count% items.");
+        set.add(locale, "test-ordinal.one", "%count%st");
+        set.add(locale, "test-ordinal.other", "%count%th");
+        set.add(locale, "test-range.one+other", "%range_min%-%range_max% things");
+
+        MessageArguments arguments = new MessageArguments();
+        assertThat(set.get(locale, "test-simple", arguments.count(1)), equalTo("There is 1 item."));
+        assertThat(set.get(locale, "test-simple", arguments.count(3)), equalTo("There are 3 items."));
+        assertThat(set.get(locale, "test-simple", arguments.count(1.5)), equalTo("There are 1.5 items."));
+        assertThat(set.get(locale, "test-ordinal", arguments.count(21).ordinal(true)), equalTo("21st"));
+        assertThat(set.get(locale, "test-range", arguments.clear().range(1, 5)), equalTo("1-5 things"));
+    }
+
+    @Test
+    public void shouldPassArgumentsToMetaProcessors() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.addMetaProcessor(new MessageMetaProcessor() {
+            @Override
+            public String getId() {
+                return "upper";
+            }
+
+            @Override
+            public String parse(Locale locale, String argument, String currentMessage, Map<String, Object> data) {
+                return String.valueOf(data.get(argument)).toUpperCase(Locale.ROOT);
+            }
+        });
+        set.add(locale, "test-simple", "%message:prefix% %upper:name%");
+        set.add(locale, "prefix", "[%name%]");
+
+        MessageArguments arguments = new MessageArguments().set(Name, "Hunter");
+        assertThat(set.get(locale, "test-simple", arguments), equalTo("[Hunter] HUNTER"));
+        assertThat(arguments.asMap().get("name"), equalTo("Hunter"));
+        assertThat(arguments.asMap().size(), equalTo(1));
+    }
+
+    private static Supplier<Object> counting(AtomicInteger calls, Object value) {
+        return () -> {
+            calls.incrementAndGet();
+            return value;
+        };
+    }
+
+    @Test
+    public void shouldOnlyComputeLazyArgumentsThatAreRendered() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-lazy.one", "%name% has one coin");
+        set.add(locale, "test-lazy.other", "%name%, %name% has %count% coins and %balance%");
+        AtomicInteger names = new AtomicInteger();
+        AtomicInteger balances = new AtomicInteger();
+        AtomicInteger counts = new AtomicInteger();
+
+        MessageArguments arguments = new MessageArguments().lazy(Name, counting(names, "Hunter"))
+                .lazy("balance", counting(balances, "$5")).set(MessageArguments.Count, counting(counts, 1));
+        assertThat(set.get(locale, "test-lazy", arguments), equalTo("Hunter has one coin"));
+        assertThat(balances.get(), equalTo(0));
+
+        arguments.lazy(MessageArguments.Count, counting(counts, 3));
+        assertThat(set.get(locale, "test-lazy", arguments), equalTo("Hunter, Hunter has 3 coins and $5"));
+        assertThat(names.get(), equalTo(1));
+        assertThat(balances.get(), equalTo(1));
+        assertThat(counts.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldComputeLazyDataOncePerRender() {
+        MessageSet set = new MessageSet();
+        set.setRenderCache(new RenderCache());
+        set.add(locale, "test-lazy", "%name%, %name%!");
+        AtomicInteger names = new AtomicInteger();
+        AtomicInteger unused = new AtomicInteger();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", counting(names, "Hunter"));
+        data.put("unused", counting(unused, "Nothing"));
+        assertThat(set.get(locale, "test-lazy", data), equalTo("Hunter, Hunter!"));
+        assertThat(set.get(locale, "test-lazy", data), equalTo("Hunter, Hunter!"));
+
+        assertThat(names.get(), equalTo(2));
+        assertThat(unused.get(), equalTo(0));
+    }
+}
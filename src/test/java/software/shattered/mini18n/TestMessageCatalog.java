@@ -0,0 +1,89 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestMessageCatalog {
+    private static final Locale locale = Locale.forLanguageTag("TEST");
+    private static final Locale otherLocale = Locale.forLanguageTag("TEST2");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+        PluralRules.add(otherLocale, PluralRules.ChinesePluralRules);
+    }
+
+    private static Path write(MessageSet set) throws IOException {
+        Path path = Files.createTempFile("mini18n", ".catalog");
+        path.toFile().deleteOnExit();
+        MessageCatalog.write(set, path);
+        return path;
+    }
+
+    @Test
+    public void shouldRoundTripMessages() throws IOException {
+        MessageSet source = new MessageSet();
+        source.add(locale, "test-simple", "Hello, %name%! 100%");
+        source.add(locale, "test-plural.one", "%message:prefix% There is %count% item.");
+        source.add(locale, "test-plural.other", "%message:prefix% There are %count% items.");
+        source.add(locale, "prefix", "[Prefix]");
+        source.add(locale, "test-unicode", "Grüße, %name% ✓");
+        source.add(otherLocale, "test-simple", "你好, %name%!");
+
+        MessageCatalog catalog = MessageCatalog.open(write(source));
+        assertThat(catalog.getLocales(), equalTo(new HashSet<>(Arrays.asList(locale, otherLocale))));
+
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.addAll(catalog);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Hunter");
+        data.put("count", 2);
+        assertThat(set.get(locale, "test-simple", data), equalTo("Hello, Hunter! 100%"));
+        assertThat(set.get(locale, "test-plural", data), equalTo("[Prefix] There are 2 items."));
+        assertThat(set.get(locale, "test-plural", Collections.singletonMap("count", 1)),
+                equalTo("[Prefix] There is 1 item."));
+        assertThat(set.get(locale, "test-unicode", data), equalTo("Grüße, Hunter ✓"));
+        assertThat(set.get(otherLocale, "test-simple", data), equalTo("你好, Hunter!"));
+        assertThat(set.get(locale, "test-missing"), equalTo(null));
+    }
+
+    @Test
+    public void shouldMergeIntoExistingLocales() throws IOException {
+        MessageSet source = new MessageSet();
+        source.add(locale, "test-simple", "From the catalog");
+        source.add(locale, "test-other", "Also from the catalog");
+        MessageCatalog catalog = MessageCatalog.open(write(source));
+
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple", "Added before");
+        set.add(locale, "test-kept", "Kept");
+        set.addAll(catalog);
+        set.add(locale, "test-other", "Added after");
+
+        assertThat(set.get(locale, "test-simple"), equalTo("From the catalog"));
+        assertThat(set.get(locale, "test-kept"), equalTo("Kept"));
+        assertThat(set.get(locale, "test-other"), equalTo("Added after"));
+    }
+
+    @Test
+    public void shouldRejectOtherFiles() throws IOException {
+        Path path = Files.createTempFile("mini18n", ".yml");
+        path.toFile().deleteOnExit();
+        Files.write(path, "test-simple: Hello there, how are you?".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> MessageCatalog.open(path));
+    }
+}
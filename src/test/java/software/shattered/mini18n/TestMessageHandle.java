@@ -0,0 +1,56 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestMessageHandle {
+    private static final Locale locale = Locale.forLanguageTag("tmh");
+    private static final Locale childLocale = Locale.forLanguageTag("tmh-XA");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+    }
+
+    @Test
+    public void shouldRenderLikeTheKey() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "dollars.one", "%count% dollar");
+        set.add(locale, "dollars.other", "%count% dollars");
+        MessageHandle dollars = set.handle("dollars");
+
+        assertThat(set.handle("dollars"), sameInstance(dollars));
+        assertThat(dollars.get(locale, new MessageArguments().count(1)), equalTo("1 dollar"));
+        assertThat(dollars.get(locale, Collections.singletonMap("count", 5)), equalTo("5 dollars"));
+        assertThat(dollars.get(childLocale, new MessageArguments().count(2)), equalTo("2 dollars"));
+        StringBuilder out = new StringBuilder("> ");
+        assertThat(dollars.render(locale, new MessageArguments().count(3), out), equalTo(true));
+        assertThat(out.toString(), equalTo("> 3 dollars"));
+    }
+
+    @Test
+    public void shouldStayValidAcrossChanges() {
+        MessageSet set = new MessageSet();
+        MessageHandle greeting = set.handle("greeting");
+        MessageHandle other = set.handle("other");
+        assertThat(greeting.get(locale), nullValue());
+
+        set.add(locale, "greeting", "Hello");
+        assertThat(greeting.get(locale), equalTo("Hello"));
+        assertThat(greeting.get(childLocale), equalTo("Hello"));
+        assertThat(other.get(locale), nullValue());
+
+        set.add(childLocale, "greeting", "Howdy");
+        set.addAll(locale, Collections.singletonMap("other", "Other"));
+        assertThat(greeting.get(locale), equalTo("Hello"));
+        assertThat(greeting.get(childLocale), equalTo("Howdy"));
+        assertThat(other.get(locale), equalTo("Other"));
+    }
+}
@@ -2,10 +2,14 @@ package software.shattered.mini18n;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralOperands;
 import software.shattered.mini18n.lang.PluralRules;
 import software.shattered.mini18n.meta.RecurseMetaProcessor;
 
+import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
@@ -153,6 +157,9 @@ public class TestMessageSet {
         assertThat(set.get(locale, "test-simple", new LinkedHashMap<>() {{
             put("count", 1);
         }}), equalTo("There is 1 item."));
+        assertThat(set.get(locale, "test-simple", new LinkedHashMap<>() {{
+            put("count", PluralOperands.parse("1.0"));
+        }}), equalTo("There are 1.0 items."));
     }
 
     @Test
@@ -219,6 +226,179 @@ public class TestMessageSet {
         }}), equalTo("This is item no. 2."));
     }
 
+    @Test
+    public void shouldFallBackToOtherVariants() {
+        MessageSet set = new MessageSet();
+
+        set.add(locale, "test-simple.other", "There are %count% items.");
+        set.add(locale, "test-base", "%count% item(s)");
+        set.add(locale, "test-base.one", "%count% item");
+        set.add(locale, "test-plain", "Items: %count%");
+
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("count", 1)),
+                equalTo("There are 1 items."));
+        assertThat(set.get(locale, "test-simple"), equalTo(null));
+        assertThat(set.get(locale, "test-base", Collections.singletonMap("count", 1)), equalTo("1 item"));
+        assertThat(set.get(locale, "test-base", Collections.singletonMap("count", 2)), equalTo("2 item(s)"));
+        assertThat(set.get(locale, "test-plain", Collections.singletonMap("count", 2)), equalTo("Items: 2"));
+        assertThat(set.get(locale, "test-base.one", Collections.singletonMap("count", 2)), equalTo("2 item"));
+    }
+
+    @Test
+    public void shouldFallBackForMissingRanges() {
+        MessageSet set = new MessageSet();
+
+        set.add(locale, "test-simple.one", "%range_min%-%range_max% item");
+        set.add(locale, "test-simple.other", "%range_min%-%range_max% items");
+        set.add(locale, "test-pairs.one+other", "%range_min%-%range_max% (one+other)");
+        set.add(locale, "test-pairs.other+other", "%range_min%-%range_max% (other+other)");
+
+        assertThat(set.get(locale, "test-simple", new LinkedHashMap<>() {{
+            put("range_min", 0);
+            put("range_max", 1);
+        }}), equalTo("0-1 items"));
+        assertThat(set.get(locale, "test-pairs", new LinkedHashMap<>() {{
+            put("range_min", 1);
+            put("range_max", 1);
+        }}), equalTo("1-1 (other+other)"));
+    }
+
+    @Test
+    public void shouldFallBackToParentLocales() {
+        MessageSet set = new MessageSet();
+        Locale region = new Locale(locale.getLanguage(), "GB");
+
+        set.add(locale, "test-simple", "Parent message.");
+        set.add(locale, "test-other", "Parent other message.");
+        set.add(region, "test-other", "Regional other message.");
+
+        assertThat(set.get(region, "test-simple"), equalTo("Parent message."));
+        assertThat(set.get(region, "test-other"), equalTo("Regional other message."));
+        assertThat(set.get(Locale.forLanguageTag("test-Latn-US-x-private"), "test-simple"),
+                equalTo("Parent message."));
+        assertThat(set.get(otherLocale, "test-simple"), equalTo(null));
+
+        set.setDefaultLocale(locale);
+        assertThat(set.get(otherLocale, "test-simple"), equalTo("Parent message."));
+        assertThat(set.get(otherLocale, "test-missing"), equalTo(null));
+    }
+
+    @Test
+    public void shouldUseConfiguredFallbacks() {
+        MessageSet set = new MessageSet();
+        Locale region = new Locale(locale.getLanguage(), "GB");
+
+        set.add(locale, "test-simple", "Parent message.");
+        set.add(otherLocale, "test-simple", "Other message.");
+        set.add(otherLocale, "test-count.one", "%count% thing in other locale.");
+        set.add(otherLocale, "test-count.other", "%count% things in other locale.");
+        set.setFallbacks(region, Collections.singletonList(otherLocale));
+
+        assertThat(set.get(region, "test-simple"), equalTo("Other message."));
+        // The plural rules of the locale that has the message are used.
+        assertThat(set.get(region, "test-count", Collections.singletonMap("count", 1)),
+                equalTo("1 things in other locale."));
+
+        set.setFallbacks(region, null);
+        assertThat(set.get(region, "test-simple"), equalTo("Parent message."));
+    }
+
+    @Test
+    public void shouldPublishLocalesAtomically() {
+        MessageSet set = new MessageSet();
+        Map<Locale, Map<String, String>> messages = new HashMap<>();
+        messages.put(locale, Collections.singletonMap("test-simple", "Locale 1."));
+        messages.put(otherLocale, Collections.singletonMap("test-simple", "Locale 2."));
+        set.addAll(messages);
+
+        assertThat(set.get(locale, "test-simple"), equalTo("Locale 1."));
+        assertThat(set.get(otherLocale, "test-simple"), equalTo("Locale 2."));
+        assertThat(set.get(Locale.forLanguageTag("txun"), "test-simple"), equalTo(null));
+    }
+
+    @Test
+    public void shouldPublishSingleAddsOnTopOfEarlierMessages() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        Map<String, String> messages = new HashMap<>();
+        messages.put("test-items.other", "%count% items");
+        messages.put("test-header", "[%message:test-items%]");
+        set.addAll(locale, messages);
+
+        set.add(locale, "test-items.one", "%count% item");
+        assertThat(set.get(locale, "test-items", Collections.singletonMap("count", 1)), equalTo("1 item"));
+        assertThat(set.get(locale, "test-header", Collections.singletonMap("count", 1)), equalTo("[1 item]"));
+        assertThat(set.get(locale, "test-header", Collections.singletonMap("count", 2)), equalTo("[2 items]"));
+
+        for (int i = 0; i < 100; i++) {
+            set.add(locale, "test-filler-" + i, "Filler " + i + ".");
+            assertThat(set.get(locale, "test-filler-" + i), equalTo("Filler " + i + "."));
+        }
+        assertThat(set.getPublishedLocales().get(locale).getMessages().size(), equalTo(103));
+        assertThat(set.get(locale, "test-header", Collections.singletonMap("count", 1)), equalTo("[1 item]"));
+    }
+
+    @Test
+    public void shouldReadWhileWriting() throws Exception {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple", "Version 0 for %name%.");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            for (int thread = 0; thread < 3; thread++) {
+                executor.execute(() -> {
+                    Map<String, Object> data = Collections.singletonMap("name", "reader");
+                    try {
+                        while (done.getCount() > 0) {
+                            String result = set.get(locale, "test-simple", data);
+                            if (result == null || !result.startsWith("Version ") || !result.endsWith(" for reader.")) {
+                                throw new AssertionError(result);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                });
+            }
+            for (int version = 1; version <= 2000; version++) {
+                set.add(locale, "test-simple", "Version " + version + " for %name%.");
+                set.add(locale, "test-other-" + version, "Filler.");
+            }
+        } finally {
+            done.countDown();
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(failure.get(), equalTo(null));
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("name", "x")), equalTo("Version 2000 for x."));
+    }
+
+    @Test
+    public void shouldRenderIntoAnExistingBuffer() throws Exception {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-simple", "Hello, %name%! You have %points% points.");
+        set.add(locale, "test-plural.one", "%count% item");
+        set.add(locale, "test-plural.other", "%count% items");
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Hunter");
+        data.put("points", 3);
+
+        StringBuilder builder = new StringBuilder("> ");
+        assertThat(set.render(locale, "test-simple", data, builder), equalTo(true));
+        builder.append(" | ");
+        assertThat(set.render(locale, "test-plural", Collections.singletonMap("count", 3), builder), equalTo(true));
+        assertThat(set.render(locale, "test-missing", data, builder), equalTo(false));
+        assertThat(builder.toString(), equalTo("> Hello, Hunter! You have 3 points. | 3 items"));
+
+        StringWriter writer = new StringWriter();
+        assertThat(set.render(locale, "test-simple", data, (Appendable) writer), equalTo(true));
+        assertThat(set.render(locale, "test-simple", data, (Appendable) writer), equalTo(true));
+        assertThat(writer.toString(),
+                equalTo("Hello, Hunter! You have 3 points.Hello, Hunter! You have 3 points."));
+    }
+
     @Test
     public void shouldActAsARegistry() {
         assertThat(PluralRules.forLocale(locale), equalTo(PluralRules.EnglishPluralRules));
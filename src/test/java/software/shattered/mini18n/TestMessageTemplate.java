@@ -0,0 +1,74 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.meta.MessageMetaProcessor;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestMessageTemplate {
+    private static final Locale locale = Locale.forLanguageTag("TEST");
+
+    @Test
+    public void shouldTreatPlainTextAsConstant() {
+        assertThat(MessageTemplate.compile("Just text.").isConstant(), equalTo(true));
+        assertThat(MessageTemplate.compile("Hello, %name%!").isConstant(), equalTo(false));
+        assertThat(MessageTemplate.compile("%message:prefix%").isConstant(), equalTo(false));
+    }
+
+    @Test
+    public void shouldSubstituteEveryOccurrence() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-repeat", "%name%, %name% and %other%");
+
+        assertThat(set.get(locale, "test-repeat", new LinkedHashMap<>() {{
+            put("name", "A");
+            put("other", "B");
+        }}), equalTo("A, A and B"));
+    }
+
+    @Test
+    public void shouldLeaveStrayPercentSignsAlone() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-percent", "50% off for %name%, 100%!");
+        set.add(locale, "test-double", "100%%name%");
+
+        Map<String, Object> data = new LinkedHashMap<>() {{
+            put("name", "you");
+        }};
+        assertThat(set.get(locale, "test-percent", data), equalTo("50% off for you, 100%!"));
+        assertThat(set.get(locale, "test-double", data), equalTo("100%you"));
+        assertThat(set.get(locale, "test-percent"), equalTo("50% off for %name%, 100%!"));
+    }
+
+    @Test
+    public void shouldPassMetaOutputThroughLiterally() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new MessageMetaProcessor() {
+            @Override
+            public String getId() {
+                return "price";
+            }
+
+            @Override
+            public String parse(Locale locale, String argument, String currentMessage, Map<String, Object> data) {
+                return "$" + argument;
+            }
+        });
+        set.add(locale, "test-meta", "Costs %price:5% and %price:10%.");
+
+        assertThat(set.get(locale, "test-meta"), equalTo("Costs $5 and $10."));
+    }
+
+    @Test
+    public void shouldDropUnknownMetaCalls() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "test-meta", "[%unknown:thing%]");
+
+        assertThat(set.get(locale, "test-meta"), equalTo("[]"));
+    }
+}
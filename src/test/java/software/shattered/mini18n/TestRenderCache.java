@@ -0,0 +1,113 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TestRenderCache {
+    private static final Locale locale = Locale.forLanguageTag("TEST");
+
+    @BeforeAll
+    public static void setUpPluralRules() {
+        PluralRules.add(locale, PluralRules.EnglishPluralRules);
+    }
+
+    @Test
+    public void shouldReuseRepeatedRenders() {
+        MessageSet set = new MessageSet();
+        RenderCache cache = new RenderCache();
+        set.setRenderCache(cache);
+        set.add(locale, "test-simple.one", "There is %count% item.");
+        set.add(locale, "test-simple.other", "There are %count% items.");
+        set.add(locale, "test-constant", "Just text.");
+
+        Map<String, Object> data = Collections.singletonMap("count", 3);
+        String first = set.get(locale, "test-simple", data);
+        assertThat(first, equalTo("There are 3 items."));
+        assertThat(set.get(locale, "test-simple", data), sameInstance(first));
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("count", 1)),
+                equalTo("There is 1 item."));
+        assertThat(set.get(locale, "test-constant"), equalTo("Just text."));
+
+        MessageArguments arguments = new MessageArguments().count(3);
+        assertThat(set.get(locale, "test-simple", arguments), equalTo("There are 3 items."));
+        assertThat(set.get(locale, "test-simple", arguments), equalTo("There are 3 items."));
+
+        RenderCacheStats stats = cache.getStats();
+        assertThat(stats.getHits(), equalTo(2L));
+        assertThat(stats.getMisses(), equalTo(3L));
+        assertThat(stats.getSize(), equalTo(3L));
+        assertThat(stats.getHitRatio(), closeTo(0.4, 0.001));
+    }
+
+    @Test
+    public void shouldKeepItsOwnCopyOfTheData() {
+        MessageSet set = new MessageSet();
+        set.setRenderCache(new RenderCache());
+        set.add(locale, "test-simple", "Hello, %name%!");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Hunter");
+        assertThat(set.get(locale, "test-simple", data), equalTo("Hello, Hunter!"));
+        data.put("name", "Steve");
+        assertThat(set.get(locale, "test-simple", data), equalTo("Hello, Steve!"));
+        assertThat(set.get(locale, "test-simple", Collections.singletonMap("name", "Hunter")),
+                equalTo("Hello, Hunter!"));
+        assertThat(set.getRenderCache().getStats().getHits(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldSeeChangedMessages() {
+        MessageSet set = new MessageSet();
+        set.setRenderCache(new RenderCache());
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.add(locale, "test-simple", "%message:prefix% Hello, %name%!");
+        set.add(locale, "prefix", "[Prefix]");
+
+        Map<String, Object> data = Collections.singletonMap("name", "Hunter");
+        assertThat(set.get(locale, "test-simple", data), equalTo("[Prefix] Hello, Hunter!"));
+        set.add(locale, "prefix", "[Changed]");
+        assertThat(set.get(locale, "test-simple", data), equalTo("[Changed] Hello, Hunter!"));
+    }
+
+    @Test
+    public void shouldSkipValuesThatMayChange() {
+        MessageSet set = new MessageSet();
+        RenderCache cache = new RenderCache();
+        set.setRenderCache(cache);
+        set.add(locale, "test-simple", "Hello, %name%!");
+
+        StringBuilder name = new StringBuilder("Hunter");
+        Map<String, Object> data = Collections.singletonMap("name", name);
+        assertThat(set.get(locale, "test-simple", data), equalTo("Hello, Hunter!"));
+        name.append("2");
+        assertThat(set.get(locale, "test-simple", data), equalTo("Hello, Hunter2!"));
+        assertThat(cache.getStats().getSize(), equalTo(0L));
+    }
+
+    @Test
+    public void shouldStayWithinItsSize() {
+        MessageSet set = new MessageSet();
+        RenderCache cache = new RenderCache(16 * 1024);
+        set.setRenderCache(cache);
+        set.add(locale, "test-simple", "Hello, %name%!");
+
+        for (int i = 0; i < 1000; i++) {
+            set.get(locale, "test-simple", Collections.singletonMap("name", "user" + i));
+        }
+
+        RenderCacheStats stats = cache.getStats();
+        assertThat(stats.getBytes(), lessThanOrEqualTo(16L * 1024));
+        assertThat(stats.getEvictions(), greaterThan(0L));
+        assertThat(stats.getSize() + stats.getEvictions(), equalTo(1000L));
+    }
+}
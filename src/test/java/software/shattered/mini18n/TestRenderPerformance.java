@@ -0,0 +1,199 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.lang.PluralCategory;
+import software.shattered.mini18n.lang.PluralRules;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation and throughput budgets for the render path, run by {@code ./gradlew performanceTest} rather than with
+ * the other tests. Each budget can be overridden with a {@code mini18n.budget.<name>} property, such as
+ * {@code -Pmini18n.budget.placeholders=160}, in bytes per call or in renders per second for throughput. The default
+ * allocation budgets leave a little room over what renders take on JDK 17, where strings store Latin-1 text in one
+ * byte per character; older JDKs need larger ones.
+ */
+@Tag("performance")
+public class TestRenderPerformance {
+    private static final Locale locale = Locale.ENGLISH;
+    private static final int WarmupCalls = 50_000;
+    private static final int MeasuredCalls = 100_000;
+    private static final com.sun.management.ThreadMXBean Threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static MessageSet set;
+    // Keeps results reachable so renders that allocate cannot be optimized away.
+    private static volatile Object sink;
+
+    @BeforeAll
+    public static void setUpMessages() {
+        set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.add(locale, "constant", "Welcome to the server!");
+        set.add(locale, "placeholders", "%player% paid %amount% coins to %target%.");
+        set.add(locale, "items.one", "You have %count% item.");
+        set.add(locale, "items.other", "You have %count% items.");
+        set.add(locale, "nested", "%message:prefix% Hello, %player%!");
+        set.add(locale, "prefix", "[Server]");
+    }
+
+    private static long budget(String name, long defaultBudget) {
+        return Long.getLong("mini18n.budget." + name, defaultBudget);
+    }
+
+    /**
+     * @return the bytes allocated per call, rounded so the counter's own occasional allocation does not count.
+     */
+    private static long bytesPerCall(Supplier<?> call) {
+        assumeTrue(Threads.isThreadAllocatedMemorySupported() && Threads.isThreadAllocatedMemoryEnabled(),
+                "Thread allocation counters are not available");
+        for (int i = 0; i < WarmupCalls; i++) {
+            sink = call.get();
+        }
+        long thread = Thread.currentThread().getId();
+        long start = Threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MeasuredCalls; i++) {
+            sink = call.get();
+        }
+        return Math.round((Threads.getThreadAllocatedBytes(thread) - start) / (double) MeasuredCalls);
+    }
+
+    private static void assertAllocation(String name, long defaultBudget, Supplier<?> call) {
+        long bytes = bytesPerCall(call);
+        assertThat(name + " allocated " + bytes + " bytes per call", bytes,
+                lessThanOrEqualTo(budget(name, defaultBudget)));
+    }
+
+    @Test
+    public void shouldStayWithinRenderAllocationBudgets() {
+        MessageArguments arguments = new MessageArguments().set("player", "Hunter").set("amount", 250L)
+                .set("target", "Steve").count(3);
+        Map<String, Object> data = new HashMap<>();
+        data.put("player", "Hunter");
+        data.put("amount", 250);
+        data.put("target", "Steve");
+        data.put("count", 3);
+
+        assertAllocation("constant", 0, () -> set.get(locale, "constant"));
+        assertAllocation("placeholders", 256, () -> set.get(locale, "placeholders", arguments));
+        assertAllocation("placeholders-data", 304, () -> set.get(locale, "placeholders", data));
+        assertAllocation("plural", 192, () -> set.get(locale, "items", arguments));
+        assertAllocation("nested", 200, () -> set.get(locale, "nested", arguments));
+
+    }
+
+    @Test
+    public void shouldNotAllocateToRenderIntoABuilder() {
+        MessageArguments arguments = new MessageArguments().set("player", "Hunter").set("amount", 250L)
+                .set("target", "Steve").count(3);
+        Map<String, Object> data = new HashMap<>();
+        data.put("player", "Hunter");
+        data.put("amount", 250);
+        data.put("target", "Steve");
+        data.put("count", 3);
+        MessageHandle placeholders = set.handle("placeholders");
+        StringBuilder out = new StringBuilder();
+
+        assertAllocation("render-data", 0, () -> {
+            out.setLength(0);
+            return set.render(locale, "placeholders", data, out);
+        });
+        assertAllocation("render-arguments", 0, () -> {
+            out.setLength(0);
+            return set.render(locale, "items", arguments, out);
+        });
+        assertAllocation("render-handle", 0, () -> {
+            out.setLength(0);
+            return placeholders.render(locale, arguments, out);
+        });
+    }
+
+    @Test
+    public void shouldNotAllocateToSelectPluralCategories() {
+        PluralRules english = PluralRules.forLocale(locale);
+        PluralRules arabic = PluralRules.forLocale(Locale.forLanguageTag("ar"));
+        long[] counts = {0, 1, 2, 5, 11, 22, 101, 1_000_003};
+
+        assertAllocation("select", 0, () -> {
+            PluralCategory last = null;
+            for (long count : counts) {
+                last = arabic.selectCategory(count);
+            }
+            return last;
+        });
+        assertAllocation("select-double", 0, () -> english.selectCategory(1.5));
+        assertAllocation("select-keyword", 0, () -> {
+            String last = null;
+            for (long count : counts) {
+                last = arabic.select(count);
+            }
+            return last;
+        });
+        assertAllocation("select-keyword-double", 0, () -> english.select(1.5));
+        assertAllocation("select-ordinal-keyword", 0, () -> {
+            String last = null;
+            for (long count : counts) {
+                last = english.selectOrdinal(count);
+            }
+            return last;
+        });
+        assertAllocation("select-ordinal", 0, () -> {
+            PluralCategory last = null;
+            for (long count : counts) {
+                last = english.selectOrdinalCategory(count);
+            }
+            return last;
+        });
+    }
+
+    @Test
+    public void shouldStayWithinThroughputBudget() throws Exception {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        long durationNanos = 500_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    MessageArguments arguments = new MessageArguments();
+                    long renders = 0;
+                    long end = System.nanoTime() + durationNanos;
+                    while (System.nanoTime() < end) {
+                        for (int i = 0; i < 100; i++, renders++) {
+                            arguments.clear().set("player", "Hunter").set("amount", renders).count(renders);
+                            sink = set.get(locale, (renders & 1) == 0 ? "placeholders" : "items", arguments);
+                        }
+                    }
+                    return renders;
+                });
+            }
+            long renders = 0;
+            for (Future<Long> result : executor.invokeAll(tasks)) {
+                renders += result.get();
+            }
+            long perSecond = renders * 1_000_000_000L / durationNanos;
+            assertThat(threads + " threads rendered " + perSecond + " messages per second", perSecond,
+                    greaterThanOrEqualTo(budget("throughput", 200_000)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package software.shattered.mini18n;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestValueFormat {
+    private static final Locale english = Locale.forLanguageTag("en-US");
+    private static final Locale german = Locale.forLanguageTag("de-DE");
+
+    @Test
+    public void shouldWriteWholeNumbersLikeNumberFormat() {
+        ValueFormat format = ValueFormat.parse("number");
+        long[] values = {0, 7, -7, 999, 1000, -1234, 123456789, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (String tag : new String[]{"en-US", "de-DE", "fr-FR", "de-CH", "ar-EG", "hi-IN"}) {
+            Locale locale = Locale.forLanguageTag(tag);
+            for (long value : values) {
+                StringBuilder out = new StringBuilder("> ");
+                format.append(locale, value, out);
+                assertThat(tag + " " + value, out.toString(),
+                        equalTo("> " + NumberFormat.getNumberInstance(locale).format(value)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFormatPlaceholderValues() {
+        MessageSet set = new MessageSet();
+        set.add(english, "price", "%count,integer% for %price,currency% (%off,percent% off)");
+        set.add(german, "price", "%count,integer% für %price,currency:EUR%");
+        set.add(english, "date", "On %when,date:short%, after %wait,duration%");
+        set.add(english, "unknown", "%name,nothing% and %name,date:never%");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("count", 1234.6);
+        data.put("price", 9.5);
+        data.put("off", 0.25);
+        assertThat(set.get(english, "price", data), equalTo("1,235 for $9.50 (25% off)"));
+        assertThat(set.get(german, "price", data),
+                equalTo("1.235 für " + NumberFormat.getCurrencyInstance(german).format(9.5)));
+
+        LocalDate date = LocalDate.of(2024, 3, 9);
+        MessageArguments arguments = new MessageArguments().set("when", date).set("wait", Duration.ofSeconds(3909));
+        assertThat(set.get(english, "date", arguments), equalTo("On "
+                + DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).withLocale(english).format(date)
+                + ", after 1:05:09"));
+        assertThat(set.get(english, "unknown", Collections.singletonMap("name,nothing", "x")),
+                equalTo("x and %name,date:never%"));
+    }
+
+    @Test
+    public void shouldUseTheLongPathForArguments() {
+        MessageSet set = new MessageSet();
+        set.add(german, "coins", "%count,number% Münzen");
+        int count = MessageArguments.slot("count");
+
+        assertThat(set.get(german, "coins", new MessageArguments().set(count, 1234567L)),
+                equalTo("1.234.567 Münzen"));
+        assertThat(set.get(german, "coins", new MessageArguments().set(count, 1.5)), equalTo("1,5 Münzen"));
+        assertThat(set.get(german, "coins", new MessageArguments()), equalTo("%count,number% Münzen"));
+    }
+
+    @Test
+    public void shouldFormatSharedTemplatesPerLocale() {
+        MessageSet set = new MessageSet();
+        set.setCompactStorage(true);
+        set.add(english, "coins", "%count,number%");
+        set.add(german, "coins", "%count,number%");
+
+        Map<Locale, String> results = set.getAll(Arrays.asList(english, german), "coins",
+                new MessageArguments().count(12345));
+
+        assertThat(results.get(english), equalTo("12,345"));
+        assertThat(results.get(german), equalTo("12.345"));
+    }
+
+    @Test
+    public void shouldRoundTripThroughCatalogs() throws IOException {
+        MessageSet source = new MessageSet();
+        source.add(german, "coins", "%count,number% Münzen am %when,date%");
+        Path path = Files.createTempFile("mini18n", ".catalog");
+        path.toFile().deleteOnExit();
+        MessageCatalog.write(source, path);
+
+        MessageSet set = new MessageSet();
+        set.addAll(MessageCatalog.open(path));
+        LocalDate date = LocalDate.of(2024, 3, 9);
+
+        assertThat(set.get(german, "coins", new MessageArguments().count(2000).set("when", date)),
+                equalTo("2.000 Münzen am "
+                        + DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(german).format(date)));
+    }
+}
@@ -0,0 +1,105 @@
+package software.shattered.mini18n.codegen;
+
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.CatalogLoader;
+import software.shattered.mini18n.MessageSet;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestAccessorGenerator {
+    private static final Locale locale = Locale.ENGLISH;
+
+    private static Path directory() throws IOException {
+        Path directory = Files.createTempDirectory("mini18n");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    private static Path catalogs() throws IOException {
+        Path catalogs = directory();
+        Path file = catalogs.resolve("en.properties");
+        file.toFile().deleteOnExit();
+        Files.write(file, String.join("\n",
+                "greeting=Hello, %player-name%!",
+                "welcome=Welcome to */ the \\\\u server!",
+                "shop.items.one=%count% item for %price,currency%",
+                "shop.items.other=%count% items for %price,currency%",
+                "span.one+other=%range_min%-%range_max% days",
+                "span.other+other=%range_min%-%range_max% days",
+                "header=[%message:greeting%] %count%",
+                "default=%class% and %count,integer%").getBytes(StandardCharsets.UTF_8));
+        return catalogs;
+    }
+
+    @Test
+    public void shouldGenerateTypedAccessors() throws IOException {
+        String source = AccessorGenerator.generate("com.example.Messages", locale,
+                CatalogLoader.read(catalogs(), locale));
+
+        assertThat(source, allOf(
+                containsString("package com.example;"),
+                containsString("public String greeting(Locale locale, Object playerName)"),
+                containsString("public String welcome(Locale locale) {"),
+                containsString("public String shopItems(Locale locale, long count, double price)"),
+                containsString("public String spanRange(Locale locale, long rangeMin, long rangeMax)"),
+                containsString("public String header(Locale locale, Object count, Object playerName)"),
+                containsString("public String default_(Locale locale, Object class_, long count)"),
+                containsString("this.shopItems = set.handle(\"shop.items\");")));
+        assertThat(source, not(containsString("*/ the")));
+    }
+
+    @Test
+    public void shouldRenderThroughCompiledAccessors() throws Exception {
+        Path catalogs = catalogs();
+        Path sources = directory();
+        Path classes = directory();
+        Path file = AccessorGenerator.write(catalogs, locale, "com.example.Messages", sources);
+        assertThat(file, equalTo(sources.resolve("com/example/Messages.java")));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null, "-d", classes.toString(),
+                "-cp", System.getProperty("java.class.path"), file.toString());
+        assertThat(result, equalTo(0));
+
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        CatalogLoader.load(set, catalogs);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                getClass().getClassLoader())) {
+            Class<?> type = loader.loadClass("com.example.Messages");
+            Object messages = type.getConstructor(MessageSet.class).newInstance(set);
+            Method greeting = type.getMethod("greeting", Locale.class, Object.class);
+            Method items = type.getMethod("shopItems", Locale.class, long.class, double.class);
+            Method span = type.getMethod("spanRange", Locale.class, long.class, long.class);
+            Method header = type.getMethod("header", Locale.class, Object.class, Object.class);
+
+            assertThat(greeting.invoke(messages, locale, "Hunter"), equalTo("Hello, Hunter!"));
+            assertThat(items.invoke(messages, locale, 1L, 2.5), equalTo("1 item for \u00a42.50"));
+            assertThat(items.invoke(messages, locale, 3L, 2.5), equalTo("3 items for \u00a42.50"));
+            assertThat(span.invoke(messages, locale, 1L, 3L), equalTo("1-3 days"));
+            assertThat(header.invoke(messages, locale, 7L, "Hunter"), equalTo("[Hello, Hunter!] 7"));
+            assertThat(greeting.invoke(messages, Locale.FRENCH, "Hunter"), nullValue());
+        }
+    }
+
+    @Test
+    public void shouldRefuseCatalogsWithoutTheLocale() throws IOException {
+        Path catalogs = catalogs();
+        assertThrows(IOException.class, () -> AccessorGenerator.write(catalogs, Locale.GERMAN, "Messages",
+                directory()));
+    }
+}
@@ -0,0 +1,72 @@
+package software.shattered.mini18n.lang;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestPluralOperands {
+    @ParameterizedTest
+    @CsvSource({
+            "1, 1, 1, 0, 0, 0, 0",
+            "1.0, 1, 1, 1, 0, 0, 0",
+            "1.50, 1.5, 1, 2, 1, 50, 5",
+            "-12.305, 12.305, 12, 3, 3, 305, 305",
+            "0.01, 0.01, 0, 2, 2, 1, 1",
+    })
+    public void shouldParseDecimals(String number, double n, long i, int v, int w, long f, long t) {
+        PluralOperands operands = PluralOperands.parse(number);
+        assertThat(operands.n, equalTo(n));
+        assertThat(operands.i, equalTo(i));
+        assertThat(operands.v, equalTo(v));
+        assertThat(operands.w, equalTo(w));
+        assertThat(operands.f, equalTo(f));
+        assertThat(operands.t, equalTo(t));
+        assertThat(operands.toString(), equalTo(number));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "1.0, 1, 0, 0",
+            "12.4, 12, 1, 4",
+            "0.125, 0, 3, 125",
+            "-3.75, 3, 2, 75",
+            "1234567.5, 1234567, 1, 5",
+    })
+    public void shouldComputeOperandsOfDoubles(double number, long i, int v, long f) {
+        PluralOperands operands = PluralOperands.of(number);
+        assertThat(operands.i, equalTo(i));
+        assertThat(operands.v, equalTo(v));
+        assertThat(operands.f, equalTo(f));
+    }
+
+    @Test
+    public void shouldRejectNonDecimals() {
+        assertThrows(NumberFormatException.class, () -> PluralOperands.parse("1e5"));
+        assertThrows(NumberFormatException.class, () -> PluralOperands.parse("."));
+        assertThrows(NumberFormatException.class, () -> PluralOperands.parse(""));
+    }
+
+    @Test
+    public void shouldRejectIntegersLongerThanALong() {
+        assertThat(PluralOperands.parse("9223372036854775807").i, equalTo(Long.MAX_VALUE));
+        assertThrows(NumberFormatException.class, () -> PluralOperands.parse("9223372036854775808"));
+        assertThrows(NumberFormatException.class, () -> PluralOperands.parse("-123456789012345678901234567890.5"));
+    }
+
+    @Test
+    public void shouldTellVisibleDigitsApart() {
+        PluralRules rules = PluralRules.EnglishPluralRules;
+        assertThat(rules.select(PluralOperands.parse("1")), equalTo("one"));
+        assertThat(rules.select(PluralOperands.parse("1.0")), equalTo("other"));
+        assertThat(rules.select(1L), equalTo("one"));
+        assertThat(rules.select(1), equalTo("one"));
+        assertThat(rules.select(-1), equalTo("one"));
+        assertThat(rules.select(1.5), equalTo("other"));
+        assertThat(rules.selectOrdinal(23L), equalTo("few"));
+        assertThat(rules.selectOrdinal(113L), equalTo("other"));
+    }
+}
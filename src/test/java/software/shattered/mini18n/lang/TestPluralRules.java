@@ -0,0 +1,101 @@
+package software.shattered.mini18n.lang;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestPluralRules {
+    @ParameterizedTest
+    @CsvSource({
+            "ru, 1, one", "ru, 2, few", "ru, 5, many", "ru, 11, many", "ru, 21, one", "ru, 1.5, other",
+            "pl, 1, one", "pl, 22, few", "pl, 12, many", "pl, 101, many",
+            "ar, 0, zero", "ar, 2, two", "ar, 103, few", "ar, 111, many", "ar, 100, other",
+            "cy, 3, few", "cy, 6, many", "cy, 4, other",
+            "fr, 0, one", "fr, 1.5, one", "fr, 1000000, many", "fr, 2000, other",
+            "lv, 10, zero", "lv, 21, one", "lv, 0.1, one",
+            "ja, 1, other", "zh, 1, other", "cn, 1, other",
+            "he, 2, two", "cs, 1.5, many", "lt, 19, other", "lt, 0.5, many",
+    })
+    public void shouldSelectCardinalCategories(String language, String count, String category) {
+        PluralRules rules = PluralRules.forLocale(Locale.forLanguageTag(language));
+        assertThat(rules.select(PluralOperands.parse(count)), equalTo(category));
+        assertThat(rules.select(Double.parseDouble(count)), equalTo(category));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "en, 1, one", "en, 22, two", "en, 113, other", "en, 1003, few",
+            "it, 8, many", "it, 800, many", "it, 81, other",
+            "sv, 2, one", "sv, 12, other",
+            "cy, 0, zero", "cy, 5, many",
+            "az, 40, many", "az, 300, few",
+    })
+    public void shouldSelectOrdinalCategories(String language, long count, String category) {
+        assertThat(PluralRules.forLocale(Locale.forLanguageTag(language)).selectOrdinal(count), equalTo(category));
+    }
+
+    @Test
+    public void shouldAgreeWithTheConditionsPastTheTable() {
+        PluralRules rules = PluralRules.forLocale(Locale.forLanguageTag("ru"));
+        for (long count = 0; count < 3 * CompiledPluralRules.TableSize; count++) {
+            assertThat(rules.selectCategory(count), equalTo(rules.selectCategory(count + 100000)));
+        }
+    }
+
+    @Test
+    public void shouldUseTheSameRulesForChinese() {
+        assertThat(PluralRules.forLocale(Locale.forLanguageTag("cn")), sameInstance(PluralRules.ChinesePluralRules));
+        assertThat(PluralRules.forLocale(Locale.forLanguageTag("zh")), sameInstance(PluralRules.ChinesePluralRules));
+    }
+
+    @Test
+    public void shouldSelectRangeCategories() {
+        PluralRules latvian = PluralRules.forLocale(Locale.forLanguageTag("lv"));
+        assertThat(latvian.selectRangeCategory(PluralCategory.One, PluralCategory.Zero), equalTo(PluralCategory.Other));
+        assertThat(latvian.selectRangeCategory(PluralCategory.Zero, PluralCategory.One), equalTo(PluralCategory.One));
+
+        PluralRules slovenian = PluralRules.forLocale(Locale.forLanguageTag("sl"));
+        assertThat(slovenian.selectRangeCategory(PluralCategory.Two, PluralCategory.One), equalTo(PluralCategory.Few));
+        assertThat(PluralRules.EnglishPluralRules.selectRangeCategory(PluralCategory.Other, PluralCategory.One),
+                equalTo(PluralCategory.Other));
+        assertThat(PluralRules.EnglishPluralRules.selectRangeCategory(PluralCategory.One, PluralCategory.Other),
+                equalTo(PluralCategory.Other));
+
+        PluralRules persian = PluralRules.forLocale(Locale.forLanguageTag("fa"));
+        assertThat(persian.selectRangeCategory(PluralCategory.One, PluralCategory.One), equalTo(PluralCategory.Other));
+
+        PluralRules georgian = PluralRules.forLocale(Locale.forLanguageTag("ka"));
+        assertThat(georgian.selectRangeCategory(PluralCategory.One, PluralCategory.Other), equalTo(PluralCategory.One));
+        assertThat(georgian.selectRangeCategory(PluralCategory.Other, PluralCategory.One),
+                equalTo(PluralCategory.Other));
+    }
+
+    @Test
+    public void shouldCompileCustomRules() {
+        Map<PluralCategory, String> cardinal = new EnumMap<>(PluralCategory.class);
+        cardinal.put(PluralCategory.One, "n = 1 @integer 1");
+        cardinal.put(PluralCategory.Few, "n % 10 = 2..4 or n mod 100 = 20");
+        PluralRules rules = PluralRules.compile(cardinal, Collections.emptyMap());
+
+        assertThat(rules.select(1L), equalTo("one"));
+        assertThat(rules.select(1.5), equalTo("other"));
+        assertThat(rules.select(1234L), equalTo("few"));
+        assertThat(rules.select(120L), equalTo("few"));
+        assertThat(rules.selectOrdinal(2L), equalTo("other"));
+
+        assertThrows(IllegalArgumentException.class, () -> PluralRules.compile(
+                Collections.singletonMap(PluralCategory.One, "n = "), Collections.emptyMap()));
+        assertThrows(IllegalArgumentException.class, () -> PluralRules.compile(
+                Collections.singletonMap(PluralCategory.One, "x = 1"), Collections.emptyMap()));
+    }
+}
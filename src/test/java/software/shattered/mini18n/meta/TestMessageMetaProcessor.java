@@ -0,0 +1,102 @@
+package software.shattered.mini18n.meta;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.MessageSet;
+import software.shattered.mini18n.RenderCache;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestMessageMetaProcessor {
+    private static final Locale locale = Locale.forLanguageTag("tmp");
+    private static final Locale otherLocale = Locale.forLanguageTag("tmq");
+
+    private static final class CountingProcessor implements MessageMetaProcessor {
+        private final Purity purity;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        CountingProcessor(Purity purity) {
+            this.purity = purity;
+        }
+
+        @Override
+        public String getId() {
+            return "icon";
+        }
+
+        @Override
+        public String parse(Locale locale, String argument, String currentMessage, @Nullable Map<String, Object> data) {
+            calls.incrementAndGet();
+            Object suffix = data == null ? null : data.get("suffix");
+            return "[" + argument + "@" + locale.toLanguageTag() + (suffix == null ? "" : suffix) + "]";
+        }
+
+        @Override
+        public Purity getPurity() {
+            return purity;
+        }
+    }
+
+    @Test
+    public void shouldFoldConstantProcessorsOncePerLocale() {
+        MessageSet set = new MessageSet();
+        set.add(locale, "coins", "%icon:coin% %count% coins");
+        set.add(otherLocale, "coins", "%icon:coin% %count%");
+        CountingProcessor processor = new CountingProcessor(MessageMetaProcessor.Purity.Constant);
+        set.addMetaProcessor(processor);
+        int folded = processor.calls.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(set.get(locale, "coins", Collections.singletonMap("count", i)),
+                    equalTo("[coin@tmp] " + i + " coins"));
+            assertThat(set.get(otherLocale, "coins", Collections.singletonMap("count", i)),
+                    equalTo("[coin@tmq] " + i));
+        }
+        assertThat(folded, equalTo(2));
+        assertThat(processor.calls.get(), equalTo(folded));
+
+        set.add(locale, "gems", "%icon:gem%");
+        assertThat(set.get(locale, "gems"), equalTo("[gem@tmp]"));
+        assertThat(set.get(locale, "gems"), equalTo("[gem@tmp]"));
+        assertThat(processor.calls.get(), equalTo(folded + 1));
+    }
+
+    @Test
+    public void shouldCacheDataDependentRenders() {
+        MessageSet set = new MessageSet();
+        set.setRenderCache(new RenderCache());
+        CountingProcessor processor = new CountingProcessor(MessageMetaProcessor.Purity.DataDependent);
+        set.addMetaProcessor(processor);
+        set.add(locale, "coins", "%icon:coin% %count%");
+
+        Map<String, Object> data = Collections.singletonMap("suffix", "!");
+        assertThat(set.get(locale, "coins", data), equalTo("[coin@tmp!] %count%"));
+        assertThat(set.get(locale, "coins", data), equalTo("[coin@tmp!] %count%"));
+        assertThat(processor.calls.get(), equalTo(1));
+        assertThat(set.get(locale, "coins", Collections.singletonMap("suffix", "?")), equalTo("[coin@tmp?] %count%"));
+        assertThat(processor.calls.get(), equalTo(2));
+    }
+
+    @Test
+    public void shouldCallVolatileProcessorsOnEveryRender() {
+        MessageSet set = new MessageSet();
+        set.setRenderCache(new RenderCache());
+        CountingProcessor processor = new CountingProcessor(MessageMetaProcessor.Purity.Volatile);
+        set.addMetaProcessor(processor);
+        set.add(locale, "coins", "%icon:coin%");
+
+        StringBuilder out = new StringBuilder();
+        set.render(locale, "coins", Collections.emptyMap(), out);
+        set.get(locale, "coins");
+        set.get(locale, "coins");
+
+        assertThat(out.toString(), equalTo("[coin@tmp]"));
+        assertThat(processor.calls.get(), equalTo(3));
+    }
+}
@@ -2,13 +2,17 @@ package software.shattered.mini18n.meta;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.MessageArguments;
 import software.shattered.mini18n.MessageSet;
 import software.shattered.mini18n.lang.PluralRules;
 
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class TestRecurseMetaProcessor {
     private static final Locale locale = Locale.forLanguageTag("TEST");
@@ -65,4 +69,99 @@ public class TestRecurseMetaProcessor {
 
         assertThat(set.get(locale, "test-simple"), equalTo("[Prefix] This is a message!"));
     }
+
+    @Test
+    public void shouldPluralizeReferencedMessages() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+
+        set.add(locale, "test-simple", "%message:header% %message:items%");
+        set.add(locale, "header", "[%message:title%]");
+        set.add(locale, "title", "Inventory");
+        set.add(locale, "items.one", "There is %count% item.");
+        set.add(locale, "items.other", "There are %count% items.");
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("count", 1);
+        assertThat(set.get(locale, "test-simple", data), equalTo("[Inventory] There is 1 item."));
+        data.put("count", 3);
+        assertThat(set.get(locale, "test-simple", data), equalTo("[Inventory] There are 3 items."));
+    }
+
+    @Test
+    public void shouldSeeChangedReferencedMessages() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+
+        set.add(locale, "test-simple", "%message:prefix% This is a message.");
+        set.add(locale, "prefix", "[Prefix]");
+        assertThat(set.get(locale, "test-simple"), equalTo("[Prefix] This is a message."));
+
+        set.add(locale, "prefix", "[Changed]");
+        assertThat(set.get(locale, "test-simple"), equalTo("[Changed] This is a message."));
+    }
+
+    @Test
+    public void shouldResolveReferencesInTheRequestedLocale() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        Locale region = Locale.forLanguageTag("test-US");
+
+        set.add(locale, "test-simple", "%message:prefix% This is a message.");
+        set.add(locale, "prefix", "[Prefix]");
+        set.add(region, "prefix", "[Region]");
+
+        assertThat(set.get(locale, "test-simple"), equalTo("[Prefix] This is a message."));
+        assertThat(set.get(region, "test-simple"), equalTo("[Region] This is a message."));
+    }
+
+    @Test
+    public void shouldRejectReferenceCycles() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+
+        set.add(locale, "a", "A %message:b%");
+        set.add(locale, "b", "B %message:c%");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> set.add(locale, "c", "C %message:a%"));
+        assertThat(e.getMessage(), equalTo("Message reference cycle in test: c -> a -> b -> c"));
+
+        Map<String, String> messages = new HashMap<>();
+        messages.put("c", "C");
+        messages.put("b.other", "B %message:b%");
+        assertThrows(IllegalArgumentException.class, () -> set.addAll(locale, messages));
+
+        assertThat(set.get(locale, "a"), equalTo("A B "));
+        assertThat(set.get(locale, "c"), equalTo(null));
+    }
+
+    @Test
+    public void shouldRejectReferenceCyclesThroughFallbacks() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        Locale region = Locale.forLanguageTag("test-US");
+
+        set.add(locale, "a", "%message:b%");
+        set.add(region, "c", "C");
+        set.add(locale, "b", "%message:c%");
+        assertThrows(IllegalArgumentException.class, () -> set.add(region, "c", "%message:a%"));
+        assertThat(set.get(region, "a"), equalTo("C"));
+    }
+
+    @Test
+    public void shouldCallParseOfSubclasses() {
+        MessageSet set = new MessageSet();
+        set.addMetaProcessor(new RecurseMetaProcessor(set) {
+            @Override
+            public String parse(Locale locale, String argument, String currentMessage, Map<String, Object> data) {
+                return super.parse(locale, argument, currentMessage, data).toUpperCase(Locale.ROOT);
+            }
+        });
+
+        set.add(locale, "test-simple", "%message:prefix% This is a message.");
+        set.add(locale, "prefix", "[%player%]");
+
+        assertThat(set.get(locale, "test-simple", new MessageArguments().set("player", "Hunter")),
+                equalTo("[HUNTER] This is a message."));
+    }
 }
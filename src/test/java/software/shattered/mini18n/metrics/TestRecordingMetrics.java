@@ -0,0 +1,124 @@
+package software.shattered.mini18n.metrics;
+
+import org.junit.jupiter.api.Test;
+import software.shattered.mini18n.MessageSet;
+import software.shattered.mini18n.meta.MessageMetaProcessor;
+import software.shattered.mini18n.meta.RecurseMetaProcessor;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TestRecordingMetrics {
+    private static final Locale locale = Locale.forLanguageTag("TEST");
+
+    @Test
+    public void shouldCountLookupsAndMissingKeys() {
+        MessageSet set = new MessageSet();
+        RecordingMetrics metrics = new RecordingMetrics();
+        set.setMetrics(metrics);
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+        set.addMetaProcessor(new MessageMetaProcessor() {
+            @Override
+            public String getId() {
+                return "upper";
+            }
+
+            @Override
+            public String parse(Locale locale, String argument, String currentMessage, Map<String, Object> data) {
+                return argument.toUpperCase(Locale.ROOT);
+            }
+        });
+
+        set.add(locale, "test-simple", "%message:prefix% Hello!");
+        set.add(locale, "prefix", "[%upper:prefix%]");
+
+        set.get(locale, "test-simple");
+        set.get(locale, "test-simple");
+        set.get(locale, "test-missing");
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getLocaleLookups().get(locale).getHits(), equalTo(2L));
+        assertThat(snapshot.getLocaleLookups().get(locale).getMisses(), equalTo(1L));
+        assertThat(snapshot.getKeyLookups(locale).get("test-simple").getHits(), equalTo(2L));
+        // The reference was linked when the messages were published, so it is not looked up again.
+        assertThat(snapshot.getKeyLookups(locale).get("prefix"), nullValue());
+        assertThat(snapshot.getMissingKeys().get(locale), equalTo(Collections.singleton("test-missing")));
+        assertThat(snapshot.getMetaProcessors().get("upper").getCount(), equalTo(2L));
+        assertThat(snapshot.getMetaProcessors().get("message"), nullValue());
+        assertThat(snapshot.getRenderCount(), equalTo(2L));
+        assertThat(snapshot.getRenderLatencyPercentile(0.5), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    public void shouldReportMissingReferences() {
+        MessageSet set = new MessageSet();
+        RecordingMetrics metrics = new RecordingMetrics();
+        set.setMetrics(metrics);
+        set.addMetaProcessor(new RecurseMetaProcessor(set));
+
+        set.add(locale, "test-simple", "%message:prefix% Hello!");
+        set.add(locale, "prefix", "[%message:test-missing%]");
+
+        assertThat(set.get(locale, "test-simple"), equalTo("[] Hello!"));
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getKeyLookups(locale).get("test-missing").getMisses(), equalTo(1L));
+        assertThat(snapshot.getMissingKeys().get(locale), equalTo(Collections.singleton("test-missing")));
+        assertThat(snapshot.getMetaProcessors().get("message").getCount(), equalTo(1L));
+
+        set.add(locale, "test-missing", "Found");
+        assertThat(set.get(locale, "test-simple"), equalTo("[Found] Hello!"));
+        assertThat(metrics.snapshot().getMetaProcessors().get("message").getCount(), equalTo(1L));
+    }
+
+    @Test
+    public void shouldBoundTrackedKeys() {
+        MessageSet set = new MessageSet();
+        RecordingMetrics metrics = new RecordingMetrics(2, 2);
+        set.setMetrics(metrics);
+
+        for (int i = 0; i < 5; i++) {
+            set.get(locale, "test-missing-" + i);
+        }
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getLocaleLookups().get(locale).getMisses(), equalTo(5L));
+        assertThat(snapshot.getKeyLookups(locale).size(), equalTo(2));
+        assertThat(snapshot.getMissingKeys().get(locale).size(), equalTo(2));
+    }
+
+    @Test
+    public void shouldBoundTrackedLocales() {
+        MessageSet set = new MessageSet();
+        RecordingMetrics metrics = new RecordingMetrics(100, 100, 2);
+        set.setMetrics(metrics);
+
+        for (int i = 0; i < 5; i++) {
+            set.get(Locale.forLanguageTag("x-test" + i), "test-missing");
+        }
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getLocaleLookups().size(), equalTo(2));
+        assertThat(snapshot.getMissingKeys().size(), equalTo(2));
+    }
+
+    @Test
+    public void shouldStopRecordingWhenRemoved() {
+        MessageSet set = new MessageSet();
+        RecordingMetrics metrics = new RecordingMetrics();
+        set.setMetrics(metrics);
+        set.get(locale, "test-missing");
+        set.setMetrics(null);
+        set.get(locale, "test-missing");
+
+        assertThat(metrics.snapshot().getLocaleLookups().get(locale).getMisses(), equalTo(1L));
+        metrics.reset();
+        assertThat(metrics.snapshot().getLocaleLookups().isEmpty(), equalTo(true));
+    }
+}